@@ -0,0 +1,91 @@
+package br.com.api.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+
+import java.nio.charset.StandardCharsets;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import java.util.HexFormat;
+
+public class CachingJwtDecoder implements JwtDecoder {
+
+    private final JwtDecoder jwtDecoder;
+    private final Cache<String, Jwt> verifiedTokens;
+
+    public CachingJwtDecoder(JwtDecoder jwtDecoder, long maximumSize) {
+
+        this.jwtDecoder = jwtDecoder;
+        this.verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new TokenExpiry())
+                .build();
+    }
+
+    @Override
+    public Jwt decode(String token) throws JwtException {
+
+        // Only tokens that passed the signature and timestamp checks are cached, and each one leaves the
+        // cache when it expires, so a hit is as valid as a fresh RSA verification
+        String tokenHash = hashToken(token);
+        Jwt jwt = verifiedTokens.getIfPresent(tokenHash);
+
+        if (jwt != null) {
+
+            return jwt;
+        }
+
+        jwt = jwtDecoder.decode(token);
+        verifiedTokens.put(tokenHash, jwt);
+
+        return jwt;
+    }
+
+    public String hashToken(String token) {
+
+        try {
+
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256")
+                    .digest(token.getBytes(StandardCharsets.US_ASCII)));
+        } catch (NoSuchAlgorithmException exception) {
+
+            throw new IllegalStateException("SHA-256 is not available", exception);
+        }
+    }
+
+    public static class TokenExpiry implements Expiry<String, Jwt> {
+
+        @Override
+        public long expireAfterCreate(String tokenHash, Jwt jwt, long currentTime) {
+
+            if (jwt.getExpiresAt() == null) {
+
+                return 0;
+            }
+
+            return Math.max(0, Duration.between(Instant.now(), jwt.getExpiresAt()).toNanos());
+        }
+
+        @Override
+        public long expireAfterUpdate(String tokenHash, Jwt jwt, long currentTime, long currentDuration) {
+
+            return expireAfterCreate(tokenHash, jwt, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String tokenHash, Jwt jwt, long currentTime, long currentDuration) {
+
+            return currentDuration;
+        }
+    }
+}
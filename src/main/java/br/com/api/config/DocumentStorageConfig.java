@@ -0,0 +1,86 @@
+package br.com.api.config;
+
+import br.com.api.storage.DocumentStorage;
+import br.com.api.storage.LocalDocumentStorage;
+import br.com.api.storage.S3DocumentStorage;
+import br.com.api.storage.ShardedDocumentStorage;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+
+import software.amazon.awssdk.regions.Region;
+
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3ClientBuilder;
+
+import java.net.URI;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import java.util.List;
+
+@Configuration
+public class DocumentStorageConfig {
+
+    @Bean
+    DocumentStorage documentStorage(DocumentStorageProperties documentStorageProperties) {
+
+        DocumentStorageProperties.Storage storage = documentStorageProperties.getStorage();
+
+        return switch (storage.getType()) {
+
+            case LOCAL -> new LocalDocumentStorage(documentStorageProperties.getDocumentStorageLocation());
+            case SHARDED -> new ShardedDocumentStorage(takeTheShardedLocations(documentStorageProperties),
+                    documentStorageProperties.getDocumentStorageLocation());
+            case S3 -> new S3DocumentStorage(buildS3Client(storage.getS3()), storage.getS3().getBucket(),
+                    storage.getS3().getKeyPrefix());
+        };
+    }
+
+    public List<Path> takeTheShardedLocations(DocumentStorageProperties documentStorageProperties) {
+
+        List<String> shardedDirectories = documentStorageProperties.getStorage().getShardedDirectories();
+
+        if (shardedDirectories.isEmpty()) {
+
+            return List.of(documentStorageProperties.getDocumentStorageLocation());
+        }
+
+        return shardedDirectories.stream()
+                .map(directory -> Paths.get(directory).toAbsolutePath().normalize())
+                .toList();
+    }
+
+    public S3Client buildS3Client(DocumentStorageProperties.S3 s3) {
+
+        if (s3.getBucket() == null || s3.getBucket().isBlank()) {
+
+            throw new IllegalStateException("document.storage.s3.bucket is required for the S3 storage");
+        }
+
+        S3ClientBuilder s3ClientBuilder = S3Client.builder()
+                .region(Region.of(s3.getRegion()))
+                .forcePathStyle(s3.isPathStyleAccess());
+
+        if (s3.getEndpoint() != null && !s3.getEndpoint().isBlank()) {
+
+            s3ClientBuilder.endpointOverride(URI.create(s3.getEndpoint()));
+        }
+
+        if (s3.getAccessKey() != null && !s3.getAccessKey().isBlank()) {
+
+            s3ClientBuilder.credentialsProvider(StaticCredentialsProvider.create(
+                    AwsBasicCredentials.create(s3.getAccessKey(), s3.getSecretKey())));
+        } else {
+
+            s3ClientBuilder.credentialsProvider(DefaultCredentialsProvider.create());
+        }
+
+        return s3ClientBuilder.build();
+    }
+}
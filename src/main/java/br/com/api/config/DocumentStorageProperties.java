@@ -5,10 +5,16 @@ import lombok.Setter;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
 
 import java.nio.file.Path;
 import java.nio.file.Paths;
 
+import java.time.Duration;
+
+import java.util.ArrayList;
+import java.util.List;
+
 @Configuration
 @ConfigurationProperties(prefix = "document")
 @Getter
@@ -17,9 +23,298 @@ public class DocumentStorageProperties {
 
     private String uploadDirectory;
 
+    /*
+    * Moves documents still stored as <guideName>.<extension> into the content addressed
+    * blob store in the background after startup.
+    * */
+    private boolean migrateLegacyDocuments = false;
+
+    /*
+    * Links the documents saved before the version table existed to a versioned document in the
+    * background after startup, the name lookups only read the version table.
+    * */
+    private boolean migrateVersionedDocuments = false;
+
+    private Storage storage = new Storage();
+
+    private Streaming streaming = new Streaming();
+
+    private UploadSession uploadSession = new UploadSession();
+
+    private Download download = new Download();
+
+    private Processing processing = new Processing();
+
+    private BatchUpload batchUpload = new BatchUpload();
+
+    private Delta delta = new Delta();
+
+    private Compression compression = new Compression();
+
+    private ReadCache readCache = new ReadCache();
+
     public Path getDocumentStorageLocation() {
         return Paths.get(uploadDirectory)
                 .toAbsolutePath()
                 .normalize();
     }
+
+    @Getter
+    @Setter
+    public static class Storage {
+
+        private StorageType type = StorageType.SHARDED;
+
+        /*
+        * Moves the documents still lying flat in the upload directory into their shards in the
+        * background after startup, they stay readable from both places while it runs.
+        * */
+        private boolean migrateFlatLayout = false;
+
+        /*
+        * Volumes used by the sharded storage, the upload directory is used when empty.
+        * */
+        private List<String> shardedDirectories = new ArrayList<>();
+
+        /*
+        * Moves the documents left on a volume that no longer wins their key, after volumes were
+        * added to or removed from shardedDirectories, in the background after startup. They stay
+        * readable from any volume while it runs.
+        * */
+        private boolean rebalanceVolumes = false;
+
+        /*
+        * Files of a content left without references are only deleted this long after its last
+        * release, so downloads that already opened them can finish and a new upload of the same
+        * content can take them back in the meantime.
+        * */
+        private Duration deletionGracePeriod = Duration.ofHours(1);
+
+        private S3 s3 = new S3();
+    }
+
+    @Getter
+    @Setter
+    public static class S3 {
+
+        /*
+        * Endpoint of an S3 compatible service (MinIO, Ceph...), empty to use AWS itself.
+        * */
+        private String endpoint;
+
+        private String region = "us-east-1";
+
+        private String bucket;
+
+        private String keyPrefix = "";
+
+        private String accessKey;
+
+        private String secretKey;
+
+        private boolean pathStyleAccess = true;
+    }
+
+    public enum StorageType {
+
+        LOCAL,
+        SHARDED,
+        S3
+    }
+
+    @Getter
+    @Setter
+    public static class Streaming {
+
+        /*
+        * Size of the buffer used to copy the request body to disk, each streaming upload
+        * holds only one of these in memory regardless of the document size.
+        * */
+        private DataSize bufferSize = DataSize.ofKilobytes(64);
+
+        /*
+        * Upper limit for streaming uploads, zero or negative disables the limit.
+        * */
+        private DataSize maxDocumentSize = DataSize.ofGigabytes(5);
+
+        /*
+        * Fetch size of the queries streamed to the client, Integer.MIN_VALUE makes MySQL Connector/J
+        * send the rows one by one instead of buffering the whole result. Other drivers need a positive value.
+        * */
+        private int resultFetchSize = Integer.MIN_VALUE;
+
+        /*
+        * Rows read per query while a client archive is written, each page is read in its own short
+        * transaction so no connection is held while the documents go to the client.
+        * */
+        private int archivePageSize = 100;
+    }
+
+    @Getter
+    @Setter
+    public static class UploadSession {
+
+        private DataSize defaultChunkSize = DataSize.ofMegabytes(8);
+
+        /*
+        * Keeps the number of chunks of a session small, a 5GB session with 1 byte chunks would track
+        * billions of them.
+        * */
+        private DataSize minChunkSize = DataSize.ofMegabytes(1);
+
+        private DataSize maxChunkSize = DataSize.ofMegabytes(64);
+
+        /*
+        * Sessions not committed within this time are discarded together with the chunks received.
+        * */
+        private Duration expiration = Duration.ofDays(1);
+    }
+
+    @Getter
+    @Setter
+    public static class Download {
+
+        /*
+        * When the servlet container supports it (Tomcat NIO without TLS), documents at least
+        * this large are handed to the container to be sent with sendfile, never crossing the heap.
+        * */
+        private boolean zeroCopyEnabled = true;
+
+        private DataSize zeroCopyThreshold = DataSize.ofKilobytes(48);
+
+        /*
+        * Sends the documents of the listed MIME types compressed with gzip to clients that accept
+        * it. The compressed copy is kept on disk for the next requests of the same content.
+        * */
+        private boolean compressionEnabled = true;
+
+        private List<String> compressibleMimeTypes = new ArrayList<>(List.of("text/*", "application/json",
+                "application/xml", "application/javascript", "image/svg+xml"));
+
+        private DataSize compressionMinSize = DataSize.ofKilobytes(2);
+
+        /*
+        * Larger documents are sent as stored, compressing them would delay the first byte and
+        * keep them out of sendfile.
+        * */
+        private DataSize compressionMaxSize = DataSize.ofMegabytes(64);
+
+        /*
+        * Disk space of the compressed copies, the least used ones are deleted past this size.
+        * */
+        private DataSize compressedVariantCacheSize = DataSize.ofGigabytes(1);
+    }
+
+    @Getter
+    @Setter
+    public static class Processing {
+
+        /*
+        * Runs the post upload stages (checksum, MIME type, thumbnail and text extraction) saved
+        * in TB_DOCUMENT_JOB, jobs keep waiting in the table while this is disabled.
+        * */
+        private boolean enabled = true;
+
+        private int workers = 2;
+
+        /*
+        * Jobs handed to the workers but not started yet, the poller only claims as many jobs as
+        * there is room for here so the rest of the backlog stays in the database.
+        * */
+        private int queueCapacity = 16;
+
+        private Duration pollInterval = Duration.ofSeconds(2);
+
+        private int maxAttempts = 3;
+
+        /*
+        * Running jobs not finished within this time are considered lost by a stopped instance
+        * and go back to the queue.
+        * */
+        private Duration runningTimeout = Duration.ofMinutes(10);
+
+        private int thumbnailSize = 256;
+
+        private DataSize maxExtractedTextSize = DataSize.ofMegabytes(1);
+    }
+
+    @Getter
+    @Setter
+    public static class BatchUpload {
+
+        /*
+        * Documents of the same batch written to the staging area and hashed at the same time.
+        * */
+        private int parallelism = 4;
+
+        private int maxDocuments = 1000;
+    }
+
+    @Getter
+    @Setter
+    public static class Delta {
+
+        /*
+        * Keeps the versions replaced by an update as binary deltas against the version that
+        * replaced them, rebuilt when they are read. The encoding runs as a document job.
+        * */
+        private boolean enabled = false;
+
+        private DataSize blockSize = DataSize.ofKilobytes(8);
+
+        /*
+        * A delta larger than this fraction of the full version isn't worth the rebuild cost, so
+        * the version stays stored in full.
+        * */
+        private double maxDeltaRatio = 0.75;
+
+        /*
+        * Disk space of the rebuilt versions kept for later reads, the least recently used ones
+        * are deleted past this size.
+        * */
+        private DataSize reconstructionCacheSize = DataSize.ofGigabytes(1);
+    }
+
+    @Getter
+    @Setter
+    public static class Compression {
+
+        /*
+        * Stores the new contents of the listed extensions or MIME types compressed with gzip,
+        * contents already stored keep the encoding they were written with.
+        * */
+        private boolean enabled = false;
+
+        private int level = 6;
+
+        private List<String> extensions = new ArrayList<>(List.of("txt", "csv", "tsv", "xml", "json", "html",
+                "htm", "md", "log", "sql", "svg", "yaml", "yml"));
+
+        private List<String> mimeTypes = new ArrayList<>(List.of("text/*", "application/xml",
+                "application/json"));
+
+        private DataSize minSize = DataSize.ofKilobytes(1);
+
+        /*
+        * The compressed content is only kept when it is at most this fraction of the original,
+        * otherwise the document is stored as received.
+        * */
+        private double maxRatio = 0.9;
+    }
+
+    @Getter
+    @Setter
+    public static class ReadCache {
+
+        /*
+        * Keeps the most requested small documents in direct buffers so their downloads don't
+        * reach the disk. The JVM direct memory limit (-XX:MaxDirectMemorySize) must be above
+        * the maximum size.
+        * */
+        private boolean enabled = false;
+
+        private DataSize maximumSize = DataSize.ofMegabytes(256);
+
+        private DataSize maxDocumentSize = DataSize.ofMegabytes(4);
+    }
 }
@@ -49,12 +49,20 @@ public class SecurityConfig {
     @Value("${jwt.private.key}")
     private RSAPrivateKey privateKey;
 
+    private final UserCacheProperties userCacheProperties;
+
+    public SecurityConfig(UserCacheProperties userCacheProperties) {
+
+        this.userCacheProperties = userCacheProperties;
+    }
+
     @Bean
     public SecurityFilterChain filterChain(HttpSecurity httpSecurity) throws Exception {
 
         httpSecurity.csrf(AbstractHttpConfigurer::disable)
                 .authorizeHttpRequests(auth -> auth
                         .requestMatchers("/user/**", "/user/token").permitAll()
+                        .requestMatchers("/actuator/health", "/actuator/prometheus").permitAll()
                         .requestMatchers("/user", "/user/allowUserLink**").authenticated()
                         .anyRequest().authenticated())
                 .exceptionHandling(exceptionHandling ->
@@ -87,7 +95,8 @@ public class SecurityConfig {
     @Bean
     JwtDecoder jwtDecoder() {
 
-        return NimbusJwtDecoder.withPublicKey(publicKey).build();
+        return new CachingJwtDecoder(NimbusJwtDecoder.withPublicKey(publicKey).build(),
+                userCacheProperties.getToken().getMaximumSize());
     }
 
     @Bean
@@ -0,0 +1,63 @@
+package br.com.api.config;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+@ConfigurationProperties(prefix = "user.cache")
+@Getter
+@Setter
+public class UserCacheProperties {
+
+    private Principal principal = new Principal();
+
+    private Owner owner = new Owner();
+
+    private Token token = new Token();
+
+    @Getter
+    @Setter
+    public static class Principal {
+
+        /*
+        * Number of usernames whose user, client, approval state and role are kept in memory
+        * so document requests don't resolve them from the database every time.
+        * */
+        private long maximumSize = 10_000;
+
+        /*
+        * Changes made by other instances of the API are seen after this time at most, the ones
+        * made by this instance are evicted right away.
+        * */
+        private Duration expireAfterWrite = Duration.ofMinutes(5);
+    }
+
+    @Getter
+    @Setter
+    public static class Owner {
+
+        /*
+        * Number of clients whose owner username is kept in memory, the owner is fixed when the
+        * client is created so these entries only leave by size or time.
+        * */
+        private long maximumSize = 10_000;
+
+        private Duration expireAfterWrite = Duration.ofHours(1);
+    }
+
+    @Getter
+    @Setter
+    public static class Token {
+
+        /*
+        * Number of verified tokens kept in memory so repeated requests skip the RSA signature
+        * check, each token is dropped when it expires.
+        * */
+        private long maximumSize = 10_000;
+    }
+}
@@ -1,24 +1,32 @@
 package br.com.api.controller;
 
+import br.com.api.domain.dto.DocumentArchiveEntry;
+import br.com.api.domain.dto.DocumentBatchResponse;
+import br.com.api.domain.dto.DocumentJobResponse;
+import br.com.api.domain.dto.DocumentListRequest;
+import br.com.api.domain.dto.DocumentPageResponse;
 import br.com.api.domain.dto.DocumentResponse;
 import br.com.api.domain.dto.DocumentRequest;
+import br.com.api.domain.dto.DocumentSummaryResponse;
+import br.com.api.domain.dto.UserPrincipal;
 
-import br.com.api.domain.entities.Clients;
 import br.com.api.domain.entities.Documents;
-import br.com.api.domain.entities.Users;
-
-import br.com.api.exception.BadRequestException;
-
-import br.com.api.repository.UserClientRepository;
-import br.com.api.repository.UserRepository;
 
+import br.com.api.service.DocumentArchiveService;
+import br.com.api.service.DocumentBatchUploadService;
+import br.com.api.service.DocumentDownloadService;
+import br.com.api.service.DocumentJobService;
+import br.com.api.service.DocumentListService;
 import br.com.api.service.DocumentService;
+import br.com.api.service.DocumentUploadService;
 import br.com.api.service.JwtService;
+import br.com.api.service.UserPrincipalService;
 
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 
-import org.springframework.core.io.Resource;
+import org.springframework.format.annotation.DateTimeFormat;
 
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
@@ -35,7 +43,7 @@ import jakarta.validation.Valid;
 
 import java.io.IOException;
 
-import java.net.MalformedURLException;
+import java.time.LocalDate;
 import java.util.List;
 
 @RestController
@@ -44,76 +52,58 @@ import java.util.List;
 public class DocumentController {
 
     private final DocumentService documentService;
+    private final DocumentUploadService documentUploadService;
+    private final DocumentBatchUploadService documentBatchUploadService;
+    private final DocumentDownloadService documentDownloadService;
+    private final DocumentArchiveService documentArchiveService;
+    private final DocumentListService documentListService;
+    private final DocumentJobService documentJobService;
     private final JwtService jwtService;
-    private final UserClientRepository userClientRepository;
-    private final UserRepository userRepository;
+    private final UserPrincipalService userPrincipalService;
 
     @GetMapping(path = "find")
-    public ResponseEntity<List<Documents>> listDocuments() {
-
-        jwtService.checkIfTokenIsValid();
+    public ResponseEntity<List<DocumentSummaryResponse>> listDocuments() {
 
         String username = jwtService.getSubjectFromAuthentication();
-        Users user = userRepository.findByUsername(username);
+        userPrincipalService.findApprovedPrincipal(username);
 
-        jwtService.checkIfUserWasDeleted(user);
+        return new ResponseEntity<>(documentService.listAllDocumentsFromUsername(username), HttpStatus.OK);
+    }
 
-        Boolean userBindingState = userClientRepository.findByUser(user).getApprovedRequest();
+    @GetMapping(path = "list", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<DocumentPageResponse> listDocumentPage(DocumentListRequest documentListRequest) {
 
-        if(Boolean.TRUE.equals(userBindingState) || userBindingState == null) {
+        String username = jwtService.getSubjectFromAuthentication();
+        return new ResponseEntity<>(documentListService.listDocumentPage(documentListRequest, username),
+                HttpStatus.OK);
+    }
 
-            return new ResponseEntity<>(documentService.listAllDocumentsFromUsername(username), HttpStatus.OK);
-        } else {
+    @GetMapping(path = "list", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public void streamDocuments(DocumentListRequest documentListRequest,
+                                HttpServletResponse httpServletResponse) throws IOException {
 
-            throw new BadRequestException("Your link has not yet been permitted by the legal entity");
-        }
+        String username = jwtService.getSubjectFromAuthentication();
+
+        httpServletResponse.setStatus(HttpStatus.OK.value());
+        httpServletResponse.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        documentListService.streamDocuments(documentListRequest, username, httpServletResponse.getOutputStream());
     }
 
     @GetMapping(path = "findName")
-    public ResponseEntity<List<Documents>> listDocumentsByName(@Valid @RequestParam String documentName) {
-
-        jwtService.checkIfTokenIsValid();
+    public ResponseEntity<List<DocumentSummaryResponse>> listDocumentsByName(@Valid @RequestParam String documentName) {
 
         String username = jwtService.getSubjectFromAuthentication();
-        Users user = userRepository.findByUsername(username);
-
-        jwtService.checkIfUserWasDeleted(user);
+        userPrincipalService.findApprovedPrincipal(username);
 
         String guideName = documentName + "-" + getTheCustomerOriginalUsername(username);
-        Boolean userBindingState = userClientRepository.findByUser(user).getApprovedRequest();
-
-        if(Boolean.TRUE.equals(userBindingState) || userBindingState == null) {
-
-            return new ResponseEntity<>(documentService.listDocumentsByName(guideName, username),
-                    HttpStatus.OK);
-        } else {
 
-            throw new BadRequestException("Your link has not yet been permitted by the legal entity");
-        }
+        return new ResponseEntity<>(documentService.listDocumentsByName(guideName, username), HttpStatus.OK);
     }
 
     public String getTheCustomerOriginalUsername(String username) {
 
-        String customerOriginalUsername = "";
-
-        Users user = userRepository.findByUsername(username);
-
-        if(Boolean.TRUE.equals(user.getExcluded())) {
-
-            throw new BadRequestException("This user has been deleted");
-        }
-
-        Clients client = userClientRepository.findByUser(user).getClient();
-
-        for(Users finalUser : client.getUsers()) {
-
-            if(userClientRepository.findByUser(finalUser).getApprovedRequest() == null) {
-
-                customerOriginalUsername = finalUser.getUsername();
-            }
-        }
-
-        return customerOriginalUsername;
+        UserPrincipal userPrincipal = userPrincipalService.findActivePrincipal(username);
+        return userPrincipalService.findOwnerUsername(userPrincipal.clientId());
     }
 
     @PostMapping(path = "upload", consumes = "multipart/form-data")
@@ -122,8 +112,6 @@ public class DocumentController {
                                                            @RequestPart("documentRequest") DocumentRequest request)
             throws IOException {
 
-        jwtService.checkIfTokenIsValid();
-
         String username = jwtService.getSubjectFromAuthentication();
         return new ResponseEntity<>(documentService.addNewDocument(document, request, username),
                 HttpStatus.CREATED);
@@ -135,19 +123,63 @@ public class DocumentController {
                                                @RequestPart("documentRequest") DocumentRequest documentRequest)
             throws IOException {
 
-        jwtService.checkIfTokenIsValid();
-
         String username = jwtService.getSubjectFromAuthentication();
         return new ResponseEntity<>(documentService.updateDocument(document, documentRequest, username),
                 HttpStatus.OK);
     }
 
+    @PostMapping(path = "upload/stream", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    @PreAuthorize("hasAnyAuthority('SCOPE_CLIENT')")
+    public ResponseEntity<DocumentResponse> addNewDocumentFromStream(
+            @RequestParam String documentName,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate validity,
+            HttpServletRequest httpServletRequest) throws IOException {
+
+        String username = jwtService.getSubjectFromAuthentication();
+        return new ResponseEntity<>(documentUploadService.addNewDocumentFromStream(
+                httpServletRequest.getInputStream(), httpServletRequest.getContentLengthLong(), documentName,
+                new DocumentRequest(validity), username), HttpStatus.CREATED);
+    }
+
+    @PutMapping(path = "upload/stream", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    @PreAuthorize("hasAnyAuthority('SCOPE_CLIENT')")
+    public ResponseEntity<DocumentResponse> updateDocumentFromStream(
+            @RequestParam String documentName,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate validity,
+            HttpServletRequest httpServletRequest) throws IOException {
+
+        String username = jwtService.getSubjectFromAuthentication();
+        return new ResponseEntity<>(documentUploadService.updateDocumentFromStream(
+                httpServletRequest.getInputStream(), httpServletRequest.getContentLengthLong(), documentName,
+                new DocumentRequest(validity), username), HttpStatus.OK);
+    }
+
+    @PostMapping(path = "upload/batch", consumes = "multipart/form-data")
+    @PreAuthorize("hasAnyAuthority('SCOPE_CLIENT')")
+    public ResponseEntity<DocumentBatchResponse> addNewDocuments(
+            @RequestPart("documents") List<MultipartFile> documents,
+            @RequestPart("documentRequest") DocumentRequest request) {
+
+        String username = jwtService.getSubjectFromAuthentication();
+        return new ResponseEntity<>(documentBatchUploadService.addNewDocuments(documents, request, username),
+                HttpStatus.OK);
+    }
+
+    @PostMapping(path = "upload/batch", consumes = {"application/zip", "application/x-zip-compressed"})
+    @PreAuthorize("hasAnyAuthority('SCOPE_CLIENT')")
+    public ResponseEntity<DocumentBatchResponse> addNewDocumentsFromZip(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate validity,
+            HttpServletRequest httpServletRequest) throws IOException {
+
+        String username = jwtService.getSubjectFromAuthentication();
+        return new ResponseEntity<>(documentBatchUploadService.addNewDocumentsFromZip(
+                httpServletRequest.getInputStream(), new DocumentRequest(validity), username), HttpStatus.OK);
+    }
+
     @DeleteMapping(path = "previousVersion")
     @PreAuthorize("hasAnyAuthority('SCOPE_CLIENT')")
     public ResponseEntity<Void> usePreviousVersion(@Valid @RequestParam String documentName) {
 
-        jwtService.checkIfTokenIsValid();
-
         String username = jwtService.getSubjectFromAuthentication();
         documentService.usePreviousVersion(documentName, username);
         return new ResponseEntity<>(HttpStatus.OK);
@@ -157,53 +189,75 @@ public class DocumentController {
     @PreAuthorize("hasAnyAuthority('SCOPE_CLIENT')")
     public ResponseEntity<Void> deleteDocumentByName(@Valid @RequestParam String documentName) {
 
-        jwtService.checkIfTokenIsValid();
-
         String username = jwtService.getSubjectFromAuthentication();
         documentService.deleteAllDocumentWithName(documentName, username);
         return new ResponseEntity<>(HttpStatus.OK);
     }
 
     @GetMapping(path = "download/{documentName:.+}")
-    public ResponseEntity<Resource> downloadDocument(@PathVariable String documentName,
-                                                 HttpServletRequest httpServletRequest) {
+    public void downloadDocument(@PathVariable String documentName,
+                                 @RequestParam(required = false) Integer version,
+                                 HttpServletRequest httpServletRequest,
+                                 HttpServletResponse httpServletResponse) throws IOException {
+
+        String username = jwtService.getSubjectFromAuthentication();
+        userPrincipalService.findActivePrincipal(username);
+
+        Documents document = findDocumentByFileNameAndUsername(documentName, username, version);
+
+        documentDownloadService.downloadDocument(document, documentService.takeTheStorageKey(document),
+                httpServletRequest, httpServletResponse);
+    }
 
-        jwtService.checkIfTokenIsValid();
+    @GetMapping(path = "archive", produces = "application/zip")
+    public void downloadArchive(@RequestParam(required = false) List<String> documentNames,
+                                @RequestParam(required = false) String historyOf,
+                                DocumentListRequest documentListRequest,
+                                HttpServletResponse httpServletResponse) throws IOException {
 
         String username = jwtService.getSubjectFromAuthentication();
-        Users user = userRepository.findByUsername(username);
+        userPrincipalService.findApprovedPrincipal(username);
 
-        jwtService.checkIfUserWasDeleted(user);
+        // The selection is resolved before the first byte is written so an unknown name is still a 400
+        List<DocumentArchiveEntry> archiveEntries = null;
 
-        try {
+        if (historyOf != null && !historyOf.isBlank()) {
 
-            Resource resource = generateGuideNameByFileNameAndUsername(documentName, username);
+            archiveEntries = documentArchiveService.findDocumentHistory(historyOf, username);
+        } else if (documentNames != null && !documentNames.isEmpty()) {
 
-            String contentType = httpServletRequest.getServletContext()
-                    .getMimeType(resource.getFile().getAbsolutePath());
+            archiveEntries = documentArchiveService.findDocumentsByName(documentNames, username);
+        }
 
-            if (contentType == null) {
+        httpServletResponse.setStatus(HttpStatus.OK.value());
+        httpServletResponse.setContentType("application/zip");
+        httpServletResponse.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"documents.zip\"");
 
-                contentType = "application/octet-stream";
-            }
+        if (archiveEntries == null) {
 
-            return ResponseEntity.ok().contentType(MediaType.parseMediaType(contentType))
-                    .header(HttpHeaders.CONTENT_DISPOSITION,
-                            "attachment; documentName=\"" + resource.getFilename() + "\"")
-                    .body(resource);
-        } catch(Exception ex) {
+            documentArchiveService.writeArchive(documentListRequest, username, httpServletResponse.getOutputStream());
+        } else {
 
-            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+            documentArchiveService.writeArchive(archiveEntries, historyOf != null && !historyOf.isBlank(),
+                    httpServletResponse.getOutputStream());
         }
     }
 
-    public Resource generateGuideNameByFileNameAndUsername(String documentName, String username)
-            throws MalformedURLException {
+    @GetMapping(path = "processing/{documentName:.+}")
+    public ResponseEntity<List<DocumentJobResponse>> listDocumentJobs(@PathVariable String documentName,
+                                                                      @RequestParam(required = false)
+                                                                      Integer version) {
+
+        String username = jwtService.getSubjectFromAuthentication();
+        userPrincipalService.findActivePrincipal(username);
+
+        Documents document = findDocumentByFileNameAndUsername(documentName, username, version);
+
+        return new ResponseEntity<>(documentJobService.listJobs(document), HttpStatus.OK);
+    }
 
-        int substringBegin = documentName.indexOf(".");
-        String guideName = documentName.substring(0, substringBegin) + "-" + username;
+    public Documents findDocumentByFileNameAndUsername(String documentName, String username, Integer version) {
 
-        return documentService.downloadDocument(guideName + "." +
-                documentName.substring(substringBegin + 1));
+        return documentService.findDocumentByFileName(documentName, username, version);
     }
-}
\ No newline at end of file
+}
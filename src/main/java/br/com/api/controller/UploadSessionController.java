@@ -0,0 +1,83 @@
+package br.com.api.controller;
+
+import br.com.api.domain.dto.DocumentResponse;
+import br.com.api.domain.dto.UploadSessionRequest;
+import br.com.api.domain.dto.UploadSessionResponse;
+
+import br.com.api.service.JwtService;
+import br.com.api.service.UploadSessionService;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.Valid;
+
+import lombok.RequiredArgsConstructor;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import org.springframework.security.access.prepost.PreAuthorize;
+
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+
+import java.util.UUID;
+
+@RestController
+@RequestMapping("/document/session")
+@RequiredArgsConstructor
+public class UploadSessionController {
+
+    private final UploadSessionService uploadSessionService;
+    private final JwtService jwtService;
+
+    @PostMapping
+    @PreAuthorize("hasAnyAuthority('SCOPE_CLIENT')")
+    public ResponseEntity<UploadSessionResponse> createUploadSession(
+            @Valid @RequestBody UploadSessionRequest uploadSessionRequest) throws IOException {
+
+        String username = jwtService.getSubjectFromAuthentication();
+        return new ResponseEntity<>(uploadSessionService.createUploadSession(uploadSessionRequest, username),
+                HttpStatus.CREATED);
+    }
+
+    @GetMapping(path = "{sessionId}")
+    @PreAuthorize("hasAnyAuthority('SCOPE_CLIENT')")
+    public ResponseEntity<UploadSessionResponse> findUploadSession(@PathVariable UUID sessionId) {
+
+        String username = jwtService.getSubjectFromAuthentication();
+        return new ResponseEntity<>(uploadSessionService.findUploadSession(sessionId, username), HttpStatus.OK);
+    }
+
+    @PutMapping(path = "{sessionId}/chunk/{chunkNumber}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    @PreAuthorize("hasAnyAuthority('SCOPE_CLIENT')")
+    public ResponseEntity<UploadSessionResponse> uploadChunk(@PathVariable UUID sessionId,
+                                                             @PathVariable Integer chunkNumber,
+                                                             HttpServletRequest httpServletRequest)
+            throws IOException {
+
+        String username = jwtService.getSubjectFromAuthentication();
+        return new ResponseEntity<>(uploadSessionService.uploadChunk(sessionId, chunkNumber,
+                httpServletRequest.getInputStream(), httpServletRequest.getContentLengthLong(), username),
+                HttpStatus.OK);
+    }
+
+    @PostMapping(path = "{sessionId}/commit")
+    @PreAuthorize("hasAnyAuthority('SCOPE_CLIENT')")
+    public ResponseEntity<DocumentResponse> commitUploadSession(@PathVariable UUID sessionId) throws IOException {
+
+        String username = jwtService.getSubjectFromAuthentication();
+        return new ResponseEntity<>(uploadSessionService.commitUploadSession(sessionId, username),
+                HttpStatus.CREATED);
+    }
+
+    @DeleteMapping(path = "{sessionId}")
+    @PreAuthorize("hasAnyAuthority('SCOPE_CLIENT')")
+    public ResponseEntity<Void> abortUploadSession(@PathVariable UUID sessionId) throws IOException {
+
+        String username = jwtService.getSubjectFromAuthentication();
+        uploadSessionService.abortUploadSession(sessionId, username);
+        return new ResponseEntity<>(HttpStatus.OK);
+    }
+}
@@ -51,8 +51,6 @@ public class UserController {
     @PreAuthorize("hasAnyAuthority('SCOPE_CLIENT')")
     public ResponseEntity<List<EmployeeResponse>> listOfUsersWhoWantToLink() {
 
-        jwtService.checkIfTokenIsValid();
-
         String username = jwtService.getSubjectFromAuthentication();
         Users user = userRepository.findByUsername(username);
 
@@ -67,8 +65,6 @@ public class UserController {
     @PreAuthorize("hasAnyAuthority('SCOPE_CLIENT')")
     public ResponseEntity<EmployeeResponse> allowUserLinking(@RequestParam String usernameToAllowLinking) {
 
-        jwtService.checkIfTokenIsValid();
-
         String username = jwtService.getSubjectFromAuthentication();
         Users user = userRepository.findByUsername(username);
 
@@ -83,8 +79,6 @@ public class UserController {
     @DeleteMapping
     public ResponseEntity<UserResponse> deleteAccount() {
 
-        jwtService.checkIfTokenIsValid();
-
         String username = jwtService.getSubjectFromAuthentication();
         Users user = userRepository.findByUsername(username);
 
@@ -0,0 +1,8 @@
+package br.com.api.domain.dto;
+
+public record ByteRangeResponse(
+
+        Long start,
+
+        Long end) {
+}
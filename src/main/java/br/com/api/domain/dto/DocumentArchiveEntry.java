@@ -0,0 +1,29 @@
+package br.com.api.domain.dto;
+
+import br.com.api.domain.enums.DocumentEncoding;
+
+import java.util.UUID;
+
+public record DocumentArchiveEntry(
+
+        UUID uuid,
+
+        String name,
+
+        String guideName,
+
+        String extension,
+
+        Integer version,
+
+        String blobHash,
+
+        String baseHash,
+
+        DocumentEncoding encoding) {
+
+    public String storageKey() {
+
+        return blobHash != null ? blobHash : guideName + "." + extension;
+    }
+}
@@ -0,0 +1,15 @@
+package br.com.api.domain.dto;
+
+import lombok.Builder;
+
+@Builder
+public record DocumentBatchItemResponse(
+
+        String documentName,
+
+        Boolean created,
+
+        DocumentResponse document,
+
+        String error) {
+}
@@ -0,0 +1,12 @@
+package br.com.api.domain.dto;
+
+import java.util.List;
+
+public record DocumentBatchResponse(
+
+        Integer created,
+
+        Integer failed,
+
+        List<DocumentBatchItemResponse> documents) {
+}
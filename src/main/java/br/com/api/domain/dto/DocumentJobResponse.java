@@ -0,0 +1,26 @@
+package br.com.api.domain.dto;
+
+import br.com.api.domain.enums.DocumentJobStage;
+import br.com.api.domain.enums.DocumentJobStatus;
+
+import lombok.Builder;
+
+import java.time.LocalDateTime;
+
+@Builder
+public record DocumentJobResponse(
+
+        DocumentJobStage stage,
+
+        DocumentJobStatus status,
+
+        Integer attempts,
+
+        String result,
+
+        String error,
+
+        LocalDateTime creation,
+
+        LocalDateTime updated) {
+}
@@ -0,0 +1,32 @@
+package br.com.api.domain.dto;
+
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.time.LocalDate;
+
+public record DocumentListRequest(
+
+        String name,
+
+        String extension,
+
+        @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+        LocalDate validFrom,
+
+        @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+        LocalDate validUntil,
+
+        @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+        LocalDate createdFrom,
+
+        @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+        LocalDate createdUntil,
+
+        String sort,
+
+        String direction,
+
+        Integer size,
+
+        String cursor) {
+}
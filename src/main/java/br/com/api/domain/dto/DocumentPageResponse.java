@@ -0,0 +1,10 @@
+package br.com.api.domain.dto;
+
+import java.util.List;
+
+public record DocumentPageResponse(
+
+        List<DocumentSummaryResponse> documents,
+
+        String nextCursor) {
+}
@@ -1,6 +1,5 @@
 package br.com.api.domain.dto;
 
-import br.com.api.domain.entities.Documents;
 import lombok.Builder;
 
 import java.time.LocalDate;
@@ -10,7 +9,7 @@ public record DocumentResponse(
 
         String name,
 
-        Documents originalDocument,
+        DocumentSummaryResponse originalDocument,
 
         String extension,
 
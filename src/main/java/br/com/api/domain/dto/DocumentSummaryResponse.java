@@ -0,0 +1,28 @@
+package br.com.api.domain.dto;
+
+import lombok.Builder;
+
+import java.time.LocalDate;
+import java.util.UUID;
+
+@Builder
+public record DocumentSummaryResponse(
+
+        UUID uuid,
+
+        String name,
+
+        String guideName,
+
+        String extension,
+
+        Integer version,
+
+        LocalDate validity,
+
+        LocalDate creation,
+
+        LocalDate updated,
+
+        LocalDate exclusion) {
+}
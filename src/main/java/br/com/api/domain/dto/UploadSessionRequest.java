@@ -0,0 +1,24 @@
+package br.com.api.domain.dto;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+
+import java.time.LocalDate;
+
+public record UploadSessionRequest(
+
+        @NotNull(message = "The field documentName cannot be empty")
+        String documentName,
+
+        @NotNull(message = "The field totalSize cannot be empty")
+        @Positive(message = "The field totalSize must be greater than zero")
+        Long totalSize,
+
+        @Positive(message = "The field chunkSize must be greater than zero")
+        Long chunkSize,
+
+        @NotNull(message = "The field validity_date cannot be empty")
+        LocalDate validity,
+
+        Boolean updateDocument) {
+}
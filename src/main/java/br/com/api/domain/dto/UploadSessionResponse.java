@@ -0,0 +1,29 @@
+package br.com.api.domain.dto;
+
+import lombok.Builder;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+@Builder
+public record UploadSessionResponse(
+
+        UUID sessionId,
+
+        String documentName,
+
+        LocalDate validity,
+
+        Long totalSize,
+
+        Long chunkSize,
+
+        Integer totalChunks,
+
+        Long receivedBytes,
+
+        List<ByteRangeResponse> receivedRanges,
+
+        List<ChunkRangeResponse> missingChunks) {
+}
@@ -0,0 +1,25 @@
+package br.com.api.domain.dto;
+
+import br.com.api.domain.enums.RoleName;
+
+import java.util.UUID;
+
+public record UserPrincipal(
+
+        UUID userId,
+
+        String username,
+
+        UUID clientId,
+
+        Boolean excluded,
+
+        Boolean approvedRequest,
+
+        RoleName roleName) {
+
+    public boolean linkIsApproved() {
+
+        return approvedRequest == null || Boolean.TRUE.equals(approvedRequest);
+    }
+}
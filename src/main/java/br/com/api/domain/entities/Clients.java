@@ -34,8 +34,7 @@ public class Clients {
     @ManyToMany(mappedBy = "clients")
     private List<Users> users;
 
-    @OneToMany(cascade = CascadeType.ALL, fetch = FetchType.LAZY)
-    @JoinColumn(name = "client_uuid")
+    @OneToMany(mappedBy = "client", fetch = FetchType.LAZY)
     private List<Documents> documentList;
 
     public Clients(UserRequest userRequest) {
@@ -0,0 +1,57 @@
+package br.com.api.domain.entities;
+
+import br.com.api.domain.enums.DocumentEncoding;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+import lombok.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+@Entity
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Table(name = "TB_DOCUMENT_BLOB")
+@Builder
+public class DocumentBlobs {
+
+    @Id
+    @Column(length = 64)
+    private String hash;
+
+    @NotNull(message = "The field size cannot be empty")
+    @Column(nullable = false)
+    private Long size;
+
+    @NotNull(message = "The field reference count cannot be empty")
+    @Column(nullable = false)
+    private Integer referenceCount;
+
+    @NotNull(message = "The field creation date cannot be empty")
+    @Column(nullable = false)
+    private LocalDate creation;
+
+    /* Blob this one is stored as a delta against, null when the content is stored in full */
+    @Column(name = "base_hash", length = 64)
+    private String baseHash;
+
+    /* Bytes actually kept by the storage, null while it is the same as the size */
+    @Column(name = "stored_size")
+    private Long storedSize;
+
+    /* Compression of the stored content, null when it is stored as received */
+    @Enumerated(EnumType.STRING)
+    @Column(length = 16)
+    private DocumentEncoding encoding;
+
+    /* Moment the last reference was released, the row and its files wait for the sweeper while the count is zero */
+    @Column
+    private LocalDateTime released;
+
+    /* Moment the content was replaced by a delta, the full copy waits for the sweeper so open reads can finish */
+    @Column(name = "full_copy_released")
+    private LocalDateTime fullCopyReleased;
+}
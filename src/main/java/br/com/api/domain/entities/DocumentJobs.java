@@ -0,0 +1,57 @@
+package br.com.api.domain.entities;
+
+import br.com.api.domain.enums.DocumentJobStage;
+import br.com.api.domain.enums.DocumentJobStatus;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+import lombok.*;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Entity
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Table(name = "TB_DOCUMENT_JOB", indexes = {
+        @Index(name = "IDX_DOCUMENT_JOB_STATUS_UPDATED", columnList = "status, updated"),
+        @Index(name = "IDX_DOCUMENT_JOB_DOCUMENT", columnList = "document_uuid")})
+@Builder
+public class DocumentJobs {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID uuid;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "document_uuid", nullable = false)
+    private Documents document;
+
+    @NotNull(message = "The field stage cannot be empty")
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private DocumentJobStage stage;
+
+    @NotNull(message = "The field status cannot be empty")
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false)
+    private DocumentJobStatus status;
+
+    @Column(nullable = false)
+    private Integer attempts;
+
+    private String result;
+
+    @Column(length = 1000)
+    private String error;
+
+    @NotNull(message = "The field creation date cannot be empty")
+    @Column(nullable = false)
+    private LocalDateTime creation;
+
+    @NotNull(message = "The field updated date cannot be empty")
+    @Column(name = "updated", nullable = false)
+    private LocalDateTime updated;
+}
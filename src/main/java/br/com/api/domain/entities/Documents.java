@@ -13,7 +13,15 @@ import java.util.UUID;
 @Setter
 @AllArgsConstructor
 @NoArgsConstructor
-@Table(name = "TB_DOCUMENT")
+@Table(name = "TB_DOCUMENT", indexes = {
+        @Index(name = "IDX_DOCUMENT_GUIDE_NAME", columnList = "guide_name"),
+        @Index(name = "IDX_DOCUMENT_CLIENT_GUIDE_NAME", columnList = "client_uuid, guide_name"),
+        @Index(name = "IDX_DOCUMENT_CLIENT_CREATION", columnList = "client_uuid, creation, uuid"),
+        @Index(name = "IDX_DOCUMENT_CLIENT_NAME", columnList = "client_uuid, name, uuid"),
+        @Index(name = "IDX_DOCUMENT_CLIENT_VALIDITY", columnList = "client_uuid, validity, uuid"),
+        @Index(name = "IDX_DOCUMENT_CLIENT_EXTENSION", columnList = "client_uuid, extension, uuid")},
+        uniqueConstraints = @UniqueConstraint(name = "UK_DOCUMENT_VERSIONED_DOCUMENT_VERSION",
+                columnNames = {"versioned_document_uuid", "version"}))
 @Builder
 public class Documents {
 
@@ -26,7 +34,7 @@ public class Documents {
     private String name;
 
     @NotNull(message = "The field guide name cannot be empty")
-    @Column(nullable = false)
+    @Column(name = "guide_name", nullable = false)
     private String guideName;
 
     @NotNull(message = "The field extension cannot be empty")
@@ -34,7 +42,7 @@ public class Documents {
     private String extension;
 
     @NotNull(message = "The field version cannot be empty")
-    @Column(nullable = false)
+    @Column(name = "version", nullable = false)
     private Integer version;
 
     @NotNull(message = "The field validity date cannot be empty")
@@ -49,7 +57,32 @@ public class Documents {
 
     private LocalDate exclusion;
 
-    @ManyToOne(cascade = CascadeType.ALL, fetch = FetchType.EAGER)
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "client_uuid")
+    @JsonIgnore
+    private Clients client;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_uuid_creation")
+    @JsonIgnore
+    private Users userCreation;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_uuid_exclusion")
+    @JsonIgnore
+    private Users userExclusion;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "blob_hash")
+    @JsonIgnore
+    private DocumentBlobs blob;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "versioned_document_uuid")
+    @JsonIgnore
+    private VersionedDocuments versionedDocument;
+
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "original_document_uuid")
     @JsonIgnore
     private Documents originalDocument;
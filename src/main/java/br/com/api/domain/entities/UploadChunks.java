@@ -0,0 +1,34 @@
+package br.com.api.domain.entities;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+import lombok.*;
+
+import java.util.UUID;
+
+@Entity
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Table(name = "TB_UPLOAD_CHUNK", uniqueConstraints =
+        @UniqueConstraint(columnNames = {"upload_session_uuid", "number"}))
+@Builder
+public class UploadChunks {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID uuid;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "upload_session_uuid", nullable = false)
+    private UploadSessions uploadSession;
+
+    @NotNull(message = "The field number cannot be empty")
+    @Column(nullable = false)
+    private Integer number;
+
+    @NotNull(message = "The field size cannot be empty")
+    @Column(nullable = false)
+    private Long size;
+}
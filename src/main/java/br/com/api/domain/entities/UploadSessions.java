@@ -0,0 +1,55 @@
+package br.com.api.domain.entities;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+import lombok.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Entity
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Table(name = "TB_UPLOAD_SESSION")
+@Builder
+public class UploadSessions {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID uuid;
+
+    @NotNull(message = "The field username cannot be empty")
+    @Column(nullable = false)
+    private String username;
+
+    @NotNull(message = "The field document name cannot be empty")
+    @Column(nullable = false)
+    private String documentName;
+
+    @NotNull(message = "The field validity date cannot be empty")
+    @Column(nullable = false)
+    private LocalDate validity;
+
+    @NotNull(message = "The field total size cannot be empty")
+    @Column(nullable = false)
+    private Long totalSize;
+
+    @NotNull(message = "The field chunk size cannot be empty")
+    @Column(nullable = false)
+    private Long chunkSize;
+
+    @Column(name = "update_document", nullable = false)
+    private Boolean updateDocument;
+
+    @NotNull(message = "The field creation date cannot be empty")
+    @Column(nullable = false)
+    private LocalDateTime creation;
+
+    public int getTotalChunks() {
+
+        return Math.toIntExact(Math.max(1, (totalSize + chunkSize - 1) / chunkSize));
+    }
+}
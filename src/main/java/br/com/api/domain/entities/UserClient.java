@@ -10,7 +10,9 @@ import java.util.UUID;
 @Setter
 @AllArgsConstructor
 @NoArgsConstructor
-@Table(name = "TB_USER_CLIENT")
+@Table(name = "TB_USER_CLIENT", indexes = {
+        @Index(name = "IDX_USER_CLIENT_USER", columnList = "user_uuid"),
+        @Index(name = "IDX_USER_CLIENT_CLIENT_APPROVED_REQUEST", columnList = "client_uuid, approved_request")})
 @Builder
 public class UserClient {
 
@@ -21,7 +21,6 @@ public class Users implements UserDetails {
     /*
     *
     * TODO - Estudar e implementar refresh Token;
-    *        Pensar na lógica de ter uma Tabela separada para as versões dos documentos;
     *
     * */
 
@@ -42,19 +41,17 @@ public class Users implements UserDetails {
     @NotNull(message = "The field password cannot be empty")
     private Boolean excluded;
 
-    @ManyToMany(fetch = FetchType.EAGER)
+    @ManyToMany(fetch = FetchType.LAZY)
     @JoinTable(
             name = "USERS_ROLES",
             joinColumns = @JoinColumn(name = "user_id"),
             inverseJoinColumns = @JoinColumn(name = "role_id"))
     private List<Roles> roleList = new ArrayList<>();
 
-    @OneToMany(cascade = CascadeType.ALL, fetch = FetchType.LAZY)
-    @JoinColumn(name = "user_uuid_creation")
+    @OneToMany(mappedBy = "userCreation", fetch = FetchType.LAZY)
     private List<Documents> listDocumentsCreation;
 
-    @OneToMany(cascade = CascadeType.ALL, fetch = FetchType.LAZY)
-    @JoinColumn(name = "user_uuid_exclusion")
+    @OneToMany(mappedBy = "userExclusion", fetch = FetchType.LAZY)
     private List<Documents> listDocumentsExclusion;
 
     @ManyToMany
@@ -0,0 +1,60 @@
+package br.com.api.domain.entities;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+import lombok.*;
+
+import java.time.LocalDate;
+import java.util.UUID;
+
+@Entity
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Table(name = "TB_VERSIONED_DOCUMENT", indexes = {
+        @Index(name = "IDX_VERSIONED_DOCUMENT_GUIDE_NAME", columnList = "guide_name, exclusion"),
+        @Index(name = "IDX_VERSIONED_DOCUMENT_CLIENT_GUIDE_NAME", columnList = "client_uuid, guide_name, exclusion")},
+        uniqueConstraints = @UniqueConstraint(name = "UK_VERSIONED_DOCUMENT_LIVE_GUIDE_NAME",
+                columnNames = "live_guide_name"))
+@Builder
+public class VersionedDocuments {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID uuid;
+
+    @NotNull(message = "The field guide name cannot be empty")
+    @Column(name = "guide_name", nullable = false)
+    private String guideName;
+
+    @NotNull(message = "The field extension cannot be empty")
+    @Column(nullable = false)
+    private String extension;
+
+    @NotNull(message = "The field last version cannot be empty")
+    @Column(name = "last_version", nullable = false)
+    private Integer lastVersion;
+
+    @NotNull(message = "The field creation date cannot be empty")
+    @Column(nullable = false)
+    private LocalDate creation;
+
+    private LocalDate exclusion;
+
+    /* The guide name while the document is not excluded and null after, so the database refuses a second
+     * live document with the same name even when two uploads pass the name check at the same time */
+    @Column(name = "live_guide_name")
+    private String liveGuideName;
+
+    @OneToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "current_version_uuid")
+    @JsonIgnore
+    private Documents currentVersion;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "client_uuid", nullable = false)
+    @JsonIgnore
+    private Clients client;
+}
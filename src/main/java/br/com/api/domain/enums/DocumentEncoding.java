@@ -0,0 +1,18 @@
+package br.com.api.domain.enums;
+
+public enum DocumentEncoding {
+
+    GZIP("gzip");
+
+    private final String contentCoding;
+
+    DocumentEncoding(String contentCoding) {
+
+        this.contentCoding = contentCoding;
+    }
+
+    public String getContentCoding() {
+
+        return contentCoding;
+    }
+}
@@ -0,0 +1,10 @@
+package br.com.api.domain.enums;
+
+public enum DocumentJobStage {
+
+    CHECKSUM,
+    MIME_TYPE,
+    THUMBNAIL,
+    TEXT_EXTRACTION,
+    DELTA_ENCODING
+}
@@ -0,0 +1,9 @@
+package br.com.api.domain.enums;
+
+public enum DocumentJobStatus {
+
+    PENDING,
+    RUNNING,
+    COMPLETED,
+    FAILED
+}
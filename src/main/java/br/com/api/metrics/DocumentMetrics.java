@@ -0,0 +1,171 @@
+package br.com.api.metrics;
+
+import br.com.api.config.DocumentStorageProperties;
+
+import br.com.api.repository.DocumentBlobRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToDoubleFunction;
+
+@Component
+public class DocumentMetrics {
+
+    public static final String UPLOAD = "upload";
+    public static final String BATCH_UPLOAD = "batch-upload";
+    public static final String UPDATE = "update";
+    public static final String PREVIOUS_VERSION = "previous-version";
+    public static final String DELETE = "delete";
+    public static final String DOWNLOAD = "download";
+
+    private final MeterRegistry meterRegistry;
+    private final Map<String, AtomicInteger> activeOperations = new ConcurrentHashMap<>();
+    private final DocumentBlobRepository documentBlobRepository;
+    private final AtomicLong storedBlobsSize = new AtomicLong();
+
+    public DocumentMetrics(MeterRegistry meterRegistry, DocumentStorageProperties documentStorageProperties,
+                           DocumentBlobRepository documentBlobRepository) {
+
+        this.meterRegistry = meterRegistry;
+        this.documentBlobRepository = documentBlobRepository;
+
+        for (String operation : Set.of(UPLOAD, BATCH_UPLOAD, UPDATE, PREVIOUS_VERSION, DELETE, DOWNLOAD)) {
+
+            activeOperations.put(operation, meterRegistry.gauge("document.operations.active",
+                    Tags.of("operation", operation), new AtomicInteger()));
+        }
+
+        for (Path directory : takeTheStorageDirectories(documentStorageProperties)) {
+
+            registerDirectoryGauge("document.storage.directory.total", directory, FileStore::getTotalSpace);
+            registerDirectoryGauge("document.storage.directory.usable", directory, FileStore::getUsableSpace);
+        }
+
+        Gauge.builder("document.storage.blobs.size", storedBlobsSize, AtomicLong::get)
+                .description("Bytes kept by the blob store, deltas counted by their stored size")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /*
+    * The sum reads the whole blob table, so it is refreshed here once a minute instead of on every scrape.
+    * */
+    @Scheduled(fixedDelayString = "PT1M")
+    public void refreshStoredBlobsSize() {
+
+        storedBlobsSize.set(documentBlobRepository.sumStoredSize());
+    }
+
+    public <T, E extends Exception> T recordOperation(String operation, DocumentOperation<T, E> documentOperation)
+            throws E {
+
+        AtomicInteger active = activeOperations.get(operation);
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "failure";
+
+        active.incrementAndGet();
+
+        try {
+
+            T result = documentOperation.run();
+            outcome = "success";
+
+            return result;
+        } catch (Exception exception) {
+
+            Counter.builder("document.operations.failures")
+                    .description("Document operations that ended with an exception, by its type")
+                    .tag("operation", operation)
+                    .tag("cause", exception.getClass().getSimpleName())
+                    .register(meterRegistry)
+                    .increment();
+
+            throw exception;
+        } finally {
+
+            active.decrementAndGet();
+            sample.stop(Timer.builder("document.operations")
+                    .description("Time spent on each document operation")
+                    .tag("operation", operation)
+                    .tag("outcome", outcome)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry));
+        }
+    }
+
+    public void countBytes(String operation, long bytes) {
+
+        Counter.builder("document.operations.bytes")
+                .description("Document content written by uploads or sent by downloads")
+                .baseUnit("bytes")
+                .tag("operation", operation)
+                .register(meterRegistry)
+                .increment(bytes);
+    }
+
+    public Set<Path> takeTheStorageDirectories(DocumentStorageProperties documentStorageProperties) {
+
+        Set<Path> directories = new LinkedHashSet<>();
+        directories.add(documentStorageProperties.getDocumentStorageLocation());
+
+        for (String shardedDirectory : documentStorageProperties.getStorage().getShardedDirectories()) {
+
+            directories.add(Paths.get(shardedDirectory).toAbsolutePath().normalize());
+        }
+
+        return directories;
+    }
+
+    public void registerDirectoryGauge(String name, Path directory, FileStoreSpace fileStoreSpace) {
+
+        ToDoubleFunction<Path> space = path -> {
+
+            try {
+
+                return fileStoreSpace.read(Files.getFileStore(path));
+            } catch (IOException exception) {
+
+                // The directory is only created with the first document
+                return Double.NaN;
+            }
+        };
+
+        Gauge.builder(name, directory, space)
+                .description("Space of the file system holding the document directory")
+                .baseUnit("bytes")
+                .tag("directory", directory.toString())
+                .register(meterRegistry);
+    }
+
+    @FunctionalInterface
+    public interface DocumentOperation<T, E extends Exception> {
+
+        T run() throws E;
+    }
+
+    @FunctionalInterface
+    public interface FileStoreSpace {
+
+        long read(FileStore fileStore) throws IOException;
+    }
+}
@@ -0,0 +1,90 @@
+package br.com.api.repository;
+
+import br.com.api.domain.entities.DocumentBlobs;
+
+import jakarta.persistence.LockModeType;
+import jakarta.transaction.Transactional;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface DocumentBlobRepository extends JpaRepository<DocumentBlobs, String> {
+
+    @Transactional
+    @Modifying(flushAutomatically = true)
+    @Query("""
+            update DocumentBlobs b set b.referenceCount = b.referenceCount + 1, b.released = null
+            where b.hash = :hash""")
+    int incrementReferenceCount(@Param("hash") String hash);
+
+    @Transactional
+    @Modifying(flushAutomatically = true)
+    @Query("update DocumentBlobs b set b.referenceCount = b.referenceCount - 1 where b.hash = :hash")
+    int decrementReferenceCount(@Param("hash") String hash);
+
+    /*
+    * Inserts the blob with one reference or, when a concurrent upload of the same content got there first,
+    * adds the reference to its row. Returns 1 for an insert and 2 when the row already existed.
+    * */
+    @Transactional
+    @Modifying(flushAutomatically = true)
+    @Query(nativeQuery = true, value = """
+            insert into tb_document_blob (hash, size, stored_size, encoding, reference_count, creation)
+            values (:hash, :size, :storedSize, :encoding, 1, :creation)
+            on duplicate key update reference_count = reference_count + 1, released = null""")
+    int insertOrReference(@Param("hash") String hash, @Param("size") long size, @Param("storedSize") Long storedSize,
+                          @Param("encoding") String encoding, @Param("creation") LocalDate creation);
+
+    @Transactional
+    @Modifying(flushAutomatically = true)
+    @Query("update DocumentBlobs b set b.released = :now where b.hash = :hash and b.referenceCount = 0")
+    int markAsReleased(@Param("hash") String hash, @Param("now") LocalDateTime now);
+
+    @Query("""
+            select b.hash from DocumentBlobs b
+            where b.referenceCount = 0 and b.released < :releasedBefore
+            order by b.released""")
+    List<String> findReleasedHashes(@Param("releasedBefore") LocalDateTime releasedBefore, Pageable pageable);
+
+    /*
+    * Locks the row until the transaction ends, an upload of the same content waits on it instead of taking
+    * back a blob whose files are being deleted.
+    * */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select b from DocumentBlobs b where b.hash = :hash")
+    Optional<DocumentBlobs> findByHashForUpdate(@Param("hash") String hash);
+
+    @Query("select b.referenceCount from DocumentBlobs b where b.hash = :hash")
+    Integer findReferenceCount(@Param("hash") String hash);
+
+    @Transactional
+    @Modifying(flushAutomatically = true)
+    @Query("""
+            update DocumentBlobs b set b.baseHash = :baseHash, b.storedSize = :storedSize, b.encoding = null,
+                b.fullCopyReleased = :now
+            where b.hash = :hash and b.baseHash is null and b.referenceCount = 1""")
+    int markAsDelta(@Param("hash") String hash, @Param("baseHash") String baseHash,
+                    @Param("storedSize") long storedSize, @Param("now") LocalDateTime now);
+
+    @Query("""
+            select b.hash from DocumentBlobs b
+            where b.fullCopyReleased < :releasedBefore
+            order by b.fullCopyReleased""")
+    List<String> findReplacedFullCopyHashes(@Param("releasedBefore") LocalDateTime releasedBefore,
+                                            Pageable pageable);
+
+    @Query("select coalesce(sum(coalesce(b.storedSize, b.size)), 0) from DocumentBlobs b")
+    long sumStoredSize();
+}
@@ -0,0 +1,63 @@
+package br.com.api.repository;
+
+import br.com.api.domain.entities.DocumentJobs;
+import br.com.api.domain.entities.Documents;
+
+import br.com.api.domain.enums.DocumentJobStatus;
+
+import jakarta.transaction.Transactional;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface DocumentJobRepository extends JpaRepository<DocumentJobs, UUID> {
+
+    @Query("select j.uuid from DocumentJobs j where j.status = :status order by j.updated")
+    List<UUID> findUuidsByStatus(@Param("status") DocumentJobStatus status, Pageable pageable);
+
+    @EntityGraph(attributePaths = {"document", "document.blob", "document.versionedDocument"})
+    DocumentJobs findByUuid(UUID uuid);
+
+    List<DocumentJobs> findByDocumentOrderByStage(Documents document);
+
+    @Transactional
+    @Modifying
+    @Query("""
+            update DocumentJobs j
+            set j.status = br.com.api.domain.enums.DocumentJobStatus.RUNNING,
+                j.attempts = j.attempts + 1,
+                j.updated = :now
+            where j.uuid = :uuid and j.status = br.com.api.domain.enums.DocumentJobStatus.PENDING""")
+    int claimJob(@Param("uuid") UUID uuid, @Param("now") LocalDateTime now);
+
+    @Transactional
+    @Modifying
+    @Query("""
+            update DocumentJobs j
+            set j.status = br.com.api.domain.enums.DocumentJobStatus.PENDING, j.updated = :now
+            where j.status = br.com.api.domain.enums.DocumentJobStatus.RUNNING and j.updated < :runningSince""")
+    int releaseStaleJobs(@Param("runningSince") LocalDateTime runningSince, @Param("now") LocalDateTime now);
+
+    /*
+    * Undoes claimJob for a job the workers refused, the attempt never ran so it isn't counted.
+    * */
+    @Transactional
+    @Modifying
+    @Query("""
+            update DocumentJobs j
+            set j.status = br.com.api.domain.enums.DocumentJobStatus.PENDING,
+                j.attempts = j.attempts - 1,
+                j.updated = :now
+            where j.uuid = :uuid and j.status = br.com.api.domain.enums.DocumentJobStatus.RUNNING""")
+    int unclaimJob(@Param("uuid") UUID uuid, @Param("now") LocalDateTime now);
+}
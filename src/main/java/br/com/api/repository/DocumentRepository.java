@@ -1,15 +1,49 @@
 package br.com.api.repository;
 
+import br.com.api.domain.dto.DocumentSummaryResponse;
+
 import br.com.api.domain.entities.Documents;
+import br.com.api.domain.entities.VersionedDocuments;
 
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
 import java.util.UUID;
 
 @Repository
-public interface DocumentRepository extends JpaRepository<Documents, UUID> {
+public interface DocumentRepository extends JpaRepository<Documents, UUID>, DocumentRepositoryCustom {
+
+    List<Documents> findByClientUuidAndGuideName(UUID clientUuid, String guideName);
+    List<Documents> findByClientUuidAndGuideNameStartingWithOrderByVersionDesc(UUID clientUuid,
+                                                                              String guideNamePrefix);
+    List<Documents> findByVersionedDocumentAndExclusionIsNullOrderByVersionDesc(
+            VersionedDocuments versionedDocument);
+    Documents findByVersionedDocumentAndVersionAndExclusionIsNull(VersionedDocuments versionedDocument,
+                                                                   Integer version);
+    Documents findTopByVersionedDocumentAndVersionLessThanAndExclusionIsNullOrderByVersionDesc(
+            VersionedDocuments versionedDocument, Integer version);
+
+    @EntityGraph(attributePaths = "blob")
+    Documents findTopByVersionedDocumentAndVersionGreaterThanAndExclusionIsNullOrderByVersionAsc(
+            VersionedDocuments versionedDocument, Integer version);
+    List<Documents> findTop100ByBlobIsNullAndExclusionIsNullAndUuidGreaterThanOrderByUuid(UUID uuid);
+    List<Documents> findTop100ByVersionedDocumentIsNullAndExclusionIsNullAndUuidGreaterThanOrderByUuid(UUID uuid);
+
+    @Query("""
+            select new br.com.api.domain.dto.DocumentSummaryResponse(
+                d.uuid, d.name, d.guideName, d.extension, d.version, d.validity, d.creation, d.updated, d.exclusion)
+            from Documents d
+            where d.client.uuid = :clientUuid""")
+    List<DocumentSummaryResponse> findSummariesByClientUuid(UUID clientUuid);
 
-    List<Documents> findByGuideName(String guideName);
+    @Query("""
+            select new br.com.api.domain.dto.DocumentSummaryResponse(
+                d.uuid, d.name, d.guideName, d.extension, d.version, d.validity, d.creation, d.updated, d.exclusion)
+            from Documents d
+            where d.versionedDocument = :versionedDocument and d.exclusion is null
+            order by d.version desc""")
+    List<DocumentSummaryResponse> findSummariesByVersionedDocument(VersionedDocuments versionedDocument);
 }
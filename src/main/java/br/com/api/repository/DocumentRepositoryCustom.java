@@ -0,0 +1,22 @@
+package br.com.api.repository;
+
+import br.com.api.domain.dto.DocumentArchiveEntry;
+import br.com.api.domain.dto.DocumentListRequest;
+import br.com.api.domain.dto.DocumentSummaryResponse;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+public interface DocumentRepositoryCustom {
+
+    List<DocumentSummaryResponse> findPageByClient(UUID clientUuid, DocumentListRequest request, String sortField,
+                                                   boolean ascending, Comparable<?> afterValue, UUID afterUuid,
+                                                   int limit);
+
+    Stream<DocumentSummaryResponse> streamByClient(UUID clientUuid, DocumentListRequest request, String sortField,
+                                                   boolean ascending);
+
+    List<DocumentArchiveEntry> findArchivePageByClient(UUID clientUuid, DocumentListRequest request,
+                                                       DocumentArchiveEntry afterEntry, int limit);
+}
@@ -0,0 +1,204 @@
+package br.com.api.repository;
+
+import br.com.api.config.DocumentStorageProperties;
+
+import br.com.api.domain.dto.DocumentArchiveEntry;
+import br.com.api.domain.dto.DocumentListRequest;
+import br.com.api.domain.dto.DocumentSummaryResponse;
+
+import br.com.api.domain.entities.Documents;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+import jakarta.persistence.criteria.*;
+
+import org.hibernate.jpa.AvailableHints;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+public class DocumentRepositoryImpl implements DocumentRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final int resultFetchSize;
+
+    public DocumentRepositoryImpl(DocumentStorageProperties documentStorageProperties) {
+
+        this.resultFetchSize = documentStorageProperties.getStreaming().getResultFetchSize();
+    }
+
+    @Override
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public List<DocumentSummaryResponse> findPageByClient(UUID clientUuid, DocumentListRequest request,
+                                                          String sortField, boolean ascending,
+                                                          Comparable<?> afterValue, UUID afterUuid, int limit) {
+
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<DocumentSummaryResponse> criteriaQuery =
+                criteriaBuilder.createQuery(DocumentSummaryResponse.class);
+        Root<Documents> document = criteriaQuery.from(Documents.class);
+
+        List<Predicate> predicates = createFilterPredicates(criteriaBuilder, document, clientUuid, request);
+
+        if (afterValue != null && afterUuid != null) {
+
+            Expression sortExpression = document.get(sortField);
+            Expression<UUID> uuidExpression = document.get("uuid");
+
+            predicates.add(ascending
+                    ? criteriaBuilder.or(
+                            criteriaBuilder.greaterThan(sortExpression, (Comparable) afterValue),
+                            criteriaBuilder.and(criteriaBuilder.equal(sortExpression, afterValue),
+                                    criteriaBuilder.greaterThan(uuidExpression, afterUuid)))
+                    : criteriaBuilder.or(
+                            criteriaBuilder.lessThan(sortExpression, (Comparable) afterValue),
+                            criteriaBuilder.and(criteriaBuilder.equal(sortExpression, afterValue),
+                                    criteriaBuilder.lessThan(uuidExpression, afterUuid))));
+        }
+
+        return entityManager.createQuery(selectSummaries(criteriaBuilder, criteriaQuery, document, predicates,
+                        sortField, ascending))
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    @Override
+    public Stream<DocumentSummaryResponse> streamByClient(UUID clientUuid, DocumentListRequest request,
+                                                          String sortField, boolean ascending) {
+
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<DocumentSummaryResponse> criteriaQuery =
+                criteriaBuilder.createQuery(DocumentSummaryResponse.class);
+        Root<Documents> document = criteriaQuery.from(Documents.class);
+
+        List<Predicate> predicates = createFilterPredicates(criteriaBuilder, document, clientUuid, request);
+
+        return entityManager.createQuery(selectSummaries(criteriaBuilder, criteriaQuery, document, predicates,
+                        sortField, ascending))
+                .setHint(AvailableHints.HINT_FETCH_SIZE, resultFetchSize)
+                .setHint(AvailableHints.HINT_READ_ONLY, true)
+                .getResultStream();
+    }
+
+    /*
+    * Pages through the archive in the order of the entries, name, version and uuid, after the last entry
+    * of the previous page.
+    * */
+    @Override
+    public List<DocumentArchiveEntry> findArchivePageByClient(UUID clientUuid, DocumentListRequest request,
+                                                              DocumentArchiveEntry afterEntry, int limit) {
+
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<DocumentArchiveEntry> criteriaQuery = criteriaBuilder.createQuery(DocumentArchiveEntry.class);
+        Root<Documents> document = criteriaQuery.from(Documents.class);
+        Join<Object, Object> blob = document.join("blob", JoinType.LEFT);
+
+        List<Predicate> predicates = createFilterPredicates(criteriaBuilder, document, clientUuid, request);
+        predicates.add(criteriaBuilder.isNull(document.get("exclusion")));
+
+        if (afterEntry != null) {
+
+            Expression<String> nameExpression = document.get("name");
+            Expression<Integer> versionExpression = document.get("version");
+            Expression<UUID> uuidExpression = document.get("uuid");
+
+            predicates.add(criteriaBuilder.or(
+                    criteriaBuilder.greaterThan(nameExpression, afterEntry.name()),
+                    criteriaBuilder.and(criteriaBuilder.equal(nameExpression, afterEntry.name()),
+                            criteriaBuilder.or(
+                                    criteriaBuilder.greaterThan(versionExpression, afterEntry.version()),
+                                    criteriaBuilder.and(criteriaBuilder.equal(versionExpression, afterEntry.version()),
+                                            criteriaBuilder.greaterThan(uuidExpression, afterEntry.uuid()))))));
+        }
+
+        criteriaQuery.select(criteriaBuilder.construct(DocumentArchiveEntry.class,
+                        document.get("uuid"),
+                        document.get("name"),
+                        document.get("guideName"),
+                        document.get("extension"),
+                        document.get("version"),
+                        blob.get("hash"),
+                        blob.get("baseHash"),
+                        blob.get("encoding")))
+                .where(predicates.toArray(new Predicate[0]))
+                .orderBy(criteriaBuilder.asc(document.get("name")), criteriaBuilder.asc(document.get("version")),
+                        criteriaBuilder.asc(document.get("uuid")));
+
+        return entityManager.createQuery(criteriaQuery)
+                .setHint(AvailableHints.HINT_READ_ONLY, true)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    public CriteriaQuery<DocumentSummaryResponse> selectSummaries(CriteriaBuilder criteriaBuilder,
+                                                                  CriteriaQuery<DocumentSummaryResponse> criteriaQuery,
+                                                                  Root<Documents> document,
+                                                                  List<Predicate> predicates, String sortField,
+                                                                  boolean ascending) {
+
+        return criteriaQuery.select(criteriaBuilder.construct(DocumentSummaryResponse.class,
+                        document.get("uuid"),
+                        document.get("name"),
+                        document.get("guideName"),
+                        document.get("extension"),
+                        document.get("version"),
+                        document.get("validity"),
+                        document.get("creation"),
+                        document.get("updated"),
+                        document.get("exclusion")))
+                .where(predicates.toArray(new Predicate[0]))
+                .orderBy(ascending
+                        ? List.of(criteriaBuilder.asc(document.get(sortField)), criteriaBuilder.asc(document.get("uuid")))
+                        : List.of(criteriaBuilder.desc(document.get(sortField)),
+                                criteriaBuilder.desc(document.get("uuid"))));
+    }
+
+    public List<Predicate> createFilterPredicates(CriteriaBuilder criteriaBuilder, Root<Documents> document,
+                                                  UUID clientUuid, DocumentListRequest request) {
+
+        List<Predicate> predicates = new ArrayList<>();
+        predicates.add(criteriaBuilder.equal(document.get("client").get("uuid"), clientUuid));
+
+        if (request.name() != null && !request.name().isBlank()) {
+
+            predicates.add(criteriaBuilder.like(document.get("name"), escapeLike(request.name()) + "%", '\\'));
+        }
+
+        if (request.extension() != null && !request.extension().isBlank()) {
+
+            predicates.add(criteriaBuilder.equal(document.get("extension"), request.extension()));
+        }
+
+        if (request.validFrom() != null) {
+
+            predicates.add(criteriaBuilder.greaterThanOrEqualTo(document.get("validity"), request.validFrom()));
+        }
+
+        if (request.validUntil() != null) {
+
+            predicates.add(criteriaBuilder.lessThanOrEqualTo(document.get("validity"), request.validUntil()));
+        }
+
+        if (request.createdFrom() != null) {
+
+            predicates.add(criteriaBuilder.greaterThanOrEqualTo(document.get("creation"), request.createdFrom()));
+        }
+
+        if (request.createdUntil() != null) {
+
+            predicates.add(criteriaBuilder.lessThanOrEqualTo(document.get("creation"), request.createdUntil()));
+        }
+
+        return predicates;
+    }
+
+    public String escapeLike(String value) {
+
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
@@ -0,0 +1,23 @@
+package br.com.api.repository;
+
+import br.com.api.domain.entities.UploadChunks;
+import br.com.api.domain.entities.UploadSessions;
+
+import jakarta.transaction.Transactional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface UploadChunkRepository extends JpaRepository<UploadChunks, UUID> {
+
+    List<UploadChunks> findByUploadSessionOrderByNumber(UploadSessions uploadSession);
+    boolean existsByUploadSessionAndNumber(UploadSessions uploadSession, Integer number);
+    long countByUploadSession(UploadSessions uploadSession);
+
+    @Transactional
+    void deleteByUploadSession(UploadSessions uploadSession);
+}
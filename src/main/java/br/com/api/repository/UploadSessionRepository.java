@@ -0,0 +1,16 @@
+package br.com.api.repository;
+
+import br.com.api.domain.entities.UploadSessions;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface UploadSessionRepository extends JpaRepository<UploadSessions, UUID> {
+
+    UploadSessions findByUuidAndUsername(UUID uuid, String username);
+    List<UploadSessions> findByCreationBefore(LocalDateTime creation);
+}
@@ -1,14 +1,40 @@
 package br.com.api.repository;
 
+import br.com.api.domain.dto.UserPrincipal;
+
+import br.com.api.domain.entities.Clients;
 import br.com.api.domain.entities.Users;
 import br.com.api.domain.entities.UserClient;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.UUID;
 
 @Repository
 public interface UserClientRepository extends JpaRepository<UserClient, UUID> {
 
     UserClient findByUser(Users user);
+
+    @Query("""
+            select u.username
+            from UserClient uc
+            join uc.user u
+            where uc.client.uuid = :clientUuid and uc.approvedRequest is null""")
+    List<String> findOwnerUsernamesByClientUuid(UUID clientUuid);
+
+    @EntityGraph(attributePaths = "user")
+    List<UserClient> findByClientAndApprovedRequestFalse(Clients client);
+
+    @Query("""
+            select new br.com.api.domain.dto.UserPrincipal(
+                u.uuid, u.username, c.uuid, u.excluded, uc.approvedRequest, r.roleName)
+            from UserClient uc
+            join uc.user u
+            join uc.client c
+            left join u.roleList r
+            where u.username = :username""")
+    List<UserPrincipal> findPrincipalsByUsername(String username);
 }
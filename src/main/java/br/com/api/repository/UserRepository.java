@@ -1,6 +1,7 @@
 package br.com.api.repository;
 
 import br.com.api.domain.entities.Users;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
@@ -9,5 +10,6 @@ import java.util.UUID;
 @Repository
 public interface UserRepository extends JpaRepository<Users, UUID> {
 
+    @EntityGraph(attributePaths = "roleList")
     Users findByUsername(String username);
 }
@@ -0,0 +1,72 @@
+package br.com.api.repository;
+
+import br.com.api.domain.entities.VersionedDocuments;
+
+import jakarta.persistence.LockModeType;
+import jakarta.transaction.Transactional;
+
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface VersionedDocumentRepository extends JpaRepository<VersionedDocuments, UUID> {
+
+    @EntityGraph(attributePaths = "currentVersion")
+    VersionedDocuments findByGuideNameAndExclusionIsNull(String guideName);
+
+    @EntityGraph(attributePaths = "currentVersion")
+    VersionedDocuments findByClientUuidAndGuideNameAndExclusionIsNull(UUID clientUuid, String guideName);
+
+    /*
+    * Locks the head until the transaction ends, concurrent changes of the same document wait on it instead of
+    * reading the same last version.
+    * */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("""
+            select v from VersionedDocuments v
+            where v.client.uuid = :clientUuid and v.guideName = :guideName and v.exclusion is null""")
+    VersionedDocuments findByClientUuidAndGuideNameForUpdate(@Param("clientUuid") UUID clientUuid,
+                                                             @Param("guideName") String guideName);
+
+    @Query("""
+            select v.guideName
+            from VersionedDocuments v
+            where v.guideName in :guideNames and v.exclusion is null""")
+    List<String> findGuideNamesByGuideNameInAndExclusionIsNull(Collection<String> guideNames);
+
+    /*
+    * Inserts a head unless a live document already holds its name, returns 0 when the unique live guide name
+    * refused the row. An upload of the same name running at the same time waits for the transaction that
+    * inserted it first.
+    * */
+    @Transactional
+    @Modifying(flushAutomatically = true)
+    @Query(nativeQuery = true, value = """
+            insert ignore into tb_versioned_document (uuid, guide_name, live_guide_name, extension, last_version,
+                creation, client_uuid)
+            values (:uuid, :guideName, :guideName, :extension, 0, :creation, :clientUuid)""")
+    int insertIfNameIsFree(@Param("uuid") UUID uuid, @Param("guideName") String guideName,
+                           @Param("extension") String extension, @Param("creation") LocalDate creation,
+                           @Param("clientUuid") UUID clientUuid);
+
+    /*
+    * Heads saved before the live guide name column existed.
+    * */
+    @Transactional
+    @Modifying
+    @Query("""
+            update VersionedDocuments v set v.liveGuideName = v.guideName
+            where v.exclusion is null and v.liveGuideName is null""")
+    int fillLiveGuideNames();
+}
@@ -0,0 +1,188 @@
+package br.com.api.service;
+
+import br.com.api.config.DocumentStorageProperties;
+
+import br.com.api.domain.dto.DocumentArchiveEntry;
+import br.com.api.domain.dto.DocumentListRequest;
+
+import br.com.api.domain.entities.Documents;
+import br.com.api.domain.entities.VersionedDocuments;
+
+import br.com.api.exception.BadRequestException;
+
+import br.com.api.repository.DocumentRepository;
+
+import br.com.api.storage.DocumentStorage;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import java.nio.file.NoSuchFileException;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DocumentArchiveService {
+
+    private final DocumentRepository documentRepository;
+    private final DocumentStorage documentStorage;
+    private final DocumentService documentService;
+    private final DocumentBlobService documentBlobService;
+    private final DocumentVersionService documentVersionService;
+    private final UserPrincipalService userPrincipalService;
+    private final DocumentStorageProperties documentStorageProperties;
+    private final TransactionTemplate transactionTemplate;
+
+    @Transactional(readOnly = true)
+    public List<DocumentArchiveEntry> findDocumentsByName(List<String> documentNames, String username) {
+
+        List<DocumentArchiveEntry> archiveEntries = new ArrayList<>();
+
+        for (String documentName : new LinkedHashSet<>(documentNames)) {
+
+            Documents document = documentService.findDocumentByFileName(documentName, username, null);
+            archiveEntries.add(takeTheArchiveEntry(document));
+        }
+
+        return archiveEntries;
+    }
+
+    @Transactional(readOnly = true)
+    public List<DocumentArchiveEntry> findDocumentHistory(String documentName, String username) {
+
+        int substringBegin = documentName.indexOf(".");
+
+        if (substringBegin < 0) {
+
+            throw new BadRequestException("Inform the document name with its extension, for example: test.txt");
+        }
+
+        String guideName = documentService.renameDocumentNameToAddUser(documentName.substring(0, substringBegin),
+                username);
+        VersionedDocuments versionedDocument = documentService.findVersionedDocument(guideName, username);
+
+        if (versionedDocument == null
+                || !versionedDocument.getExtension().equals(documentName.substring(substringBegin + 1))) {
+
+            throw new BadRequestException("No documents were found with the name " + documentName);
+        }
+
+        return documentVersionService.listVersions(versionedDocument).stream()
+                .map(this::takeTheArchiveEntry)
+                .toList();
+    }
+
+    public void writeArchive(List<DocumentArchiveEntry> archiveEntries, boolean withVersion,
+                             OutputStream outputStream)
+            throws IOException {
+
+        ZipOutputStream zipOutputStream = createZipOutputStream(outputStream);
+
+        for (DocumentArchiveEntry archiveEntry : archiveEntries) {
+
+            writeArchiveEntry(zipOutputStream, archiveEntry, withVersion);
+        }
+
+        zipOutputStream.finish();
+        outputStream.flush();
+    }
+
+    /*
+    * The rows are read a page at a time in short transactions, a download of several gigabytes doesn't keep a
+    * transaction and a streaming result set open while the client reads it.
+    * */
+    public void writeArchive(DocumentListRequest request, String username, OutputStream outputStream)
+            throws IOException {
+
+        UUID clientUuid = userPrincipalService.findApprovedPrincipal(username).clientId();
+        int archivePageSize = documentStorageProperties.getStreaming().getArchivePageSize();
+        ZipOutputStream zipOutputStream = createZipOutputStream(outputStream);
+        DocumentArchiveEntry lastEntry = null;
+        List<DocumentArchiveEntry> archiveEntries;
+
+        do {
+
+            DocumentArchiveEntry afterEntry = lastEntry;
+            archiveEntries = transactionTemplate.execute(status ->
+                    documentRepository.findArchivePageByClient(clientUuid, request, afterEntry, archivePageSize));
+
+            for (DocumentArchiveEntry archiveEntry : archiveEntries) {
+
+                writeArchiveEntry(zipOutputStream, archiveEntry, true);
+                lastEntry = archiveEntry;
+            }
+        } while (archiveEntries.size() == archivePageSize);
+
+        zipOutputStream.finish();
+        outputStream.flush();
+    }
+
+    public ZipOutputStream createZipOutputStream(OutputStream outputStream) {
+
+        // Entries are written with data descriptors, so each document goes to the client as it is read and
+        // nothing is buffered besides the deflater window
+        ZipOutputStream zipOutputStream = new ZipOutputStream(outputStream);
+        zipOutputStream.setLevel(Deflater.BEST_SPEED);
+
+        return zipOutputStream;
+    }
+
+    public void writeArchiveEntry(ZipOutputStream zipOutputStream, DocumentArchiveEntry archiveEntry,
+                                  boolean withVersion)
+            throws IOException {
+
+        InputStream inputStream;
+
+        try {
+
+            inputStream = archiveEntry.blobHash() == null
+                    ? documentStorage.read(archiveEntry.storageKey(), 0)
+                    : documentBlobService.openContent(archiveEntry.blobHash(), archiveEntry.baseHash(),
+                            archiveEntry.encoding());
+        } catch (NoSuchFileException exception) {
+
+            // The response has already started, so a missing document is left out instead of failing the archive
+            log.warn("The document {} was not found in the document system and was left out of the archive",
+                    archiveEntry.storageKey());
+            return;
+        }
+
+        try (inputStream) {
+
+            zipOutputStream.putNextEntry(new ZipEntry(takeTheEntryName(archiveEntry, withVersion)));
+            inputStream.transferTo(zipOutputStream);
+            zipOutputStream.closeEntry();
+        }
+    }
+
+    public String takeTheEntryName(DocumentArchiveEntry archiveEntry, boolean withVersion) {
+
+        return withVersion
+                ? archiveEntry.name() + "_V" + archiveEntry.version() + "." + archiveEntry.extension()
+                : archiveEntry.name() + "." + archiveEntry.extension();
+    }
+
+    public DocumentArchiveEntry takeTheArchiveEntry(Documents document) {
+
+        return new DocumentArchiveEntry(document.getUuid(), document.getName(), document.getGuideName(), document.getExtension(),
+                document.getVersion(), document.getBlob() == null ? null : document.getBlob().getHash(),
+                document.getBlob() == null ? null : document.getBlob().getBaseHash(),
+                document.getBlob() == null ? null : document.getBlob().getEncoding());
+    }
+}
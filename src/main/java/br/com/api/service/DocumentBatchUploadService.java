@@ -0,0 +1,335 @@
+package br.com.api.service;
+
+import br.com.api.config.DocumentStorageProperties;
+
+import br.com.api.domain.dto.DocumentBatchItemResponse;
+import br.com.api.domain.dto.DocumentBatchResponse;
+import br.com.api.domain.dto.DocumentRequest;
+
+import br.com.api.exception.BadRequestException;
+
+import jakarta.annotation.PreDestroy;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.apache.commons.io.FilenameUtils;
+
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+@Slf4j
+@Service
+public class DocumentBatchUploadService {
+
+    private final DocumentService documentService;
+    private final DocumentUploadService documentUploadService;
+    private final DocumentBlobService documentBlobService;
+    private final UserPrincipalService userPrincipalService;
+    private final DocumentStorageProperties.BatchUpload batchUpload;
+    private final ThreadPoolTaskExecutor stagingExecutor;
+
+    public DocumentBatchUploadService(DocumentService documentService, DocumentUploadService documentUploadService,
+                                      DocumentBlobService documentBlobService,
+                                      UserPrincipalService userPrincipalService,
+                                      DocumentStorageProperties documentStorageProperties) {
+
+        this.documentService = documentService;
+        this.documentUploadService = documentUploadService;
+        this.documentBlobService = documentBlobService;
+        this.userPrincipalService = userPrincipalService;
+        this.batchUpload = documentStorageProperties.getBatchUpload();
+
+        this.stagingExecutor = new ThreadPoolTaskExecutor();
+        this.stagingExecutor.setCorePoolSize(batchUpload.getParallelism());
+        this.stagingExecutor.setMaxPoolSize(batchUpload.getParallelism());
+        this.stagingExecutor.setThreadNamePrefix("document-batch-");
+        this.stagingExecutor.initialize();
+    }
+
+    public DocumentBatchResponse addNewDocuments(List<MultipartFile> multipartFiles, DocumentRequest request,
+                                                 String username) {
+
+        userPrincipalService.findActivePrincipal(username);
+        returnIfBatchIsTooLarge(multipartFiles.size());
+
+        List<DocumentBatchItemResponse> results = new ArrayList<>();
+        Map<Integer, MultipartFile> validDocuments = new LinkedHashMap<>();
+        Map<Integer, CompletableFuture<StagedDocument>> stagedDocuments = new LinkedHashMap<>();
+        Set<String> guideNames = new HashSet<>();
+
+        for (MultipartFile multipartFile : multipartFiles) {
+
+            String documentName = multipartFile.getOriginalFilename();
+            String error = validateDocumentName(documentName, username, guideNames);
+
+            if (error != null) {
+
+                results.add(returnOfFailure(documentName, error));
+                continue;
+            }
+
+            validDocuments.put(results.size(), multipartFile);
+            results.add(returnOfFailure(documentUploadService.getOriginalDocumentName(documentName), null));
+        }
+
+        // One query for the whole batch, a name taken after it is refused when the batch is saved
+        Set<String> existingGuideNames = documentService.findExistingDocumentNames(guideNames);
+
+        for (Map.Entry<Integer, MultipartFile> validDocument : validDocuments.entrySet()) {
+
+            String originalDocumentName = results.get(validDocument.getKey()).documentName();
+
+            if (existingGuideNames.contains(takeTheGuideName(originalDocumentName, username))) {
+
+                results.set(validDocument.getKey(), returnOfFailure(originalDocumentName,
+                        documentService.returnIfNameIsAlreadyUsed()));
+                continue;
+            }
+
+            stagedDocuments.put(validDocument.getKey(), CompletableFuture.supplyAsync(
+                    () -> stageDocument(originalDocumentName, validDocument.getValue()), stagingExecutor));
+        }
+
+        return persistStagedDocuments(results, stagedDocuments, request, username);
+    }
+
+    public DocumentBatchResponse addNewDocumentsFromZip(InputStream inputStream, DocumentRequest request,
+                                                        String username)
+            throws IOException {
+
+        userPrincipalService.findActivePrincipal(username);
+
+        List<DocumentBatchItemResponse> results = new ArrayList<>();
+        Map<Integer, CompletableFuture<StagedDocument>> stagedDocuments = new LinkedHashMap<>();
+        Set<String> guideNames = new HashSet<>();
+
+        try (ZipInputStream zipInputStream = new ZipInputStream(inputStream)) {
+
+            ZipEntry zipEntry;
+
+            while ((zipEntry = zipInputStream.getNextEntry()) != null) {
+
+                if (zipEntry.isDirectory()) {
+
+                    continue;
+                }
+
+                returnIfBatchIsTooLarge(results.size() + 1);
+
+                String documentName = FilenameUtils.getName(zipEntry.getName());
+                String error = validateDocumentName(documentName, username, guideNames);
+
+                if (error != null) {
+
+                    results.add(returnOfFailure(documentName, error));
+                    continue;
+                }
+
+                // The archive can only be read in order, so each entry is copied here and hashed by the
+                // workers while the next entry is being read, its name is checked when the batch is saved
+                Path stagedDocument = documentUploadService.stageDocument(zipInputStream, zipEntry.getSize());
+
+                stagedDocuments.put(results.size(), CompletableFuture.supplyAsync(
+                        () -> hashStagedDocument(documentName, stagedDocument), stagingExecutor));
+                results.add(returnOfFailure(documentName, null));
+            }
+        } catch (IOException | RuntimeException exception) {
+
+            deleteStagedDocuments(stagedDocuments);
+            throw exception;
+        }
+
+        return persistStagedDocuments(results, stagedDocuments, request, username);
+    }
+
+    public DocumentBatchResponse persistStagedDocuments(List<DocumentBatchItemResponse> results,
+                                                        Map<Integer, CompletableFuture<StagedDocument>>
+                                                                stagedDocuments,
+                                                        DocumentRequest request, String username) {
+
+        List<Integer> stagedIndexes = new ArrayList<>();
+        List<StagedDocument> documentsToPersist = new ArrayList<>();
+
+        try {
+
+            for (Map.Entry<Integer, CompletableFuture<StagedDocument>> entry : stagedDocuments.entrySet()) {
+
+                try {
+
+                    documentsToPersist.add(entry.getValue().join());
+                    stagedIndexes.add(entry.getKey());
+                } catch (CompletionException exception) {
+
+                    results.set(entry.getKey(), returnOfFailure(results.get(entry.getKey()).documentName(),
+                            "Unable to write the document: " + exception.getCause().getMessage()));
+                }
+            }
+
+            if (!documentsToPersist.isEmpty()) {
+
+                try {
+
+                    List<DocumentBatchItemResponse> persistedDocuments = documentService.addNewDocuments(
+                            documentsToPersist, request, username);
+
+                    for (int index = 0; index < stagedIndexes.size(); index++) {
+
+                        results.set(stagedIndexes.get(index), persistedDocuments.get(index));
+                    }
+                } catch (IOException | RuntimeException exception) {
+
+                    log.warn("Unable to save a batch of {} documents", documentsToPersist.size(), exception);
+
+                    for (Integer stagedIndex : stagedIndexes) {
+
+                        results.set(stagedIndex, returnOfFailure(results.get(stagedIndex).documentName(),
+                                "The batch could not be saved: " + exception.getMessage()));
+                    }
+                }
+            }
+        } finally {
+
+            deleteStagedDocuments(stagedDocuments);
+        }
+
+        int created = (int) results.stream().filter(item -> Boolean.TRUE.equals(item.created())).count();
+
+        return new DocumentBatchResponse(created, results.size() - created, results);
+    }
+
+    public StagedDocument stageDocument(String originalDocumentName, MultipartFile multipartFile) {
+
+        Path stagedDocument;
+
+        try {
+
+            stagedDocument = documentBlobService.takeTheStagingPath();
+        } catch (IOException exception) {
+
+            throw new UncheckedIOException(exception);
+        }
+
+        try {
+
+            multipartFile.transferTo(stagedDocument);
+        } catch (IOException exception) {
+
+            deleteStagedDocument(stagedDocument);
+            throw new UncheckedIOException(exception);
+        }
+
+        return hashStagedDocument(originalDocumentName, stagedDocument);
+    }
+
+    public StagedDocument hashStagedDocument(String originalDocumentName, Path stagedDocument) {
+
+        try {
+
+            return new StagedDocument(originalDocumentName, stagedDocument,
+                    documentBlobService.calculateHash(stagedDocument));
+        } catch (IOException exception) {
+
+            deleteStagedDocument(stagedDocument);
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    public String validateDocumentName(String documentName, String username, Set<String> guideNames) {
+
+        if (documentName == null || documentName.isBlank()) {
+
+            return "The document has no name";
+        }
+
+        String originalDocumentName;
+
+        try {
+
+            originalDocumentName = documentUploadService.getOriginalDocumentName(documentName);
+        } catch (BadRequestException exception) {
+
+            return exception.getMessage();
+        }
+
+        if (!guideNames.add(takeTheGuideName(originalDocumentName, username))) {
+
+            return "This name appears more than once in the batch";
+        }
+
+        return null;
+    }
+
+    public String takeTheGuideName(String originalDocumentName, String username) {
+
+        return documentService.renameDocumentNameToAddUser(FilenameUtils.getBaseName(originalDocumentName),
+                username);
+    }
+
+    public void returnIfBatchIsTooLarge(int numberOfDocuments) {
+
+        if (numberOfDocuments > batchUpload.getMaxDocuments()) {
+
+            throw new BadRequestException("A batch can have at most " + batchUpload.getMaxDocuments() +
+                    " documents");
+        }
+    }
+
+    public DocumentBatchItemResponse returnOfFailure(String documentName, String error) {
+
+        return DocumentBatchItemResponse.builder()
+                .documentName(documentName)
+                .created(false)
+                .error(error)
+                .build();
+    }
+
+    public void deleteStagedDocuments(Map<Integer, CompletableFuture<StagedDocument>> stagedDocuments) {
+
+        for (CompletableFuture<StagedDocument> stagedDocument : stagedDocuments.values()) {
+
+            try {
+
+                deleteStagedDocument(stagedDocument.join().path());
+            } catch (CompletionException exception) {
+
+                // A document that failed to be written already removed its own staged file
+            }
+        }
+    }
+
+    public void deleteStagedDocument(Path stagedDocument) {
+
+        try {
+
+            Files.deleteIfExists(stagedDocument);
+        } catch (IOException exception) {
+
+            log.warn("Unable to delete the staged document {}", stagedDocument, exception);
+        }
+    }
+
+    @PreDestroy
+    public void shutdownStagingExecutor() {
+
+        stagingExecutor.shutdown();
+    }
+}
@@ -0,0 +1,899 @@
+package br.com.api.service;
+
+import br.com.api.config.DocumentStorageProperties;
+
+import br.com.api.domain.entities.DocumentBlobs;
+
+import br.com.api.domain.enums.DocumentEncoding;
+
+import br.com.api.repository.DocumentBlobRepository;
+
+import br.com.api.storage.DocumentDeltaCodec;
+import br.com.api.storage.DocumentReadCache;
+import br.com.api.storage.DocumentStorage;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.apache.commons.io.FilenameUtils;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+@Slf4j
+@Service
+public class DocumentBlobService {
+
+    private static final int MAX_DELTA_CHAIN = 1000;
+    private static final int COMPRESSION_BUFFER_SIZE = 64 * 1024;
+    private static final int RELEASED_BLOBS_PER_SWEEP = 100;
+
+    private final DocumentBlobRepository documentBlobRepository;
+    private final DocumentStorageProperties documentStorageProperties;
+    private final DocumentStorage documentStorage;
+    private final DocumentDeltaCodec documentDeltaCodec;
+    private final DocumentReadCache documentReadCache;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate newTransactionTemplate;
+    private final Cache<String, Long> reconstructedBlobs;
+    private final Cache<String, Long> compressedVariants;
+
+    public DocumentBlobService(DocumentBlobRepository documentBlobRepository,
+                               DocumentStorageProperties documentStorageProperties,
+                               DocumentStorage documentStorage, DocumentDeltaCodec documentDeltaCodec,
+                               DocumentReadCache documentReadCache, TransactionTemplate transactionTemplate) {
+
+        this.documentBlobRepository = documentBlobRepository;
+        this.documentStorageProperties = documentStorageProperties;
+        this.documentStorage = documentStorage;
+        this.documentDeltaCodec = documentDeltaCodec;
+        this.documentReadCache = documentReadCache;
+        this.transactionTemplate = transactionTemplate;
+
+        // Work done after the transaction of the caller completed can't join it anymore
+        this.newTransactionTemplate = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        this.newTransactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+        // Weighed in kilobytes so documents of several gigabytes still fit the int weight
+        this.reconstructedBlobs = Caffeine.newBuilder()
+                .maximumWeight(documentStorageProperties.getDelta().getReconstructionCacheSize().toKilobytes())
+                .weigher((String hash, Long size) -> (int) Math.min(Integer.MAX_VALUE, Math.max(1, size / 1024)))
+                .removalListener((String hash, Long size, RemovalCause cause) -> deleteReconstructedBlob(hash))
+                .build();
+
+        // A content that doesn't compress well is remembered with a negative size and no copy on disk
+        this.compressedVariants = Caffeine.newBuilder()
+                .maximumWeight(documentStorageProperties.getDownload().getCompressedVariantCacheSize().toKilobytes())
+                .weigher((String hash, Long size) -> (int) Math.min(Integer.MAX_VALUE, Math.max(1, size / 1024)))
+                .removalListener((String hash, Long size, RemovalCause cause) -> deleteCompressedVariant(hash))
+                .build();
+    }
+
+    public Path takeTheStagingPath() throws IOException {
+
+        Path documentPathStorage = documentStorageProperties.getDocumentStorageLocation();
+        Files.createDirectories(documentPathStorage);
+
+        return documentPathStorage.resolve(UUID.randomUUID() + ".part");
+    }
+
+    public DocumentBlobs storeBlob(Path stagedDocument, String documentName) throws IOException {
+
+        return storeBlob(stagedDocument, calculateHash(stagedDocument), documentName);
+    }
+
+    public DocumentBlobs storeBlob(Path stagedDocument, String hash, String documentName) throws IOException {
+
+        long size = Files.size(stagedDocument);
+
+        if (documentBlobRepository.incrementReferenceCount(hash) > 0) {
+
+            Files.deleteIfExists(stagedDocument);
+            return documentBlobRepository.getReferenceById(hash);
+        }
+
+        DocumentEncoding encoding = takeTheEncoding(documentName, size);
+        Long storedSize = null;
+
+        if (encoding != null) {
+
+            Path compressedDocument;
+
+            try (InputStream inputStream = Files.newInputStream(stagedDocument)) {
+
+                compressedDocument = compressDocument(inputStream);
+            }
+
+            try {
+
+                long compressedSize = Files.size(compressedDocument);
+
+                if (compressedSize <= size * documentStorageProperties.getCompression().getMaxRatio()) {
+
+                    documentStorage.store(takeTheStoredKey(hash, encoding), compressedDocument);
+                    Files.deleteIfExists(stagedDocument);
+                    storedSize = compressedSize;
+                } else {
+
+                    encoding = null;
+                }
+            } finally {
+
+                Files.deleteIfExists(compressedDocument);
+            }
+        }
+
+        if (encoding == null) {
+
+            documentStorage.store(hash, stagedDocument);
+        }
+
+        // Two uploads of the same new content both miss the increment above, the later one waits for the
+        // row of the first and only adds its reference
+        if (documentBlobRepository.insertOrReference(hash, size, storedSize,
+                encoding == null ? null : encoding.name(), LocalDate.now()) == 1) {
+
+            deleteStoredCopyOnRollback(hash, takeTheStoredKey(hash, encoding));
+            return documentBlobRepository.getReferenceById(hash);
+        }
+
+        DocumentBlobs blob = documentBlobRepository.findById(hash).orElseThrow();
+
+        // The first upload may have kept another encoding, the copy written here is then never read. A delta
+        // whose full content still waits for the sweeper shares the key, so that one is left to the sweeper
+        if (blob.getBaseHash() == null ? blob.getEncoding() != encoding : blob.getFullCopyReleased() == null) {
+
+            documentStorage.delete(takeTheStoredKey(hash, encoding));
+        }
+
+        return blob;
+    }
+
+    /*
+    * The file is written before its row, inside the transaction of the caller. When that transaction rolls
+    * back the row is gone and nothing would ever delete the file, so it is deleted here. An upload of the
+    * same content may have been waiting on the row and inserted it again, the lock waits for that upload
+    * and its file is kept.
+    * */
+    public void deleteStoredCopyOnRollback(String hash, String storedKey) {
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+
+            @Override
+            public void afterCompletion(int status) {
+
+                if (status != STATUS_ROLLED_BACK) {
+
+                    return;
+                }
+
+                try {
+
+                    newTransactionTemplate.executeWithoutResult(transactionStatus -> {
+
+                        if (documentBlobRepository.findByHashForUpdate(hash).isEmpty()) {
+
+                            deleteStoredCopy(storedKey);
+                        }
+                    });
+                } catch (RuntimeException exception) {
+
+                    log.warn("Unable to delete the stored copy {} of a rolled back upload", storedKey, exception);
+                }
+            }
+        });
+    }
+
+    public void deleteStoredCopy(String storedKey) {
+
+        try {
+
+            documentStorage.delete(storedKey);
+        } catch (IOException exception) {
+
+            throw new UncheckedIOException(exception);
+        }
+
+        documentReadCache.invalidate(List.of(storedKey));
+    }
+
+    public DocumentEncoding takeTheEncoding(String documentName, long size) {
+
+        DocumentStorageProperties.Compression compression = documentStorageProperties.getCompression();
+
+        if (!compression.isEnabled() || documentName == null || size < compression.getMinSize().toBytes()) {
+
+            return null;
+        }
+
+        String extension = FilenameUtils.getExtension(documentName);
+
+        if (compression.getExtensions().stream().anyMatch(extension::equalsIgnoreCase)) {
+
+            return DocumentEncoding.GZIP;
+        }
+
+        Optional<MediaType> mediaType = MediaTypeFactory.getMediaType(documentName);
+
+        if (mediaType.isPresent() && compression.getMimeTypes().stream()
+                .anyMatch(mimeType -> MediaType.parseMediaType(mimeType).includes(mediaType.get()))) {
+
+            return DocumentEncoding.GZIP;
+        }
+
+        return null;
+    }
+
+    public Path compressDocument(InputStream inputStream) throws IOException {
+
+        Path compressedDocument = takeTheStagingPath();
+        int level = documentStorageProperties.getCompression().getLevel();
+
+        // GZIPOutputStream only exposes the compression level through its deflater
+        try (OutputStream outputStream = new GZIPOutputStream(Files.newOutputStream(compressedDocument),
+                COMPRESSION_BUFFER_SIZE) {{ def.setLevel(level); }}) {
+
+            inputStream.transferTo(outputStream);
+        } catch (IOException | RuntimeException exception) {
+
+            Files.deleteIfExists(compressedDocument);
+            throw exception;
+        }
+
+        return compressedDocument;
+    }
+
+    public InputStream openContent(DocumentBlobs blob) throws IOException {
+
+        return openContent(blob.getHash(), blob.getBaseHash(), blob.getEncoding());
+    }
+
+    public InputStream openContent(String hash, String baseHash, DocumentEncoding encoding) throws IOException {
+
+        if (baseHash != null) {
+
+            return documentStorage.read(reconstructBlob(hash), 0);
+        }
+
+        return openContent(takeTheStoredKey(hash, encoding), encoding, 0);
+    }
+
+    public InputStream openContent(String storageKey, DocumentEncoding encoding, long position) throws IOException {
+
+        if (encoding == null) {
+
+            return documentStorage.read(storageKey, position);
+        }
+
+        InputStream storedInput = documentStorage.read(storageKey, 0);
+
+        try {
+
+            // A compressed content can only be positioned by decompressing everything before it
+            InputStream inputStream = new GZIPInputStream(storedInput, COMPRESSION_BUFFER_SIZE);
+            inputStream.skipNBytes(position);
+
+            return inputStream;
+        } catch (IOException | RuntimeException exception) {
+
+            storedInput.close();
+            throw exception;
+        }
+    }
+
+    public void releaseBlob(DocumentBlobs blob) {
+
+        releaseBlob(blob.getHash());
+    }
+
+    public void releaseBlob(String hash) {
+
+        documentBlobRepository.decrementReferenceCount(hash);
+
+        Integer referenceCount = documentBlobRepository.findReferenceCount(hash);
+
+        if (referenceCount != null && referenceCount <= 0) {
+
+            // The row stays behind with no references, its files are only deleted by deleteReleasedBlobs
+            documentBlobRepository.markAsReleased(hash, LocalDateTime.now());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "PT10M")
+    public void deleteReleasedBlobs() {
+
+        LocalDateTime releasedBefore = LocalDateTime.now()
+                .minus(documentStorageProperties.getStorage().getDeletionGracePeriod());
+        List<String> releasedHashes;
+        boolean failed = false;
+
+        do {
+
+            releasedHashes = documentBlobRepository.findReleasedHashes(releasedBefore,
+                    PageRequest.of(0, RELEASED_BLOBS_PER_SWEEP));
+
+            for (String hash : releasedHashes) {
+
+                try {
+
+                    transactionTemplate.executeWithoutResult(status -> deleteReleasedBlob(hash, releasedBefore));
+                } catch (RuntimeException exception) {
+
+                    // Stays in the table and is tried again on the next sweep
+                    log.warn("Unable to delete the released blob {}", hash, exception);
+                    failed = true;
+                }
+            }
+        } while (!failed && releasedHashes.size() == RELEASED_BLOBS_PER_SWEEP);
+
+        deleteReplacedFullCopies(releasedBefore);
+    }
+
+    public void deleteReplacedFullCopies(LocalDateTime releasedBefore) {
+
+        List<String> replacedHashes;
+        boolean failed = false;
+
+        do {
+
+            replacedHashes = documentBlobRepository.findReplacedFullCopyHashes(releasedBefore,
+                    PageRequest.of(0, RELEASED_BLOBS_PER_SWEEP));
+
+            for (String hash : replacedHashes) {
+
+                try {
+
+                    transactionTemplate.executeWithoutResult(status -> deleteReplacedFullCopy(hash, releasedBefore));
+                } catch (RuntimeException exception) {
+
+                    log.warn("Unable to delete the full content of the delta {}", hash, exception);
+                    failed = true;
+                }
+            }
+        } while (!failed && replacedHashes.size() == RELEASED_BLOBS_PER_SWEEP);
+    }
+
+    public void deleteReplacedFullCopy(String hash, LocalDateTime releasedBefore) {
+
+        DocumentBlobs blob = documentBlobRepository.findByHashForUpdate(hash).orElse(null);
+
+        if (blob == null || blob.getFullCopyReleased() == null
+                || !blob.getFullCopyReleased().isBefore(releasedBefore)) {
+
+            return;
+        }
+
+        try {
+
+            // The stored delta is rebuilt and checked against the hash before its full copy goes
+            reconstructBlob(hash);
+        } catch (IOException | RuntimeException exception) {
+
+            log.warn("The delta of {} could not be rebuilt, its full copy is kept", hash, exception);
+            restoreFullCopy(blob);
+            return;
+        }
+
+        try {
+
+            // The encoding was cleared when the blob became a delta, so both keys are tried
+            documentStorage.delete(hash);
+            documentStorage.delete(takeTheCompressedKey(hash));
+        } catch (IOException exception) {
+
+            throw new UncheckedIOException(exception);
+        }
+
+        documentReadCache.invalidate(List.of(hash, takeTheCompressedKey(hash)));
+        blob.setFullCopyReleased(null);
+    }
+
+    /*
+    * Turns a delta whose full copy was not deleted yet back into a full blob, the encoding is found from
+    * the key still on disk.
+    * */
+    public void restoreFullCopy(DocumentBlobs blob) {
+
+        String hash = blob.getHash();
+        String baseHash = blob.getBaseHash();
+
+        try {
+
+            DocumentEncoding encoding = documentStorage.exists(hash) ? null : DocumentEncoding.GZIP;
+
+            blob.setEncoding(encoding);
+            blob.setStoredSize(encoding == null ? null : documentStorage.size(takeTheStoredKey(hash, encoding)));
+            blob.setBaseHash(null);
+            blob.setFullCopyReleased(null);
+
+            documentStorage.delete(takeTheDeltaKey(hash));
+        } catch (IOException exception) {
+
+            throw new UncheckedIOException(exception);
+        }
+
+        reconstructedBlobs.invalidate(hash);
+        releaseBlob(baseHash);
+    }
+
+    public void deleteReleasedBlob(String hash, LocalDateTime releasedBefore) {
+
+        // An upload of the same content waits on this lock, then finds no row and stores the content again
+        DocumentBlobs blob = documentBlobRepository.findByHashForUpdate(hash).orElse(null);
+
+        if (blob == null || blob.getReferenceCount() > 0 || blob.getReleased() == null
+                || !blob.getReleased().isBefore(releasedBefore)) {
+
+            return;
+        }
+
+        deleteBlobFiles(hash);
+        documentBlobRepository.delete(blob);
+
+        if (blob.getBaseHash() != null) {
+
+            // The delta held a reference to its base, which may have been its last one
+            releaseBlob(blob.getBaseHash());
+        }
+    }
+
+    public void deleteBlobFiles(String hash) {
+
+        try {
+
+            documentStorage.delete(hash);
+            documentStorage.delete(takeTheCompressedKey(hash));
+            documentStorage.delete(takeTheCompressedVariantKey(hash));
+            documentStorage.delete(takeTheDeltaKey(hash));
+            documentStorage.delete(takeTheThumbnailKey(hash));
+            documentStorage.delete(takeTheExtractedTextKey(hash));
+        } catch (IOException exception) {
+
+            throw new UncheckedIOException(exception);
+        }
+
+        reconstructedBlobs.invalidate(hash);
+        compressedVariants.invalidate(hash);
+        documentReadCache.invalidate(List.of(hash, takeTheCompressedKey(hash), takeTheCompressedVariantKey(hash),
+                takeTheReconstructedKey(hash)));
+    }
+
+    /*
+    * Key of a gzip copy of a content stored as received, null when the copy would not be
+    * small enough to be worth sending.
+    * */
+    public String takeTheCompressedVariant(DocumentBlobs blob, String readableKey) throws IOException {
+
+        Long variantSize;
+
+        try {
+
+            variantSize = compressedVariants.get(blob.getHash(), hash -> compressVariant(hash, readableKey));
+        } catch (UncheckedIOException exception) {
+
+            throw exception.getCause();
+        }
+
+        return variantSize < 0 ? null : takeTheCompressedVariantKey(blob.getHash());
+    }
+
+    public Long compressVariant(String hash, String readableKey) {
+
+        String variantKey = takeTheCompressedVariantKey(hash);
+
+        try {
+
+            // Left behind by an earlier run of the API, the content is the same
+            if (documentStorage.exists(variantKey)) {
+
+                return documentStorage.size(variantKey);
+            }
+
+            long size = documentStorage.size(readableKey);
+            Path compressedDocument;
+
+            try (InputStream inputStream = documentStorage.read(readableKey, 0)) {
+
+                compressedDocument = compressDocument(inputStream);
+            }
+
+            try {
+
+                long compressedSize = Files.size(compressedDocument);
+
+                if (compressedSize > size * documentStorageProperties.getCompression().getMaxRatio()) {
+
+                    return -1L;
+                }
+
+                documentStorage.store(variantKey, compressedDocument);
+
+                return compressedSize;
+            } finally {
+
+                Files.deleteIfExists(compressedDocument);
+            }
+        } catch (IOException exception) {
+
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    public void deleteCompressedVariant(String hash) {
+
+        try {
+
+            documentStorage.delete(takeTheCompressedVariantKey(hash));
+        } catch (IOException exception) {
+
+            log.warn("Unable to delete the compressed copy of {}", hash, exception);
+        }
+    }
+
+    /*
+    * Key holding the content of the blob in the encoding given by takeTheReadableEncoding, a
+    * delta is rebuilt first and its rebuilt content is never compressed.
+    * */
+    public String takeTheReadableKey(DocumentBlobs blob) throws IOException {
+
+        return blob.getBaseHash() == null
+                ? takeTheStoredKey(blob.getHash(), blob.getEncoding())
+                : reconstructBlob(blob.getHash());
+    }
+
+    public DocumentEncoding takeTheReadableEncoding(DocumentBlobs blob) {
+
+        return blob.getBaseHash() == null ? blob.getEncoding() : null;
+    }
+
+    public String reconstructBlob(String hash) throws IOException {
+
+        // The chain is walked first and rebuilt from its full end, so no rebuild waits on another one
+        // inside the cache
+        List<DocumentBlobs> deltaChain = new ArrayList<>();
+        String readableKey = null;
+        DocumentEncoding readableEncoding = null;
+        String chainHash = hash;
+
+        while (readableKey == null) {
+
+            if (reconstructedBlobs.getIfPresent(chainHash) != null) {
+
+                readableKey = takeTheReconstructedKey(chainHash);
+                break;
+            }
+
+            DocumentBlobs blob = documentBlobRepository.findById(chainHash)
+                    .orElseThrow(() -> new NoSuchFileException(hash));
+
+            if (blob.getBaseHash() == null) {
+
+                readableKey = takeTheStoredKey(blob.getHash(), blob.getEncoding());
+                readableEncoding = blob.getEncoding();
+                break;
+            }
+
+            if (deltaChain.size() >= MAX_DELTA_CHAIN) {
+
+                throw new IllegalStateException("The delta chain of " + hash + " does not reach a full version");
+            }
+
+            deltaChain.add(blob);
+            chainHash = blob.getBaseHash();
+        }
+
+        for (int index = deltaChain.size() - 1; index >= 0; index--) {
+
+            DocumentBlobs blob = deltaChain.get(index);
+            String baseKey = readableKey;
+            DocumentEncoding baseEncoding = readableEncoding;
+
+            try {
+
+                reconstructedBlobs.get(blob.getHash(), key -> applyDelta(blob, baseKey, baseEncoding));
+            } catch (UncheckedIOException exception) {
+
+                throw exception.getCause();
+            }
+
+            readableKey = takeTheReconstructedKey(blob.getHash());
+            readableEncoding = null;
+        }
+
+        return readableKey;
+    }
+
+    public Long applyDelta(DocumentBlobs blob, String baseKey, DocumentEncoding baseEncoding) {
+
+        String reconstructedKey = takeTheReconstructedKey(blob.getHash());
+
+        try {
+
+            // Left behind by an earlier run of the API, the content is the same
+            if (documentStorage.exists(reconstructedKey)) {
+
+                return blob.getSize();
+            }
+
+            Path stagedBase = null;
+            Path stagedDocument = takeTheStagingPath();
+
+            try {
+
+                Optional<Path> basePath = baseEncoding == null
+                        ? documentStorage.findLocalPath(baseKey)
+                        : Optional.empty();
+
+                if (basePath.isEmpty()) {
+
+                    stagedBase = copyToStagingPath(baseKey, baseEncoding);
+                }
+
+                MessageDigest messageDigest = createMessageDigest();
+
+                try (InputStream deltaInput = documentStorage.read(takeTheDeltaKey(blob.getHash()), 0);
+                     OutputStream output = new DigestOutputStream(new BufferedOutputStream(
+                             Files.newOutputStream(stagedDocument)), messageDigest)) {
+
+                    documentDeltaCodec.apply(basePath.orElse(stagedBase), deltaInput, output);
+                }
+
+                String rebuiltHash = HexFormat.of().formatHex(messageDigest.digest());
+
+                if (!rebuiltHash.equals(blob.getHash())) {
+
+                    throw new IOException("The delta of " + blob.getHash() + " was rebuilt as " + rebuiltHash);
+                }
+
+                documentStorage.store(reconstructedKey, stagedDocument);
+            } finally {
+
+                Files.deleteIfExists(stagedDocument);
+
+                if (stagedBase != null) {
+
+                    Files.deleteIfExists(stagedBase);
+                }
+            }
+
+            return blob.getSize();
+        } catch (IOException exception) {
+
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    public String encodeAsDelta(DocumentBlobs blob, DocumentBlobs baseBlob) throws IOException {
+
+        DocumentStorageProperties.Delta delta = documentStorageProperties.getDelta();
+
+        if (blob.getBaseHash() != null) {
+
+            return "Already stored as a delta against " + blob.getBaseHash();
+        }
+
+        if (blob.getHash().equals(baseBlob.getHash()) || blob.getReferenceCount() > 1) {
+
+            return "Kept in full, the content is shared with another version";
+        }
+
+        String baseKey = takeTheReadableKey(baseBlob);
+        DocumentEncoding baseEncoding = takeTheReadableEncoding(baseBlob);
+        long storedSize = blob.getStoredSize() == null ? blob.getSize() : blob.getStoredSize();
+        Path stagedBase = null;
+        Path stagedDelta = takeTheStagingPath();
+
+        try {
+
+            Optional<Path> basePath = baseEncoding == null
+                    ? documentStorage.findLocalPath(baseKey)
+                    : Optional.empty();
+
+            if (basePath.isEmpty()) {
+
+                stagedBase = copyToStagingPath(baseKey, baseEncoding);
+            }
+
+            long deltaSize;
+
+            try (InputStream inputStream = openContent(blob)) {
+
+                deltaSize = documentDeltaCodec.encode(basePath.orElse(stagedBase), inputStream, stagedDelta,
+                        (int) delta.getBlockSize().toBytes());
+            }
+
+            if (deltaSize > storedSize * delta.getMaxDeltaRatio()) {
+
+                return "Kept in full, the delta would take " + deltaSize + " of " + storedSize + " bytes";
+            }
+
+            // Applied once before anything changes, a delta that doesn't rebuild the content is never kept
+            String rebuiltHash = takeTheRebuiltHash(basePath.orElse(stagedBase), stagedDelta);
+
+            if (!rebuiltHash.equals(blob.getHash())) {
+
+                log.warn("The delta of {} against {} was rebuilt as {}", blob.getHash(), baseBlob.getHash(),
+                        rebuiltHash);
+                return "Kept in full, the delta was rebuilt as " + rebuiltHash;
+            }
+
+            documentStorage.store(takeTheDeltaKey(blob.getHash()), stagedDelta);
+
+            // The base is referenced before the blob points at it, so it can't be released in between
+            documentBlobRepository.incrementReferenceCount(baseBlob.getHash());
+
+            // The full content is left for deleteReplacedFullCopies, a download may still be reading it
+            if (documentBlobRepository.markAsDelta(blob.getHash(), baseBlob.getHash(), deltaSize,
+                    LocalDateTime.now()) == 0) {
+
+                documentBlobRepository.decrementReferenceCount(baseBlob.getHash());
+                documentStorage.delete(takeTheDeltaKey(blob.getHash()));
+
+                return "Kept in full, the content started being shared with another version";
+            }
+
+            return "Stored as a delta of " + deltaSize + " bytes against " + baseBlob.getHash();
+        } finally {
+
+            Files.deleteIfExists(stagedDelta);
+
+            if (stagedBase != null) {
+
+                Files.deleteIfExists(stagedBase);
+            }
+        }
+    }
+
+    public String takeTheRebuiltHash(Path base, Path delta) throws IOException {
+
+        MessageDigest messageDigest = createMessageDigest();
+
+        try (InputStream deltaInput = Files.newInputStream(delta);
+             OutputStream output = new DigestOutputStream(OutputStream.nullOutputStream(), messageDigest)) {
+
+            documentDeltaCodec.apply(base, deltaInput, output);
+        }
+
+        return HexFormat.of().formatHex(messageDigest.digest());
+    }
+
+    public Path copyToStagingPath(String storageKey, DocumentEncoding encoding) throws IOException {
+
+        Path stagedDocument = takeTheStagingPath();
+
+        try (InputStream inputStream = openContent(storageKey, encoding, 0)) {
+
+            Files.copy(inputStream, stagedDocument);
+        } catch (IOException exception) {
+
+            Files.deleteIfExists(stagedDocument);
+            throw exception;
+        }
+
+        return stagedDocument;
+    }
+
+    public void deleteReconstructedBlob(String hash) {
+
+        try {
+
+            documentStorage.delete(takeTheReconstructedKey(hash));
+        } catch (IOException exception) {
+
+            log.warn("Unable to delete the rebuilt version of {}", hash, exception);
+        }
+    }
+
+    /*
+    * Rebuilt versions and compressed copies are deleted when their cache evicts them, so they
+    * can disappear between two reads.
+    * */
+    public boolean isEvictableKey(String storageKey) {
+
+        return storageKey.endsWith(".reconstructed") || storageKey.endsWith(".variant.gz");
+    }
+
+    public String takeTheStoredKey(String hash, DocumentEncoding encoding) {
+
+        return encoding == DocumentEncoding.GZIP ? takeTheCompressedKey(hash) : hash;
+    }
+
+    public String takeTheCompressedKey(String hash) {
+
+        return hash + ".gz";
+    }
+
+    public String takeTheCompressedVariantKey(String hash) {
+
+        return hash + ".variant.gz";
+    }
+
+    public String takeTheDeltaKey(String hash) {
+
+        return hash + ".delta";
+    }
+
+    public String takeTheReconstructedKey(String hash) {
+
+        return hash + ".reconstructed";
+    }
+
+    public String takeTheThumbnailKey(String hash) {
+
+        return hash + ".thumbnail.png";
+    }
+
+    public String takeTheExtractedTextKey(String hash) {
+
+        return hash + ".txt";
+    }
+
+    public String calculateHash(Path document) throws IOException {
+
+        MessageDigest messageDigest = createMessageDigest();
+        byte[] buffer = new byte[(int) documentStorageProperties.getStreaming().getBufferSize().toBytes()];
+
+        try (InputStream inputStream = Files.newInputStream(document)) {
+
+            int bytesRead;
+
+            while ((bytesRead = inputStream.read(buffer)) != -1) {
+
+                messageDigest.update(buffer, 0, bytesRead);
+            }
+        }
+
+        return HexFormat.of().formatHex(messageDigest.digest());
+    }
+
+    public MessageDigest createMessageDigest() {
+
+        try {
+
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException exception) {
+
+            throw new IllegalStateException("SHA-256 is not available to identify the document content", exception);
+        }
+    }
+}
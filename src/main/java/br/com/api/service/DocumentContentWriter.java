@@ -0,0 +1,11 @@
+package br.com.api.service;
+
+import java.io.IOException;
+
+import java.nio.file.Path;
+
+@FunctionalInterface
+public interface DocumentContentWriter {
+
+    void writeTo(Path destination) throws IOException;
+}
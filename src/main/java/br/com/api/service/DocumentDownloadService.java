@@ -0,0 +1,466 @@
+package br.com.api.service;
+
+import br.com.api.config.DocumentStorageProperties;
+
+import br.com.api.domain.entities.Documents;
+
+import br.com.api.domain.enums.DocumentEncoding;
+
+import br.com.api.exception.BadRequestException;
+
+import br.com.api.metrics.DocumentMetrics;
+
+import br.com.api.storage.DocumentReadCache;
+import br.com.api.storage.DocumentStorage;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import lombok.RequiredArgsConstructor;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Service
+@RequiredArgsConstructor
+public class DocumentDownloadService {
+
+    private static final String SENDFILE_SUPPORTED_ATTRIBUTE = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME_ATTRIBUTE = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START_ATTRIBUTE = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END_ATTRIBUTE = "org.apache.tomcat.sendfile.end";
+
+    private final DocumentStorageProperties documentStorageProperties;
+    private final DocumentStorage documentStorage;
+    private final DocumentBlobService documentBlobService;
+    private final DocumentReadCache documentReadCache;
+    private final DocumentMetrics documentMetrics;
+
+    public void downloadDocument(Documents document, String storageKey, HttpServletRequest httpServletRequest,
+                                 HttpServletResponse httpServletResponse)
+            throws IOException {
+
+        documentMetrics.recordOperation(DocumentMetrics.DOWNLOAD, () -> {
+
+            sendDocument(document, storageKey, httpServletRequest, httpServletResponse);
+            return null;
+        });
+    }
+
+    public void sendDocument(Documents document, String storageKey, HttpServletRequest httpServletRequest,
+                             HttpServletResponse httpServletResponse)
+            throws IOException {
+
+        String documentName = document.getGuideName() + "." + document.getExtension();
+
+        if (!documentStorage.exists(storageKey)) {
+
+            throw new BadRequestException("The document " + document.getName() + "." +
+                    document.getExtension() + " was not found in the document system");
+        }
+
+        String contentType = httpServletRequest.getServletContext().getMimeType(documentName);
+
+        if (contentType == null) {
+
+            contentType = MediaType.APPLICATION_OCTET_STREAM_VALUE;
+        }
+
+        DocumentEncoding storedEncoding = document.getBlob() == null
+                ? null
+                : documentBlobService.takeTheReadableEncoding(document.getBlob());
+        boolean compressible = storedEncoding != null || variantIsAllowed(document, storageKey, contentType);
+
+        // Ranges refer to the document as received, so a range request is always answered decompressed
+        boolean sendEncoded = compressible && httpServletRequest.getHeader(HttpHeaders.RANGE) == null
+                && clientAcceptsEncoding(httpServletRequest, DocumentEncoding.GZIP);
+        String contentKey = storageKey;
+
+        if (sendEncoded && storedEncoding == null) {
+
+            String variantKey = documentBlobService.takeTheCompressedVariant(document.getBlob(), storageKey);
+
+            sendEncoded = variantKey != null;
+            contentKey = sendEncoded ? variantKey : storageKey;
+        }
+
+        DocumentEncoding decoding = sendEncoded ? null : storedEncoding;
+
+        Path documentPath = decoding == null ? documentStorage.findLocalPath(contentKey).orElse(null) : null;
+        long documentLength = decoding == null ? documentStorage.size(contentKey) : document.getBlob().getSize();
+        long lastModified = documentStorage.lastModified(storageKey);
+        String eTag = generateETag(document, sendEncoded ? DocumentEncoding.GZIP : null);
+
+        if (compressible) {
+
+            // Added to the values already there, the CORS filter varies the response on Origin
+            httpServletResponse.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        }
+
+        if (new ServletWebRequest(httpServletRequest, httpServletResponse).checkNotModified(eTag, lastModified)) {
+
+            return;
+        }
+
+        httpServletResponse.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        httpServletResponse.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                "attachment; documentName=\"" + documentName + "\"");
+
+        if (sendEncoded) {
+
+            httpServletResponse.setHeader(HttpHeaders.CONTENT_ENCODING, DocumentEncoding.GZIP.getContentCoding());
+        }
+
+        List<HttpRange> httpRanges;
+
+        try {
+
+            httpRanges = resolveRequestedRanges(httpServletRequest, eTag, lastModified, documentLength);
+        } catch (IllegalArgumentException exception) {
+
+            httpServletResponse.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + documentLength);
+            httpServletResponse.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+            return;
+        }
+
+        boolean writeBody = !"HEAD".equalsIgnoreCase(httpServletRequest.getMethod());
+        DownloadContent downloadContent = new DownloadContent(contentKey, documentPath, decoding,
+                writeBody && decoding == null && documentReadCache.isCacheable(documentLength)
+                        ? documentReadCache.read(contentKey, documentLength)
+                        : null);
+
+        if (httpRanges.isEmpty()) {
+
+            httpServletResponse.setStatus(HttpStatus.OK.value());
+            httpServletResponse.setContentType(contentType);
+            httpServletResponse.setContentLengthLong(documentLength);
+
+            if (writeBody) {
+
+                transferRegion(downloadContent, 0, documentLength, httpServletRequest, httpServletResponse);
+                documentMetrics.countBytes(DocumentMetrics.DOWNLOAD, documentLength);
+            }
+        } else if (httpRanges.size() == 1) {
+
+            long rangeStart = httpRanges.get(0).getRangeStart(documentLength);
+            long rangeEnd = httpRanges.get(0).getRangeEnd(documentLength);
+
+            httpServletResponse.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+            httpServletResponse.setContentType(contentType);
+            httpServletResponse.setContentLengthLong(rangeEnd - rangeStart + 1);
+            httpServletResponse.setHeader(HttpHeaders.CONTENT_RANGE,
+                    generateContentRange(rangeStart, rangeEnd, documentLength));
+
+            if (writeBody) {
+
+                transferRegion(downloadContent, rangeStart, rangeEnd - rangeStart + 1, httpServletRequest,
+                        httpServletResponse);
+                documentMetrics.countBytes(DocumentMetrics.DOWNLOAD, rangeEnd - rangeStart + 1);
+            }
+        } else {
+
+            writeMultipleRanges(downloadContent, documentLength, httpRanges, contentType, httpServletResponse,
+                    writeBody);
+        }
+    }
+
+    public List<HttpRange> resolveRequestedRanges(HttpServletRequest httpServletRequest, String eTag,
+                                                  long lastModified, long documentLength) {
+
+        String range = httpServletRequest.getHeader(HttpHeaders.RANGE);
+
+        if (range == null || !rangeIsStillValid(httpServletRequest, eTag, lastModified)) {
+
+            return new ArrayList<>();
+        }
+
+        List<HttpRange> httpRanges = new ArrayList<>();
+        long totalRangesLength = 0;
+
+        for (HttpRange httpRange : HttpRange.parseRanges(range)) {
+
+            // HttpRange clamps the end to the document but not the start, a range starting past the end is
+            // left out and the request is only unsatisfiable when none remains
+            if (httpRange.getRangeStart(documentLength) >= documentLength) {
+
+                continue;
+            }
+
+            httpRanges.add(httpRange);
+            totalRangesLength += httpRange.getRangeEnd(documentLength) - httpRange.getRangeStart(documentLength) + 1;
+        }
+
+        if (httpRanges.isEmpty()) {
+
+            throw new IllegalArgumentException("None of the requested ranges is inside the document");
+        }
+
+        if (httpRanges.size() > 1 && totalRangesLength > documentLength) {
+
+            throw new IllegalArgumentException("The requested ranges exceed the document length");
+        }
+
+        return httpRanges;
+    }
+
+    public boolean rangeIsStillValid(HttpServletRequest httpServletRequest, String eTag, long lastModified) {
+
+        String ifRange = httpServletRequest.getHeader(HttpHeaders.IF_RANGE);
+
+        if (ifRange == null) {
+
+            return true;
+        }
+
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+
+            return ifRange.equals(eTag);
+        }
+
+        try {
+
+            return httpServletRequest.getDateHeader(HttpHeaders.IF_RANGE) / 1000 == lastModified / 1000;
+        } catch (IllegalArgumentException exception) {
+
+            return false;
+        }
+    }
+
+    public void writeMultipleRanges(DownloadContent downloadContent, long documentLength,
+                                    List<HttpRange> httpRanges, String contentType,
+                                    HttpServletResponse httpServletResponse, boolean writeBody)
+            throws IOException {
+
+        String boundary = new String(MimeTypeUtils.generateMultipartBoundary(), StandardCharsets.US_ASCII);
+        List<byte[]> partHeaders = new ArrayList<>();
+        long contentLength = 0;
+
+        for (HttpRange httpRange : httpRanges) {
+
+            long rangeStart = httpRange.getRangeStart(documentLength);
+            long rangeEnd = httpRange.getRangeEnd(documentLength);
+
+            byte[] partHeader = ("\r\n--" + boundary + "\r\n" +
+                    HttpHeaders.CONTENT_TYPE + ": " + contentType + "\r\n" +
+                    HttpHeaders.CONTENT_RANGE + ": " + generateContentRange(rangeStart, rangeEnd, documentLength) +
+                    "\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+
+            partHeaders.add(partHeader);
+            contentLength += partHeader.length + rangeEnd - rangeStart + 1;
+        }
+
+        byte[] closingBoundary = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+        contentLength += closingBoundary.length;
+
+        httpServletResponse.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+        httpServletResponse.setContentType("multipart/byteranges; boundary=" + boundary);
+        httpServletResponse.setContentLengthLong(contentLength);
+
+        if (!writeBody) {
+
+            return;
+        }
+
+        OutputStream outputStream = httpServletResponse.getOutputStream();
+
+        for (int index = 0; index < httpRanges.size(); index++) {
+
+            long rangeStart = httpRanges.get(index).getRangeStart(documentLength);
+            long rangeEnd = httpRanges.get(index).getRangeEnd(documentLength);
+
+            outputStream.write(partHeaders.get(index));
+            writeRegion(downloadContent, rangeStart, rangeEnd - rangeStart + 1, outputStream);
+            documentMetrics.countBytes(DocumentMetrics.DOWNLOAD, rangeEnd - rangeStart + 1);
+        }
+
+        outputStream.write(closingBoundary);
+    }
+
+    public void transferRegion(DownloadContent downloadContent, long position, long length,
+                               HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse)
+            throws IOException {
+
+        Path documentPath = downloadContent.documentPath();
+
+        // A cached copy can be evicted before the container gets to open it
+        if (downloadContent.cachedDocument() == null && documentPath != null
+                && !documentBlobService.isEvictableKey(downloadContent.storageKey())
+                && sendfileIsAvailable(httpServletRequest, length)) {
+
+            httpServletRequest.setAttribute(SENDFILE_FILENAME_ATTRIBUTE, documentPath.toFile().getCanonicalPath());
+            httpServletRequest.setAttribute(SENDFILE_START_ATTRIBUTE, position);
+            httpServletRequest.setAttribute(SENDFILE_END_ATTRIBUTE, position + length);
+            return;
+        }
+
+        writeRegion(downloadContent, position, length, httpServletResponse.getOutputStream());
+    }
+
+    public boolean variantIsAllowed(Documents document, String storageKey, String contentType) throws IOException {
+
+        DocumentStorageProperties.Download download = documentStorageProperties.getDownload();
+
+        if (!download.isCompressionEnabled() || document.getBlob() == null) {
+
+            return false;
+        }
+
+        MediaType mediaType = MediaType.parseMediaType(contentType);
+
+        if (download.getCompressibleMimeTypes().stream()
+                .noneMatch(mimeType -> MediaType.parseMediaType(mimeType).includes(mediaType))) {
+
+            return false;
+        }
+
+        long size = documentStorage.size(storageKey);
+
+        return size >= download.getCompressionMinSize().toBytes() && size <= download.getCompressionMaxSize().toBytes();
+    }
+
+    public boolean clientAcceptsEncoding(HttpServletRequest httpServletRequest, DocumentEncoding encoding) {
+
+        String acceptEncoding = httpServletRequest.getHeader(HttpHeaders.ACCEPT_ENCODING);
+
+        if (acceptEncoding == null) {
+
+            return false;
+        }
+
+        for (String contentCoding : acceptEncoding.split(",")) {
+
+            String[] parameters = contentCoding.split(";");
+
+            if (parameters[0].trim().equalsIgnoreCase(encoding.getContentCoding())) {
+
+                return !qualityIsZero(parameters);
+            }
+        }
+
+        return false;
+    }
+
+    public boolean qualityIsZero(String[] parameters) {
+
+        for (int index = 1; index < parameters.length; index++) {
+
+            String parameter = parameters[index].trim();
+
+            if (parameter.startsWith("q=")) {
+
+                try {
+
+                    return Double.parseDouble(parameter.substring(2)) == 0;
+                } catch (NumberFormatException exception) {
+
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    public boolean sendfileIsAvailable(HttpServletRequest httpServletRequest, long length) {
+
+        DocumentStorageProperties.Download download = documentStorageProperties.getDownload();
+
+        return download.isZeroCopyEnabled()
+                && length >= download.getZeroCopyThreshold().toBytes()
+                && Boolean.TRUE.equals(httpServletRequest.getAttribute(SENDFILE_SUPPORTED_ATTRIBUTE));
+    }
+
+    /*
+    * Fallback when sendfile can't be used. The servlet output stream is not a file descriptor, so
+    * transferTo over Channels.newChannel goes through a heap buffer like a plain stream copy, it only
+    * saves the loop. Only the sendfile path of transferRegion avoids the copy.
+    * */
+    public void writeRegion(DownloadContent downloadContent, long position, long length, OutputStream outputStream)
+            throws IOException {
+
+        Path documentPath = downloadContent.documentPath();
+
+        if (downloadContent.cachedDocument() != null) {
+
+            ByteBuffer region = downloadContent.cachedDocument().duplicate()
+                    .position((int) position)
+                    .limit((int) (position + length));
+            WritableByteChannel outputChannel = Channels.newChannel(outputStream);
+
+            while (region.hasRemaining()) {
+
+                outputChannel.write(region);
+            }
+
+            return;
+        }
+
+        if (documentPath == null) {
+
+            try (InputStream inputStream = documentBlobService.openContent(downloadContent.storageKey(),
+                    downloadContent.decoding(), position)) {
+
+                if (StreamUtils.copyRange(inputStream, outputStream, 0, length - 1) < length) {
+
+                    throw new EOFException("The document ended before the requested range was sent");
+                }
+            }
+
+            return;
+        }
+
+        WritableByteChannel outputChannel = Channels.newChannel(outputStream);
+
+        try (FileChannel fileChannel = FileChannel.open(documentPath, StandardOpenOption.READ)) {
+
+            long totalBytesTransferred = 0;
+
+            while (totalBytesTransferred < length) {
+
+                long bytesTransferred = fileChannel.transferTo(position + totalBytesTransferred,
+                        length - totalBytesTransferred, outputChannel);
+
+                if (bytesTransferred <= 0) {
+
+                    throw new EOFException("The document ended before the requested range was sent");
+                }
+
+                totalBytesTransferred += bytesTransferred;
+            }
+        }
+    }
+
+    public String generateETag(Documents document, DocumentEncoding encoding) {
+
+        return "\"" + document.getUuid() + "-V" + document.getVersion()
+                + (encoding == null ? "" : "-" + encoding.getContentCoding()) + "\"";
+    }
+
+    public String generateContentRange(long rangeStart, long rangeEnd, long documentLength) {
+
+        return "bytes " + rangeStart + "-" + rangeEnd + "/" + documentLength;
+    }
+}
@@ -0,0 +1,488 @@
+package br.com.api.service;
+
+import br.com.api.config.DocumentStorageProperties;
+
+import br.com.api.domain.dto.DocumentJobResponse;
+
+import br.com.api.domain.entities.DocumentBlobs;
+import br.com.api.domain.entities.DocumentJobs;
+import br.com.api.domain.entities.Documents;
+import br.com.api.domain.entities.VersionedDocuments;
+
+import br.com.api.domain.enums.DocumentJobStage;
+import br.com.api.domain.enums.DocumentJobStatus;
+
+import br.com.api.repository.DocumentJobRepository;
+import br.com.api.repository.DocumentRepository;
+
+import br.com.api.storage.DocumentStorage;
+
+import jakarta.annotation.PreDestroy;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import java.net.URLConnection;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import java.security.MessageDigest;
+
+import java.time.LocalDateTime;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+
+@Slf4j
+@Service
+public class DocumentJobService {
+
+    private static final int SNIFFED_BYTES = 8192;
+
+    private final DocumentJobRepository documentJobRepository;
+    private final DocumentRepository documentRepository;
+    private final DocumentStorage documentStorage;
+    private final DocumentBlobService documentBlobService;
+    private final DocumentStorageProperties.Processing processing;
+    private final DocumentStorageProperties.Delta delta;
+    private final ThreadPoolTaskExecutor jobExecutor;
+
+    public DocumentJobService(DocumentJobRepository documentJobRepository, DocumentRepository documentRepository,
+                              DocumentStorage documentStorage, DocumentBlobService documentBlobService,
+                              DocumentStorageProperties documentStorageProperties) {
+
+        this.documentJobRepository = documentJobRepository;
+        this.documentRepository = documentRepository;
+        this.documentStorage = documentStorage;
+        this.documentBlobService = documentBlobService;
+        this.processing = documentStorageProperties.getProcessing();
+        this.delta = documentStorageProperties.getDelta();
+
+        this.jobExecutor = new ThreadPoolTaskExecutor();
+        this.jobExecutor.setCorePoolSize(processing.getWorkers());
+        this.jobExecutor.setMaxPoolSize(processing.getWorkers());
+        this.jobExecutor.setQueueCapacity(processing.getQueueCapacity());
+        this.jobExecutor.setThreadNamePrefix("document-job-");
+        this.jobExecutor.initialize();
+    }
+
+    public void enqueueJobs(Documents document) {
+
+        List<DocumentJobs> jobs = new ArrayList<>();
+
+        for (DocumentJobStage stage : DocumentJobStage.values()) {
+
+            if (stage != DocumentJobStage.DELTA_ENCODING) {
+
+                jobs.add(createJob(document, stage));
+            }
+        }
+
+        documentJobRepository.saveAll(jobs);
+    }
+
+    public void enqueueDeltaEncoding(Documents previousVersion) {
+
+        if (!delta.isEnabled() || previousVersion == null || previousVersion.getBlob() == null) {
+
+            return;
+        }
+
+        documentJobRepository.save(createJob(previousVersion, DocumentJobStage.DELTA_ENCODING));
+    }
+
+    public DocumentJobs createJob(Documents document, DocumentJobStage stage) {
+
+        LocalDateTime now = LocalDateTime.now();
+
+        return DocumentJobs.builder()
+                .document(document)
+                .stage(stage)
+                .status(DocumentJobStatus.PENDING)
+                .attempts(0)
+                .creation(now)
+                .updated(now)
+                .build();
+    }
+
+    public List<DocumentJobResponse> listJobs(Documents document) {
+
+        return documentJobRepository.findByDocumentOrderByStage(document).stream()
+                .map(job -> DocumentJobResponse.builder()
+                        .stage(job.getStage())
+                        .status(job.getStatus())
+                        .attempts(job.getAttempts())
+                        .result(job.getResult())
+                        .error(job.getError())
+                        .creation(job.getCreation())
+                        .updated(job.getUpdated())
+                        .build())
+                .toList();
+    }
+
+    @Scheduled(fixedDelayString = "${document.processing.poll-interval:PT2S}")
+    public void pollJobs() {
+
+        if (!processing.isEnabled()) {
+
+            return;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        documentJobRepository.releaseStaleJobs(now.minus(processing.getRunningTimeout()), now);
+
+        int freeSlots = processing.getWorkers() - jobExecutor.getActiveCount()
+                + jobExecutor.getThreadPoolExecutor().getQueue().remainingCapacity();
+
+        if (freeSlots <= 0) {
+
+            return;
+        }
+
+        for (UUID jobUuid : documentJobRepository.findUuidsByStatus(DocumentJobStatus.PENDING,
+                PageRequest.of(0, freeSlots))) {
+
+            if (documentJobRepository.claimJob(jobUuid, LocalDateTime.now()) == 0) {
+
+                continue;
+            }
+
+            try {
+
+                jobExecutor.execute(() -> runJob(jobUuid));
+            } catch (TaskRejectedException exception) {
+
+                // Back to the queue right away, without waiting for the running timeout
+                documentJobRepository.unclaimJob(jobUuid, LocalDateTime.now());
+                log.warn("The document job {} was claimed but the workers are full", jobUuid);
+                return;
+            }
+        }
+    }
+
+    public void runJob(UUID jobUuid) {
+
+        DocumentJobs job = documentJobRepository.findByUuid(jobUuid);
+
+        if (job == null) {
+
+            return;
+        }
+
+        try {
+
+            job.setResult(runStage(job));
+            job.setError(null);
+            job.setStatus(DocumentJobStatus.COMPLETED);
+        } catch (IOException | RuntimeException exception) {
+
+            log.warn("The document job {} ({}) failed on attempt {}", jobUuid, job.getStage(), job.getAttempts(),
+                    exception);
+
+            job.setError(truncateError(exception));
+            job.setStatus(job.getAttempts() >= processing.getMaxAttempts()
+                    ? DocumentJobStatus.FAILED
+                    : DocumentJobStatus.PENDING);
+        }
+
+        job.setUpdated(LocalDateTime.now());
+        documentJobRepository.save(job);
+    }
+
+    public String runStage(DocumentJobs job) throws IOException {
+
+        Documents document = job.getDocument();
+
+        if (document.getExclusion() != null) {
+
+            return "Skipped, the document was deleted";
+        }
+
+        if (document.getBlob() == null) {
+
+            throw new IllegalStateException("The document " + document.getUuid() + " is not in the blob store yet");
+        }
+
+        if (job.getStage() == DocumentJobStage.DELTA_ENCODING) {
+
+            return encodeAsDelta(document);
+        }
+
+        DocumentBlobs blob = document.getBlob();
+
+        return switch (job.getStage()) {
+            case CHECKSUM -> verifyChecksum(blob);
+            case MIME_TYPE -> sniffMimeType(blob, document.getName() + "." + document.getExtension());
+            case THUMBNAIL -> generateThumbnail(blob);
+            case TEXT_EXTRACTION -> extractText(blob);
+            case DELTA_ENCODING -> throw new IllegalStateException("The delta encoding is not a processing stage");
+        };
+    }
+
+    public String encodeAsDelta(Documents document) throws IOException {
+
+        VersionedDocuments versionedDocument = document.getVersionedDocument();
+
+        if (versionedDocument == null) {
+
+            return "Kept in full, the document has no version history";
+        }
+
+        if (versionedDocument.getCurrentVersion() != null
+                && document.getUuid().equals(versionedDocument.getCurrentVersion().getUuid())) {
+
+            return "Kept in full, this is the version in use";
+        }
+
+        // The next version is the one most likely to stay, so older versions chain towards the newest
+        Documents baseVersion = documentRepository
+                .findTopByVersionedDocumentAndVersionGreaterThanAndExclusionIsNullOrderByVersionAsc(
+                        versionedDocument, document.getVersion());
+
+        if (baseVersion == null || baseVersion.getBlob() == null) {
+
+            return "Kept in full, there is no later version to compare with";
+        }
+
+        return documentBlobService.encodeAsDelta(document.getBlob(), baseVersion.getBlob());
+    }
+
+    public String verifyChecksum(DocumentBlobs blob) throws IOException {
+
+        String hash = blob.getHash();
+        MessageDigest messageDigest = documentBlobService.createMessageDigest();
+        byte[] buffer = new byte[SNIFFED_BYTES];
+
+        try (InputStream inputStream = documentBlobService.openContent(blob)) {
+
+            int bytesRead;
+
+            while ((bytesRead = inputStream.read(buffer)) != -1) {
+
+                messageDigest.update(buffer, 0, bytesRead);
+            }
+        }
+
+        String storedHash = HexFormat.of().formatHex(messageDigest.digest());
+
+        if (!storedHash.equals(hash)) {
+
+            throw new IOException("The stored content hashes to " + storedHash + " instead of " + hash);
+        }
+
+        return "sha-256:" + hash;
+    }
+
+    public String sniffMimeType(DocumentBlobs blob, String documentName) throws IOException {
+
+        byte[] header = readHeader(blob);
+
+        if (startsWith(header, "%PDF-")) {
+
+            return "application/pdf";
+        }
+
+        if (startsWith(header, "PK\u0003\u0004")) {
+
+            return "application/zip";
+        }
+
+        String mimeType;
+
+        try (InputStream inputStream = new BufferedInputStream(new ByteArrayInputStream(header))) {
+
+            mimeType = URLConnection.guessContentTypeFromStream(inputStream);
+        }
+
+        if (mimeType == null) {
+
+            mimeType = looksLikeText(header)
+                    ? "text/plain"
+                    : URLConnection.guessContentTypeFromName(documentName);
+        }
+
+        return mimeType == null ? "application/octet-stream" : mimeType;
+    }
+
+    public String generateThumbnail(DocumentBlobs blob) throws IOException {
+
+        String thumbnailKey = documentBlobService.takeTheThumbnailKey(blob.getHash());
+
+        if (documentStorage.exists(thumbnailKey)) {
+
+            return thumbnailKey;
+        }
+
+        BufferedImage image;
+
+        try (InputStream inputStream = documentBlobService.openContent(blob);
+             ImageInputStream imageInputStream = ImageIO.createImageInputStream(inputStream)) {
+
+            Iterator<ImageReader> imageReaders = ImageIO.getImageReaders(imageInputStream);
+
+            if (!imageReaders.hasNext()) {
+
+                return null;
+            }
+
+            ImageReader imageReader = imageReaders.next();
+
+            try {
+
+                imageReader.setInput(imageInputStream, true, true);
+
+                // Subsampling while decoding keeps large pictures from being fully expanded in memory
+                int subsampling = Math.max(1, Math.max(imageReader.getWidth(0), imageReader.getHeight(0))
+                        / processing.getThumbnailSize());
+                ImageReadParam imageReadParam = imageReader.getDefaultReadParam();
+                imageReadParam.setSourceSubsampling(subsampling, subsampling, 0, 0);
+
+                image = imageReader.read(0, imageReadParam);
+            } finally {
+
+                imageReader.dispose();
+            }
+        }
+
+        double scale = Math.min(1.0, (double) processing.getThumbnailSize()
+                / Math.max(image.getWidth(), image.getHeight()));
+        int width = Math.max(1, (int) Math.round(image.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(image.getHeight() * scale));
+
+        BufferedImage thumbnail = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = thumbnail.createGraphics();
+
+        try {
+
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.drawImage(image, 0, 0, width, height, null);
+        } finally {
+
+            graphics.dispose();
+        }
+
+        Path stagedThumbnail = documentBlobService.takeTheStagingPath();
+
+        try {
+
+            ImageIO.write(thumbnail, "png", stagedThumbnail.toFile());
+            documentStorage.store(thumbnailKey, stagedThumbnail);
+        } finally {
+
+            Files.deleteIfExists(stagedThumbnail);
+        }
+
+        return thumbnailKey;
+    }
+
+    public String extractText(DocumentBlobs blob) throws IOException {
+
+        String textKey = documentBlobService.takeTheExtractedTextKey(blob.getHash());
+
+        if (documentStorage.exists(textKey)) {
+
+            return textKey;
+        }
+
+        if (!looksLikeText(readHeader(blob))) {
+
+            return null;
+        }
+
+        int maxTextSize = (int) processing.getMaxExtractedTextSize().toBytes();
+        byte[] content;
+
+        try (InputStream inputStream = documentBlobService.openContent(blob)) {
+
+            content = inputStream.readNBytes(maxTextSize);
+        }
+
+        CharBuffer text = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE)
+                .decode(ByteBuffer.wrap(content));
+
+        Path stagedText = documentBlobService.takeTheStagingPath();
+
+        try {
+
+            Files.writeString(stagedText, text, StandardCharsets.UTF_8);
+            documentStorage.store(textKey, stagedText);
+        } finally {
+
+            Files.deleteIfExists(stagedText);
+        }
+
+        return textKey;
+    }
+
+    public byte[] readHeader(DocumentBlobs blob) throws IOException {
+
+        try (InputStream inputStream = documentBlobService.openContent(blob)) {
+
+            return inputStream.readNBytes(SNIFFED_BYTES);
+        }
+    }
+
+    public boolean looksLikeText(byte[] header) {
+
+        for (byte value : header) {
+
+            if (value == 0) {
+
+                return false;
+            }
+        }
+
+        return header.length > 0;
+    }
+
+    public boolean startsWith(byte[] header, String signature) {
+
+        byte[] signatureBytes = signature.getBytes(StandardCharsets.ISO_8859_1);
+
+        return header.length >= signatureBytes.length
+                && Arrays.equals(header, 0, signatureBytes.length, signatureBytes, 0, signatureBytes.length);
+    }
+
+    public String truncateError(Exception exception) {
+
+        String error = exception.getClass().getSimpleName() + ": " + exception.getMessage();
+        return error.length() > 1000 ? error.substring(0, 1000) : error;
+    }
+
+    @PreDestroy
+    public void shutdownJobExecutor() {
+
+        jobExecutor.shutdown();
+    }
+}
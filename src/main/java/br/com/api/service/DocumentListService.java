@@ -0,0 +1,200 @@
+package br.com.api.service;
+
+import br.com.api.domain.dto.DocumentListRequest;
+import br.com.api.domain.dto.DocumentPageResponse;
+import br.com.api.domain.dto.DocumentSummaryResponse;
+
+import br.com.api.exception.BadRequestException;
+
+import br.com.api.repository.DocumentRepository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.RequiredArgsConstructor;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+import java.nio.charset.StandardCharsets;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+@Service
+@RequiredArgsConstructor
+public class DocumentListService {
+
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final Set<String> SORTABLE_FIELDS = Set.of("name", "extension", "validity", "creation");
+    private static final Set<String> DATE_FIELDS = Set.of("validity", "creation");
+
+    private final DocumentRepository documentRepository;
+    private final UserPrincipalService userPrincipalService;
+    private final ObjectMapper objectMapper;
+
+    @Transactional(readOnly = true)
+    public DocumentPageResponse listDocumentPage(DocumentListRequest request, String username) {
+
+        String sortField = takeTheSortField(request);
+        boolean ascending = sortIsAscending(request);
+        int pageSize = takeThePageSize(request);
+
+        Comparable<?> afterValue = null;
+        UUID afterUuid = null;
+
+        if (request.cursor() != null && !request.cursor().isBlank()) {
+
+            String[] cursor = decodeCursor(request.cursor());
+            afterValue = parseCursorValue(sortField, cursor[0]);
+            afterUuid = parseCursorUuid(cursor[1]);
+        }
+
+        List<DocumentSummaryResponse> documents = documentRepository.findPageByClient(
+                userPrincipalService.findApprovedPrincipal(username).clientId(),
+                request, sortField, ascending, afterValue, afterUuid, pageSize + 1);
+
+        if (documents.size() <= pageSize) {
+
+            return new DocumentPageResponse(documents, null);
+        }
+
+        List<DocumentSummaryResponse> page = documents.subList(0, pageSize);
+        return new DocumentPageResponse(List.copyOf(page), encodeCursor(sortField, page.get(pageSize - 1)));
+    }
+
+    @Transactional(readOnly = true)
+    public void streamDocuments(DocumentListRequest request, String username, OutputStream outputStream)
+            throws IOException {
+
+        String sortField = takeTheSortField(request);
+        boolean ascending = sortIsAscending(request);
+
+        try (Stream<DocumentSummaryResponse> documents = documentRepository.streamByClient(
+                userPrincipalService.findApprovedPrincipal(username).clientId(), request, sortField, ascending)) {
+
+            Iterator<DocumentSummaryResponse> iterator = documents.iterator();
+
+            while (iterator.hasNext()) {
+
+                outputStream.write(objectMapper.writeValueAsBytes(iterator.next()));
+                outputStream.write('\n');
+            }
+        } catch (UncheckedIOException exception) {
+
+            throw exception.getCause();
+        }
+
+        outputStream.flush();
+    }
+
+    public String takeTheSortField(DocumentListRequest request) {
+
+        if (request.sort() == null || request.sort().isBlank()) {
+
+            return "creation";
+        }
+
+        if (!SORTABLE_FIELDS.contains(request.sort())) {
+
+            throw new BadRequestException("The documents can only be sorted by " + SORTABLE_FIELDS);
+        }
+
+        return request.sort();
+    }
+
+    public boolean sortIsAscending(DocumentListRequest request) {
+
+        return request.direction() == null || !"desc".equalsIgnoreCase(request.direction());
+    }
+
+    public int takeThePageSize(DocumentListRequest request) {
+
+        if (request.size() == null) {
+
+            return DEFAULT_PAGE_SIZE;
+        }
+
+        if (request.size() < 1 || request.size() > MAX_PAGE_SIZE) {
+
+            throw new BadRequestException("The page size must be between 1 and " + MAX_PAGE_SIZE);
+        }
+
+        return request.size();
+    }
+
+    public String encodeCursor(String sortField, DocumentSummaryResponse lastDocument) {
+
+        Object sortValue = switch (sortField) {
+            case "name" -> lastDocument.name();
+            case "extension" -> lastDocument.extension();
+            case "validity" -> lastDocument.validity();
+            default -> lastDocument.creation();
+        };
+
+        String cursor = sortValue + "|" + lastDocument.uuid();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public String[] decodeCursor(String cursor) {
+
+        try {
+
+            String decodedCursor = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = decodedCursor.lastIndexOf('|');
+
+            if (separator < 0) {
+
+                throw new BadRequestException(returnIfCursorIsInvalid());
+            }
+
+            return new String[] {decodedCursor.substring(0, separator), decodedCursor.substring(separator + 1)};
+        } catch (IllegalArgumentException exception) {
+
+            throw new BadRequestException(returnIfCursorIsInvalid());
+        }
+    }
+
+    public Comparable<?> parseCursorValue(String sortField, String value) {
+
+        if (!DATE_FIELDS.contains(sortField)) {
+
+            return value;
+        }
+
+        try {
+
+            return LocalDate.parse(value);
+        } catch (DateTimeParseException exception) {
+
+            throw new BadRequestException(returnIfCursorIsInvalid());
+        }
+    }
+
+    public UUID parseCursorUuid(String value) {
+
+        try {
+
+            return UUID.fromString(value);
+        } catch (IllegalArgumentException exception) {
+
+            throw new BadRequestException(returnIfCursorIsInvalid());
+        }
+    }
+
+    public String returnIfCursorIsInvalid() {
+
+        return "The cursor is invalid or belongs to a different sort, request the first page again";
+    }
+}
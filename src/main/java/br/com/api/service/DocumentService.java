@@ -1,39 +1,42 @@
 package br.com.api.service;
 
-import br.com.api.config.DocumentStorageProperties;
-
+import br.com.api.domain.dto.DocumentBatchItemResponse;
 import br.com.api.domain.dto.DocumentRequest;
 import br.com.api.domain.dto.DocumentResponse;
-import br.com.api.domain.dto.UserResponse;
+import br.com.api.domain.dto.DocumentSummaryResponse;
+import br.com.api.domain.dto.UserPrincipal;
 
 import br.com.api.domain.entities.Clients;
+import br.com.api.domain.entities.DocumentBlobs;
 import br.com.api.domain.entities.Documents;
 import br.com.api.domain.entities.Users;
+import br.com.api.domain.entities.VersionedDocuments;
 
 import br.com.api.exception.BadRequestException;
 
+import br.com.api.metrics.DocumentMetrics;
+
 import br.com.api.repository.ClientRepository;
 import br.com.api.repository.DocumentRepository;
-import br.com.api.repository.UserClientRepository;
 import br.com.api.repository.UserRepository;
 
+import br.com.api.storage.DocumentReadCache;
+import br.com.api.storage.DocumentStorage;
+
 import jakarta.transaction.Transactional;
 
 import org.apache.commons.io.FilenameUtils;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.net.MalformedURLException;
+import java.io.InputStream;
 
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 
 import java.time.LocalDate;
 import java.util.*;
@@ -42,48 +45,55 @@ import java.util.*;
 public class DocumentService {
 
     private final DocumentRepository documentRepository;
-    private final DocumentStorageProperties documentStorageProperties;
-    private final Path documentStorageLocation;
-    private final UserService userService;
+    private final DocumentStorage documentStorage;
+    private final DocumentReadCache documentReadCache;
+    private final UserPrincipalService userPrincipalService;
     private final UserRepository userRepository;
-    private final UserClientRepository userClientRepository;
     private final ClientRepository clientRepository;
-    private final JwtService jwtService;
+    private final DocumentBlobService documentBlobService;
+    private final DocumentVersionService documentVersionService;
+    private final DocumentJobService documentJobService;
+    private final DocumentMetrics documentMetrics;
 
     public DocumentService() {
 
         this.documentRepository = null;
-        this.documentStorageProperties = null;
-        this.documentStorageLocation = null;
-        this.userService = null;
+        this.documentStorage = null;
+        this.documentReadCache = null;
+        this.userPrincipalService = null;
         this.userRepository = null;
-        this.userClientRepository = null;
         this.clientRepository = null;
-        this.jwtService = null;
+        this.documentBlobService = null;
+        this.documentVersionService = null;
+        this.documentJobService = null;
+        this.documentMetrics = null;
     }
 
     @Autowired
     public DocumentService(DocumentRepository documentRepository,
-                           DocumentStorageProperties documentStorageProperties, UserService userService,
-                           UserRepository userRepository, UserClientRepository userClientRepository,
-                           ClientRepository clientRepository, JwtService jwtService) {
+                           DocumentStorage documentStorage, DocumentReadCache documentReadCache,
+                           UserPrincipalService userPrincipalService,
+                           UserRepository userRepository, ClientRepository clientRepository,
+                           DocumentBlobService documentBlobService,
+                           DocumentVersionService documentVersionService,
+                           DocumentJobService documentJobService, DocumentMetrics documentMetrics) {
 
         this.documentRepository = documentRepository;
-        this.documentStorageProperties = documentStorageProperties;
-        this.documentStorageLocation = Paths.get(documentStorageProperties.getUploadDirectory())
-                .toAbsolutePath()
-                .normalize();
-        this.userService = userService;
+        this.documentStorage = documentStorage;
+        this.documentReadCache = documentReadCache;
+        this.userPrincipalService = userPrincipalService;
         this.userRepository = userRepository;
-        this.userClientRepository = userClientRepository;
         this.clientRepository = clientRepository;
-        this.jwtService = jwtService;
+        this.documentBlobService = documentBlobService;
+        this.documentVersionService = documentVersionService;
+        this.documentJobService = documentJobService;
+        this.documentMetrics = documentMetrics;
     }
 
-    public List<Documents> listAllDocumentsFromUsername(String username) {
+    public List<DocumentSummaryResponse> listAllDocumentsFromUsername(String username) {
 
-        UserResponse response = userService.findUserByUsername(username);
-        return clientRepository.findByUuid(response.clientId()).getDocumentList();
+        UserPrincipal userPrincipal = userPrincipalService.findActivePrincipal(username);
+        return documentRepository.findSummariesByClientUuid(userPrincipal.clientId());
     }
 
     @Transactional
@@ -91,146 +101,241 @@ public class DocumentService {
                                            String username)
             throws IOException {
 
-        Users user = userRepository.findByUsername(username);
+        return addNewDocument(getOriginalDocumentName(multipartFile), multipartFile::transferTo, request,
+                username);
+    }
+
+    @Transactional
+    public DocumentResponse addNewDocument(String originalDocumentName, DocumentContentWriter contentWriter,
+                                           DocumentRequest request, String username)
+            throws IOException {
+
+        return documentMetrics.recordOperation(DocumentMetrics.UPLOAD,
+                () -> saveNewDocument(originalDocumentName, contentWriter, request, username));
+    }
 
-        jwtService.checkIfUserWasDeleted(user);
+    public DocumentResponse saveNewDocument(String originalDocumentName, DocumentContentWriter contentWriter,
+                                            DocumentRequest request, String username)
+            throws IOException {
 
-        Clients client = userClientRepository.findByUser(user).getClient();
+        UserPrincipal userPrincipal = userPrincipalService.findActivePrincipal(username);
+        Users user = userRepository.getReferenceById(userPrincipal.userId());
+        Clients client = clientRepository.getReferenceById(userPrincipal.clientId());
 
-        String originalDocumentName = getOriginalDocumentName(multipartFile);
         String baseName = FilenameUtils.getBaseName(originalDocumentName);
         String extension = FilenameUtils.getExtension(originalDocumentName);
 
         String documentRenamed = renameDocumentNameToAddUser(baseName, username);
 
-        boolean nameAlreadyExisting = documentNameAlreadyExists(documentRenamed);
+        // Claimed before the content is written, a name already used never gets its content stored
+        VersionedDocuments versionedDocument = documentVersionService.createVersionedDocument(client,
+                documentRenamed, extension);
+
+        if (versionedDocument == null) {
+
+            throw new BadRequestException(returnIfNameIsAlreadyUsed());
+        }
+
+        DocumentBlobs blob = writeDocumentContent(DocumentMetrics.UPLOAD, originalDocumentName, contentWriter);
+
+        Documents documentToSave = Documents.builder()
+                .name(baseName)
+                .guideName(documentRenamed)
+                .extension(extension)
+                .validity(request.validity())
+                .originalDocument(null)
+                .blob(blob)
+                .creation(LocalDate.now())
+                .updated(null)
+                .exclusion(null)
+                .client(client)
+                .userCreation(user)
+                .build();
+
+        documentVersionService.saveNewVersion(versionedDocument, documentToSave);
+        documentJobService.enqueueJobs(documentToSave);
+
+        return returnOfDocuments(documentToSave);
+    }
+
+    @Transactional
+    public List<DocumentBatchItemResponse> addNewDocuments(List<StagedDocument> stagedDocuments,
+                                                           DocumentRequest request, String username)
+            throws IOException {
+
+        return documentMetrics.recordOperation(DocumentMetrics.BATCH_UPLOAD,
+                () -> saveNewDocuments(stagedDocuments, request, username));
+    }
+
+    public List<DocumentBatchItemResponse> saveNewDocuments(List<StagedDocument> stagedDocuments,
+                                                            DocumentRequest request, String username)
+            throws IOException {
+
+        UserPrincipal userPrincipal = userPrincipalService.findActivePrincipal(username);
+        Users user = userRepository.getReferenceById(userPrincipal.userId());
+        Clients client = clientRepository.getReferenceById(userPrincipal.clientId());
+        List<DocumentBatchItemResponse> results = new ArrayList<>();
+
+        for (StagedDocument stagedDocument : stagedDocuments) {
 
-        if (!nameAlreadyExisting) {
+            String baseName = FilenameUtils.getBaseName(stagedDocument.originalDocumentName());
+            String extension = FilenameUtils.getExtension(stagedDocument.originalDocumentName());
+            String guideName = renameDocumentNameToAddUser(baseName, username);
 
-            multipartFile.transferTo(takeTheDestinationPath(baseName, extension));
+            // A name taken after the batch was validated is refused by the insert and only fails its own item
+            VersionedDocuments versionedDocument = documentVersionService.createVersionedDocument(client,
+                    guideName, extension);
+
+            if (versionedDocument == null) {
+
+                results.add(DocumentBatchItemResponse.builder()
+                        .documentName(stagedDocument.originalDocumentName())
+                        .created(false)
+                        .error(returnIfNameIsAlreadyUsed())
+                        .build());
+                continue;
+            }
+
+            documentMetrics.countBytes(DocumentMetrics.BATCH_UPLOAD, Files.size(stagedDocument.path()));
+
+            DocumentBlobs blob = documentBlobService.storeBlob(stagedDocument.path(), stagedDocument.hash(),
+                    stagedDocument.originalDocumentName());
 
             Documents documentToSave = Documents.builder()
                     .name(baseName)
-                    .guideName(documentRenamed)
+                    .guideName(guideName)
                     .extension(extension)
-                    .version(1)
                     .validity(request.validity())
                     .originalDocument(null)
+                    .blob(blob)
                     .creation(LocalDate.now())
-                    .updated(null)
-                    .exclusion(null)
+                    .client(client)
+                    .userCreation(user)
                     .build();
 
-            documentRepository.save(documentToSave);
+            documentVersionService.saveNewVersion(versionedDocument, documentToSave);
+            documentJobService.enqueueJobs(documentToSave);
+
+            results.add(DocumentBatchItemResponse.builder()
+                    .documentName(stagedDocument.originalDocumentName())
+                    .created(true)
+                    .document(returnOfDocuments(documentToSave))
+                    .build());
+        }
+
+        return results;
+    }
+
+    public DocumentBlobs writeDocumentContent(String operation, String documentName,
+                                              DocumentContentWriter contentWriter)
+            throws IOException {
 
-            linkDocumentToUserAndClient(documentToSave, user, client);
+        Path stagedDocument = documentBlobService.takeTheStagingPath();
 
-            renamePhysicalDocument(documentToSave.getName(), documentToSave.getGuideName(),
-                    documentToSave.getExtension());
+        try {
 
-            return returnOfDocuments(documentToSave);
-        } else {
+            contentWriter.writeTo(stagedDocument);
+            documentMetrics.countBytes(operation, Files.size(stagedDocument));
 
-            throw new BadRequestException("This name is already used for another document, choose another name");
+            return documentBlobService.storeBlob(stagedDocument, documentName);
+        } finally {
+
+            Files.deleteIfExists(stagedDocument);
         }
     }
 
-    public Path takeTheDestinationPath(String baseName, String extension) throws IOException {
+    public Boolean documentNameAlreadyExists(String guideName) {
 
-        Path documentPathStorage = documentStorageProperties.getDocumentStorageLocation();
-        Files.createDirectories(documentPathStorage);
+        return documentVersionService.findVersionedDocument(guideName) != null;
+    }
+
+    public Set<String> findExistingDocumentNames(Collection<String> guideNames) {
 
-        return documentPathStorage.resolve
-                        (Paths.get(baseName + "." + extension))
-                .normalize()
-                .toAbsolutePath();
+        if (guideNames.isEmpty()) {
+
+            return Set.of();
+        }
+
+        return new HashSet<>(documentVersionService.findExistingGuideNames(guideNames));
     }
 
-    public Boolean documentNameAlreadyExists(String guideName) {
+    public String returnIfNameIsAlreadyUsed() {
 
-        List<Documents> documentListWithThisName = documentRepository.findByGuideName(guideName);
-        return !documentListWithThisName.isEmpty();
+        return "This name is already used for another document, choose another name";
     }
 
     @Transactional
     public DocumentResponse updateDocument(MultipartFile multipartFile, DocumentRequest request, String username)
             throws IOException {
 
-        Users user = userRepository.findByUsername(username);
+        return updateDocument(getOriginalDocumentName(multipartFile), multipartFile::transferTo, request,
+                username);
+    }
 
-        jwtService.checkIfUserWasDeleted(user);
+    @Transactional
+    public DocumentResponse updateDocument(String originalDocumentName, DocumentContentWriter contentWriter,
+                                           DocumentRequest request, String username)
+            throws IOException {
+
+        return documentMetrics.recordOperation(DocumentMetrics.UPDATE,
+                () -> saveDocumentUpdate(originalDocumentName, contentWriter, request, username));
+    }
+
+    public DocumentResponse saveDocumentUpdate(String originalDocumentName, DocumentContentWriter contentWriter,
+                                               DocumentRequest request, String username)
+            throws IOException {
 
-        Clients client = userClientRepository.findByUser(user).getClient();
+        UserPrincipal userPrincipal = userPrincipalService.findActivePrincipal(username);
+        Users user = userRepository.getReferenceById(userPrincipal.userId());
+        Clients client = clientRepository.getReferenceById(userPrincipal.clientId());
 
-        String originalDocumentName = getOriginalDocumentName(multipartFile);
         String baseName = FilenameUtils.getBaseName(originalDocumentName);
         String guideName = renameDocumentNameToAddUser(baseName, username);
 
-        List<Documents> listDocumentsByName = listDocumentsByName(guideName, username);
+        // Locked until the commit, two updates of the same document would otherwise take the same version
+        VersionedDocuments versionedDocument = documentVersionService.findVersionedDocumentForUpdate(
+                userPrincipal.clientId(), guideName);
 
-        if (listDocumentsByName.isEmpty()) {
+        if (versionedDocument == null) {
 
             throw new BadRequestException(exceptionReturnForEmptyList(baseName, username));
         }
 
-        Documents documentToUpdate = renameGuideNameToHaveVersion(listDocumentsByName.get(0));
+        DocumentBlobs blob = writeDocumentContent(DocumentMetrics.UPDATE,
+                baseName + "." + versionedDocument.getExtension(), contentWriter);
+        Documents documentToUpdate = versionedDocument.getCurrentVersion();
+
+        // Managed by the transaction, the change is flushed together with the new version
+        documentToUpdate.setUpdated(LocalDate.now());
 
         Documents documentToSave = Documents.builder()
                 .name(baseName)
                 .guideName(guideName)
-                .extension(documentToUpdate.getExtension())
-                .version(documentToUpdate.getVersion() + 1)
+                .extension(versionedDocument.getExtension())
                 .validity(request.validity())
                 .creation(LocalDate.now())
                 .updated(null)
                 .exclusion(null)
                 .originalDocument(documentToUpdate)
+                .blob(blob)
+                .client(client)
+                .userCreation(user)
                 .build();
 
-        documentRepository.save(documentToSave);
-
-        linkDocumentToUserAndClient(documentToSave, user, client);
-
-        Files.createDirectories(documentStorageLocation);
-        Path destinationFile = documentStorageLocation.resolve(originalDocumentName).normalize().toAbsolutePath();
-        multipartFile.transferTo(destinationFile);
-
-        renamePhysicalDocument(documentToSave.getGuideName(), documentToUpdate.getGuideName(),
-                documentToSave.getExtension());
-
-        renamePhysicalDocument(documentToSave.getName(), documentToSave.getGuideName(),
-                documentToSave.getExtension());
+        documentVersionService.saveNewVersion(versionedDocument, documentToSave);
+        documentJobService.enqueueJobs(documentToSave);
+        documentJobService.enqueueDeltaEncoding(documentToUpdate);
 
         return returnOfDocuments(documentToSave);
     }
 
-    public Documents renameGuideNameToHaveVersion(Documents documentToUpdate) {
-
-        documentToUpdate.setGuideName(documentToUpdate.getGuideName() + "_V" + documentToUpdate.getVersion());
-        documentToUpdate.setUpdated(LocalDate.now());
-
-        return documentRepository.save(documentToUpdate);
-    }
-
-    public void linkDocumentToUserAndClient(Documents documentToSave, Users user, Clients client) {
-
-        List<Documents> documentListUser = user.getListDocumentsCreation();
-        documentListUser.add(documentToSave);
-        user.setListDocumentsCreation(documentListUser);
-
-        List<Documents> documentListClient = client.getDocumentList();
-        documentListClient.add(documentToSave);
-        client.setDocumentList(documentListClient);
-
-        userRepository.save(user);
-        clientRepository.save(client);
-    }
-
     public DocumentResponse returnOfDocuments(Documents documentToSave) {
 
         return DocumentResponse.builder()
                 .name(documentToSave.getName())
-                .originalDocument(documentToSave.getOriginalDocument())
+                .originalDocument(documentToSave.getOriginalDocument() == null
+                        ? null
+                        : returnOfDocumentSummary(documentToSave.getOriginalDocument()))
                 .extension(documentToSave.getExtension())
                 .version(documentToSave.getVersion())
                 .validity(documentToSave.getValidity())
@@ -240,6 +345,21 @@ public class DocumentService {
                 .build();
     }
 
+    public DocumentSummaryResponse returnOfDocumentSummary(Documents document) {
+
+        return DocumentSummaryResponse.builder()
+                .uuid(document.getUuid())
+                .name(document.getName())
+                .guideName(document.getGuideName())
+                .extension(document.getExtension())
+                .version(document.getVersion())
+                .validity(document.getValidity())
+                .creation(document.getCreation())
+                .updated(document.getUpdated())
+                .exclusion(document.getExclusion())
+                .build();
+    }
+
     public String getOriginalDocumentName(MultipartFile multipartFile) {
 
         return StringUtils.cleanPath(
@@ -250,81 +370,94 @@ public class DocumentService {
     @Transactional
     public void usePreviousVersion(String documentName, String username) {
 
-        Users user = userRepository.findByUsername(username);
+        documentMetrics.recordOperation(DocumentMetrics.PREVIOUS_VERSION, () -> {
+
+            restorePreviousVersion(documentName, username);
+            return null;
+        });
+    }
+
+    public void restorePreviousVersion(String documentName, String username) {
 
-        jwtService.checkIfUserWasDeleted(user);
+        UserPrincipal userPrincipal = userPrincipalService.findActivePrincipal(username);
+        Users user = userRepository.getReferenceById(userPrincipal.userId());
 
         String guideName = renameDocumentNameToAddUser(documentName, username);
-        List<Documents> documentListFromUserByName = listDocumentsByName(guideName, username);
+        VersionedDocuments versionedDocument = documentVersionService.findVersionedDocumentForUpdate(
+                userPrincipal.clientId(), guideName);
 
-        if (documentListFromUserByName.isEmpty()) {
+        if (versionedDocument == null) {
 
             throw new BadRequestException(exceptionReturnForEmptyList(documentName, username));
         }
 
-        if (documentListFromUserByName.size() == 1) {
+        Documents documentToExcludeLogically = versionedDocument.getCurrentVersion();
+        Documents previousVersionDocument = documentVersionService.findPreviousVersion(versionedDocument,
+                documentToExcludeLogically);
+
+        if (previousVersionDocument == null) {
 
             throw new BadRequestException("This is the first version of the document");
         }
 
-        Documents documentToExcludeLogically = documentListFromUserByName.get(0);
-        Documents previousVersionDocument = documentToExcludeLogically.getOriginalDocument();
+        returnIfVersionCannotBeRead(previousVersionDocument);
 
-        String originalDocumentName = documentToExcludeLogically.getGuideName() + "." +
-                documentToExcludeLogically.getExtension();
-        Path documentPath = documentStorageLocation.resolve(originalDocumentName).normalize().toAbsolutePath();
+        deletePhysicalDocument(documentToExcludeLogically);
 
         documentToExcludeLogically = deleteDocumentLogically(documentToExcludeLogically);
 
         linkDeletedDocumentToUser(user, documentToExcludeLogically);
 
-        try {
+        documentVersionService.useVersion(versionedDocument, previousVersionDocument);
+    }
 
-            Files.deleteIfExists(documentPath);
-        } catch (IOException ioexception) {
+    public void returnIfVersionCannotBeRead(Documents document) {
 
-            throw new BadRequestException("Error deleting document from document system: " + documentToExcludeLogically.getName());
+        if (document.getBlob() == null || document.getBlob().getBaseHash() == null) {
+
+            return;
         }
 
-        renamePhysicalDocument(previousVersionDocument.getGuideName(), guideName, documentToExcludeLogically.getExtension());
+        // Rebuilt before anything changes, so a broken delta chain never becomes the version in use
+        try {
+
+            documentBlobService.reconstructBlob(document.getBlob().getHash());
+        } catch (IOException | RuntimeException exception) {
 
-        previousVersionDocument.setGuideName(guideName);
-        documentRepository.save(previousVersionDocument);
+            throw new BadRequestException("The previous version could not be rebuilt from the document system: "
+                    + exception.getMessage());
+        }
     }
 
     @Transactional
     public void deleteAllDocumentWithName(String documentName, String username) {
 
-        Users user = userRepository.findByUsername(username);
+        documentMetrics.recordOperation(DocumentMetrics.DELETE, () -> {
 
-        if(Boolean.TRUE.equals(user.getExcluded())) {
+            deleteAllVersions(documentName, username);
+            return null;
+        });
+    }
 
-            throw new BadRequestException("This user has been deleted");
-        }
+    public void deleteAllVersions(String documentName, String username) {
+
+        UserPrincipal userPrincipal = userPrincipalService.findActivePrincipal(username);
+        Users user = userRepository.getReferenceById(userPrincipal.userId());
 
         String guideName = renameDocumentNameToAddUser(documentName, username);
-        List<Documents> documentListByName = listDocumentsByName(guideName, username);
+        VersionedDocuments versionedDocument = documentVersionService.findVersionedDocumentForUpdate(
+                userPrincipal.clientId(), guideName);
 
-        if (documentListByName.isEmpty()) {
+        if (versionedDocument == null) {
 
             throw new BadRequestException(exceptionReturnForEmptyList(documentName, username));
         }
 
-        for (Documents document : documentListByName) {
+        documentVersionService.deleteVersionedDocument(versionedDocument);
 
-            String originalDocumentName = document.getGuideName() + "." + document.getExtension();
-            Path documentPath = documentStorageLocation.resolve(originalDocumentName)
-                    .normalize()
-                    .toAbsolutePath();
+        for (Documents document : documentVersionService.listVersions(versionedDocument)) {
 
-            try {
-
-                Files.deleteIfExists(documentPath);
-            } catch (IOException ioexception) {
-
-                throw new BadRequestException("Error deleting document from document system: "
-                        + originalDocumentName);
-            }
+            deletePhysicalDocument(document);
 
             deleteDocumentLogically(document);
 
@@ -332,6 +465,31 @@ public class DocumentService {
         }
     }
 
+    public void deletePhysicalDocument(Documents document) {
+
+        if (document.getBlob() != null) {
+
+            // The link goes with the reference, so the released blob row can later be deleted
+            documentBlobService.releaseBlob(document.getBlob());
+            document.setBlob(null);
+            return;
+        }
+
+        String originalDocumentName = document.getGuideName() + "." + document.getExtension();
+
+        try {
+
+            String storageKey = takeTheStorageKey(document);
+
+            documentStorage.delete(storageKey);
+            documentReadCache.invalidate(List.of(storageKey));
+        } catch (IOException ioexception) {
+
+            throw new BadRequestException("Error deleting document from document system: "
+                    + originalDocumentName);
+        }
+    }
+
     public String exceptionReturnForEmptyList(String documentName, String username) {
 
         return "No documents were found with the name " + documentName + " linked to the user " +
@@ -348,11 +506,7 @@ public class DocumentService {
 
     public void linkDeletedDocumentToUser(Users user, Documents documentToExcludeLogically) {
 
-        List<Documents> documentListFromUserToExclude = user.getListDocumentsExclusion();
-        documentListFromUserToExclude.add(documentToExcludeLogically);
-        user.setListDocumentsExclusion(documentListFromUserToExclude);
-
-        userRepository.save(user);
+        documentToExcludeLogically.setUserExclusion(user);
     }
 
     public String renameDocumentNameToAddUser(String documentName, String username) {
@@ -360,80 +514,115 @@ public class DocumentService {
         return documentName + "-" + username;
     }
 
-    public List<Documents> listDocumentsByName(String guideName, String username) {
+    public List<DocumentSummaryResponse> listDocumentsByName(String guideName, String username) {
 
-        UserResponse userResponse = userService.findUserByUsername(username);
-        Users user = userRepository.findByUsername(userResponse.username());
+        VersionedDocuments versionedDocument = findVersionedDocument(guideName, username);
 
-        jwtService.checkIfUserWasDeleted(user);
+        if (versionedDocument == null) {
 
-        Clients client = userClientRepository.findByUser(user).getClient();
-        List<Documents> documentListClient = client.getDocumentList();
-        List<Documents> documentListToReturn = getDocumentWithGuideNameInformed(documentListClient,
-                guideName);
+            return new ArrayList<>();
+        }
 
-        documentListToReturn.addAll(listDocumentsWithVersionInName(documentListClient, guideName));
+        return documentVersionService.listVersionSummaries(versionedDocument);
+    }
 
-        return documentListToReturn;
+    public VersionedDocuments findVersionedDocument(String guideName, String username) {
+
+        UserPrincipal userPrincipal = userPrincipalService.findActivePrincipal(username);
+        return documentVersionService.findVersionedDocument(userPrincipal.clientId(), guideName);
     }
 
-    public List<Documents> getDocumentWithGuideNameInformed(List<Documents> documentListClient,
-                                                            String guideName) {
+    public Documents downloadDocument(String guideName, String extension, Integer version) {
+
+        VersionedDocuments versionedDocument = documentVersionService.findVersionedDocument(guideName);
 
-        List<Documents> documentListToReturn = new ArrayList<>();
+        if (versionedDocument != null && versionedDocument.getExtension().equals(extension)) {
 
-        for (Documents document : documentListClient) {
+            Documents document = version == null
+                    ? versionedDocument.getCurrentVersion()
+                    : documentVersionService.findVersion(versionedDocument, version);
 
-            if (document.getGuideName().equals(guideName)) {
+            if (document != null) {
 
-                documentListToReturn.add(document);
+                return document;
             }
         }
 
-        return documentListToReturn;
+        throw new BadRequestException("No documents were found with the name " + guideName + "." + extension +
+                (version == null ? "" : " in version " + version));
     }
 
-    public List<Documents> listDocumentsWithVersionInName(List<Documents> documentListClient,
-                                                          String guideName) {
+    public Documents findDocumentByFileName(String documentName, String username, Integer version) {
 
-        List<Documents> documentListToReturn = new ArrayList<>();
+        int substringBegin = documentName.indexOf(".");
 
-        for (Documents document : documentListClient) {
+        if (substringBegin < 0) {
 
-            if (document.getGuideName().contains(guideName + "_V")) {
-
-                documentListToReturn.add(document);
-            }
+            throw new BadRequestException("Inform the document name with its extension, for example: test.txt");
         }
 
-        return documentListToReturn;
+        String guideName = renameDocumentNameToAddUser(documentName.substring(0, substringBegin), username);
+
+        return downloadDocument(guideName, documentName.substring(substringBegin + 1), version);
     }
 
-    @Transactional
-    public Resource downloadDocument(String documentName) throws MalformedURLException {
+    public String takeTheStorageKey(Documents document) throws IOException {
+
+        if (document.getBlob() != null) {
+
+            return documentBlobService.takeTheReadableKey(document.getBlob());
+        }
 
-        Path documentPath = documentStorageLocation.resolve(documentName).normalize();
-        return new UrlResource(documentPath.toUri());
+        return document.getGuideName() + "." + document.getExtension();
     }
 
     @Transactional
-    public void renamePhysicalDocument(String originalName, String documentRenamed, String extension) {
+    public void migrateLegacyDocument(Documents document) throws IOException {
+
+        String legacyStorageKey = takeTheStorageKey(document);
 
-        Path documentPathStorage = documentStorageProperties.getDocumentStorageLocation();
+        if (document.getBlob() != null || !documentStorage.exists(legacyStorageKey)) {
 
-        Path documentToRename = Paths.get(documentPathStorage + "/" + originalName + "." +
-                extension);
+            return;
+        }
 
-        Path modifiedDocument = Paths.get(documentPathStorage + "/" + documentRenamed + "."
-                + extension);
+        Path stagedDocument = documentBlobService.takeTheStagingPath();
+        Optional<Path> legacyDocumentPath = documentStorage.findLocalPath(legacyStorageKey);
 
         try {
 
-            Files.move(documentToRename, modifiedDocument);
-        } catch (IOException exception) {
+            if (legacyDocumentPath.isPresent()) {
+
+                Files.createLink(stagedDocument, legacyDocumentPath.get());
+            } else {
+
+                copyStoredDocument(legacyStorageKey, stagedDocument);
+            }
+        } catch (UnsupportedOperationException | IOException exception) {
+
+            Files.deleteIfExists(stagedDocument);
+            copyStoredDocument(legacyStorageKey, stagedDocument);
+        }
+
+        try {
+
+            document.setBlob(documentBlobService.storeBlob(stagedDocument,
+                    document.getName() + "." + document.getExtension()));
+            documentRepository.save(document);
+        } finally {
+
+            Files.deleteIfExists(stagedDocument);
+        }
+
+        documentStorage.delete(legacyStorageKey);
+        documentReadCache.invalidate(List.of(legacyStorageKey));
+    }
+
+    public void copyStoredDocument(String storageKey, Path destination) throws IOException {
+
+        try (InputStream inputStream = documentStorage.read(storageKey, 0)) {
 
-            throw new BadRequestException
-                    ("Unable to rename the document before this one for version differentiation");
+            Files.copy(inputStream, destination);
         }
     }
 }
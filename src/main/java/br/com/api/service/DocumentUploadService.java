@@ -0,0 +1,141 @@
+package br.com.api.service;
+
+import br.com.api.config.DocumentStorageProperties;
+
+import br.com.api.domain.dto.DocumentRequest;
+import br.com.api.domain.dto.DocumentResponse;
+
+import br.com.api.exception.BadRequestException;
+
+import lombok.RequiredArgsConstructor;
+
+import org.apache.commons.io.FilenameUtils;
+
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+import java.util.UUID;
+
+@Service
+@RequiredArgsConstructor
+public class DocumentUploadService {
+
+    private final DocumentService documentService;
+    private final DocumentStorageProperties documentStorageProperties;
+
+    public DocumentResponse addNewDocumentFromStream(InputStream inputStream, long contentLength,
+                                                     String documentName, DocumentRequest request,
+                                                     String username)
+            throws IOException {
+
+        String originalDocumentName = getOriginalDocumentName(documentName);
+        String guideName = documentService.renameDocumentNameToAddUser(
+                FilenameUtils.getBaseName(originalDocumentName), username);
+
+        if (Boolean.TRUE.equals(documentService.documentNameAlreadyExists(guideName))) {
+
+            throw new BadRequestException("This name is already used for another document, choose another name");
+        }
+
+        Path stagedDocument = stageDocument(inputStream, contentLength);
+
+        try {
+
+            return documentService.addNewDocument(originalDocumentName,
+                    destination -> moveStagedDocument(stagedDocument, destination), request, username);
+        } finally {
+
+            Files.deleteIfExists(stagedDocument);
+        }
+    }
+
+    public DocumentResponse updateDocumentFromStream(InputStream inputStream, long contentLength,
+                                                     String documentName, DocumentRequest request,
+                                                     String username)
+            throws IOException {
+
+        String originalDocumentName = getOriginalDocumentName(documentName);
+        Path stagedDocument = stageDocument(inputStream, contentLength);
+
+        try {
+
+            return documentService.updateDocument(originalDocumentName,
+                    destination -> moveStagedDocument(stagedDocument, destination), request, username);
+        } finally {
+
+            Files.deleteIfExists(stagedDocument);
+        }
+    }
+
+    public Path stageDocument(InputStream inputStream, long contentLength) throws IOException {
+
+        long maxDocumentSize = documentStorageProperties.getStreaming().getMaxDocumentSize().toBytes();
+
+        if (maxDocumentSize > 0 && contentLength > maxDocumentSize) {
+
+            throw new BadRequestException(returnIfDocumentIsTooLarge(maxDocumentSize));
+        }
+
+        Path documentPathStorage = documentStorageProperties.getDocumentStorageLocation();
+        Files.createDirectories(documentPathStorage);
+
+        Path stagedDocument = documentPathStorage.resolve(UUID.randomUUID() + ".part");
+        byte[] buffer = new byte[(int) documentStorageProperties.getStreaming().getBufferSize().toBytes()];
+        long totalBytesWritten = 0;
+
+        try (OutputStream outputStream = Files.newOutputStream(stagedDocument)) {
+
+            int bytesRead;
+
+            while ((bytesRead = inputStream.read(buffer)) != -1) {
+
+                totalBytesWritten += bytesRead;
+
+                if (maxDocumentSize > 0 && totalBytesWritten > maxDocumentSize) {
+
+                    throw new BadRequestException(returnIfDocumentIsTooLarge(maxDocumentSize));
+                }
+
+                outputStream.write(buffer, 0, bytesRead);
+            }
+        } catch (IOException | RuntimeException exception) {
+
+            Files.deleteIfExists(stagedDocument);
+            throw exception;
+        }
+
+        return stagedDocument;
+    }
+
+    public void moveStagedDocument(Path stagedDocument, Path destination) throws IOException {
+
+        Files.move(stagedDocument, destination, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public String getOriginalDocumentName(String documentName) {
+
+        String originalDocumentName = StringUtils.cleanPath(documentName);
+
+        if (originalDocumentName.contains("..") || originalDocumentName.contains("/")
+                || FilenameUtils.getBaseName(originalDocumentName).isBlank()) {
+
+            throw new BadRequestException("Invalid document name: " + documentName);
+        }
+
+        return originalDocumentName;
+    }
+
+    public String returnIfDocumentIsTooLarge(long maxDocumentSize) {
+
+        return "The document exceeds the maximum size of " + maxDocumentSize + " bytes";
+    }
+}
@@ -0,0 +1,189 @@
+package br.com.api.service;
+
+import br.com.api.domain.dto.DocumentSummaryResponse;
+
+import br.com.api.domain.entities.Clients;
+import br.com.api.domain.entities.Documents;
+import br.com.api.domain.entities.VersionedDocuments;
+
+import br.com.api.repository.DocumentRepository;
+import br.com.api.repository.VersionedDocumentRepository;
+
+import jakarta.transaction.Transactional;
+
+import lombok.RequiredArgsConstructor;
+
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+
+@Service
+@RequiredArgsConstructor
+public class DocumentVersionService {
+
+    private final VersionedDocumentRepository versionedDocumentRepository;
+    private final DocumentRepository documentRepository;
+
+    public VersionedDocuments findVersionedDocument(String guideName) {
+
+        return versionedDocumentRepository.findByGuideNameAndExclusionIsNull(guideName);
+    }
+
+    public VersionedDocuments findVersionedDocument(UUID clientUuid, String guideName) {
+
+        return versionedDocumentRepository.findByClientUuidAndGuideNameAndExclusionIsNull(clientUuid, guideName);
+    }
+
+    public VersionedDocuments findVersionedDocumentForUpdate(UUID clientUuid, String guideName) {
+
+        return versionedDocumentRepository.findByClientUuidAndGuideNameForUpdate(clientUuid, guideName);
+    }
+
+    public List<String> findExistingGuideNames(Collection<String> guideNames) {
+
+        return versionedDocumentRepository.findGuideNamesByGuideNameInAndExclusionIsNull(guideNames);
+    }
+
+    /*
+    * Links a document saved before the version table existed, and the previous versions chained to
+    * it by guide name, to a new versioned document. Run once by LegacyDocumentMigrationService.
+    * */
+    @Transactional
+    public VersionedDocuments migrateVersionedDocument(Documents document) {
+
+        UUID clientUuid = document.getClient().getUuid();
+        VersionedDocuments versionedDocument = findVersionedDocument(clientUuid, document.getGuideName());
+
+        if (versionedDocument != null) {
+
+            return versionedDocument;
+        }
+
+        return backfillVersionedDocument(document.getGuideName(),
+                documentRepository.findByClientUuidAndGuideName(clientUuid, document.getGuideName()));
+    }
+
+    public int fillLiveGuideNames() {
+
+        return versionedDocumentRepository.fillLiveGuideNames();
+    }
+
+    public boolean isPreviousVersion(Documents document) {
+
+        return document.getGuideName().endsWith("_V" + document.getVersion());
+    }
+
+    public VersionedDocuments backfillVersionedDocument(String guideName, List<Documents> documentsWithGuideName) {
+
+        // Documents saved before the version table existed only have the guide name chain
+        Documents currentVersion = documentsWithGuideName.stream()
+                .filter(document -> document.getVersionedDocument() == null && document.getExclusion() == null)
+                .max(Comparator.comparing(Documents::getVersion))
+                .orElse(null);
+
+        if (currentVersion == null) {
+
+            return null;
+        }
+
+        List<Documents> versions = new ArrayList<>();
+        versions.add(currentVersion);
+
+        for (Documents previousVersion : documentRepository.findByClientUuidAndGuideNameStartingWithOrderByVersionDesc(
+                currentVersion.getClient().getUuid(), guideName + "_V")) {
+
+            if (previousVersion.getVersionedDocument() == null && previousVersion.getExclusion() == null
+                    && previousVersion.getGuideName().equals(guideName + "_V" + previousVersion.getVersion())) {
+
+                versions.add(previousVersion);
+            }
+        }
+
+        VersionedDocuments versionedDocument = versionedDocumentRepository.save(VersionedDocuments.builder()
+                .guideName(guideName)
+                .liveGuideName(guideName)
+                .extension(currentVersion.getExtension())
+                .lastVersion(currentVersion.getVersion())
+                .creation(versions.get(versions.size() - 1).getCreation())
+                .client(currentVersion.getClient())
+                .currentVersion(currentVersion)
+                .build());
+
+        versions.forEach(version -> version.setVersionedDocument(versionedDocument));
+        documentRepository.saveAll(versions);
+
+        return versionedDocument;
+    }
+
+    /*
+    * Returns null when a live document already holds the name, the row is refused by the unique live guide
+    * name instead of a check done before it, which two concurrent uploads could both pass.
+    * */
+    public VersionedDocuments createVersionedDocument(Clients client, String guideName, String extension) {
+
+        UUID uuid = UUID.randomUUID();
+
+        if (versionedDocumentRepository.insertIfNameIsFree(uuid, guideName, extension, LocalDate.now(),
+                client.getUuid()) == 0) {
+
+            return null;
+        }
+
+        return versionedDocumentRepository.findById(uuid).orElseThrow();
+    }
+
+    public Documents saveNewVersion(VersionedDocuments versionedDocument, Documents documentToSave) {
+
+        versionedDocument.setLastVersion(versionedDocument.getLastVersion() + 1);
+
+        documentToSave.setVersion(versionedDocument.getLastVersion());
+        documentToSave.setVersionedDocument(versionedDocument);
+        documentRepository.save(documentToSave);
+
+        versionedDocument.setCurrentVersion(documentToSave);
+        versionedDocumentRepository.save(versionedDocument);
+
+        return documentToSave;
+    }
+
+    public void useVersion(VersionedDocuments versionedDocument, Documents currentVersion) {
+
+        versionedDocument.setCurrentVersion(currentVersion);
+        versionedDocumentRepository.save(versionedDocument);
+    }
+
+    public void deleteVersionedDocument(VersionedDocuments versionedDocument) {
+
+        versionedDocument.setCurrentVersion(null);
+        versionedDocument.setExclusion(LocalDate.now());
+        versionedDocument.setLiveGuideName(null);
+        versionedDocumentRepository.save(versionedDocument);
+    }
+
+    public List<Documents> listVersions(VersionedDocuments versionedDocument) {
+
+        return documentRepository.findByVersionedDocumentAndExclusionIsNullOrderByVersionDesc(versionedDocument);
+    }
+
+    public List<DocumentSummaryResponse> listVersionSummaries(VersionedDocuments versionedDocument) {
+
+        return documentRepository.findSummariesByVersionedDocument(versionedDocument);
+    }
+
+    public Documents findVersion(VersionedDocuments versionedDocument, Integer version) {
+
+        return documentRepository.findByVersionedDocumentAndVersionAndExclusionIsNull(versionedDocument, version);
+    }
+
+    public Documents findPreviousVersion(VersionedDocuments versionedDocument, Documents currentVersion) {
+
+        return documentRepository.findTopByVersionedDocumentAndVersionLessThanAndExclusionIsNullOrderByVersionDesc(
+                versionedDocument, currentVersion.getVersion());
+    }
+}
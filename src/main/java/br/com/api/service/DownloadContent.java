@@ -0,0 +1,10 @@
+package br.com.api.service;
+
+import br.com.api.domain.enums.DocumentEncoding;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+public record DownloadContent(String storageKey, Path documentPath, DocumentEncoding decoding,
+                              ByteBuffer cachedDocument) {
+}
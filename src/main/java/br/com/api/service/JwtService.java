@@ -36,14 +36,6 @@ public class JwtService {
         return jwtEncoder.encode(JwtEncoderParameters.from(claims)).getTokenValue();
     }
 
-    public void checkIfTokenIsValid() {
-
-        if(tokenIsStillValid(getExpiryFromAuthentication())) {
-
-            throw new BadRequestException(returnIfTokenIsNoLongerValid());
-        }
-    }
-
     public Instant generateExpiryToken() {
 
         return Instant.now().plusSeconds(3600);
@@ -62,29 +54,6 @@ public class JwtService {
         throw new BadRequestException("Unable to decode Token");
     }
 
-    public Instant getExpiryFromAuthentication() {
-
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-
-        if (authentication instanceof JwtAuthenticationToken jwtAuthenticationToken) {
-
-            Jwt jwt = jwtAuthenticationToken.getToken();
-            return jwt.getExpiresAt();
-        }
-
-        throw new BadRequestException("Unable to decode Token");
-    }
-
-    public boolean tokenIsStillValid(Instant expiresAtToken) {
-
-        return expiresAtToken.isBefore(Instant.now());
-    }
-
-    public String returnIfTokenIsNoLongerValid() {
-
-        return "Your token has run out of time, please log in again";
-    }
-
     public void checkIfUserWasDeleted(Users user) {
 
         if(Boolean.TRUE.equals(user.getExcluded())) {
@@ -0,0 +1,138 @@
+package br.com.api.service;
+
+import br.com.api.config.DocumentStorageProperties;
+
+import br.com.api.domain.entities.Documents;
+
+import br.com.api.repository.DocumentRepository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+
+import java.util.List;
+import java.util.UUID;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class LegacyDocumentMigrationService implements ApplicationRunner {
+
+    private final DocumentRepository documentRepository;
+    private final DocumentService documentService;
+    private final DocumentVersionService documentVersionService;
+    private final DocumentStorageProperties documentStorageProperties;
+
+    @Override
+    public void run(ApplicationArguments args) {
+
+        fillLiveGuideNames();
+
+        if (documentStorageProperties.isMigrateLegacyDocuments()
+                || documentStorageProperties.isMigrateVersionedDocuments()) {
+
+            new SimpleAsyncTaskExecutor("legacy-document-migration-").execute(() -> {
+
+                if (documentStorageProperties.isMigrateVersionedDocuments()) {
+
+                    migrateVersionedDocuments();
+                }
+
+                if (documentStorageProperties.isMigrateLegacyDocuments()) {
+
+                    migrateLegacyDocuments();
+                }
+            });
+        }
+    }
+
+    /*
+    * Heads saved before the live guide name column existed only take part in the unique name once it is
+    * filled. Names already duplicated by the race it prevents fail the whole update and are logged.
+    * */
+    public void fillLiveGuideNames() {
+
+        try {
+
+            int filledDocuments = documentVersionService.fillLiveGuideNames();
+
+            if (filledDocuments > 0) {
+
+                log.info("Live guide name filled for {} versioned documents", filledDocuments);
+            }
+        } catch (DataIntegrityViolationException exception) {
+
+            log.warn("Unable to fill the live guide names, some live documents share the same name", exception);
+        }
+    }
+
+    public void migrateVersionedDocuments() {
+
+        UUID lastDocumentUuid = new UUID(0, 0);
+        int checkedDocuments = 0;
+        List<Documents> documentsToMigrate;
+
+        do {
+
+            documentsToMigrate = documentRepository
+                    .findTop100ByVersionedDocumentIsNullAndExclusionIsNullAndUuidGreaterThanOrderByUuid(
+                            lastDocumentUuid);
+
+            for (Documents document : documentsToMigrate) {
+
+                // Previous versions are linked together with the current version that carries their guide name
+                if (!documentVersionService.isPreviousVersion(document)) {
+
+                    try {
+
+                        documentVersionService.migrateVersionedDocument(document);
+                        checkedDocuments++;
+                    } catch (RuntimeException exception) {
+
+                        log.warn("Unable to link the versions of the document {}", document.getUuid(), exception);
+                    }
+                }
+
+                lastDocumentUuid = document.getUuid();
+            }
+        } while (!documentsToMigrate.isEmpty());
+
+        log.info("Versioned document migration finished, {} documents checked", checkedDocuments);
+    }
+
+    public void migrateLegacyDocuments() {
+
+        UUID lastDocumentUuid = new UUID(0, 0);
+        int checkedDocuments = 0;
+        List<Documents> documentsToMigrate;
+
+        do {
+
+            documentsToMigrate = documentRepository
+                    .findTop100ByBlobIsNullAndExclusionIsNullAndUuidGreaterThanOrderByUuid(lastDocumentUuid);
+
+            for (Documents document : documentsToMigrate) {
+
+                try {
+
+                    documentService.migrateLegacyDocument(document);
+                    checkedDocuments++;
+                } catch (IOException | RuntimeException exception) {
+
+                    log.warn("Unable to migrate the document {} to the blob store", document.getUuid(), exception);
+                }
+
+                lastDocumentUuid = document.getUuid();
+            }
+        } while (!documentsToMigrate.isEmpty());
+
+        log.info("Legacy document migration finished, {} documents checked", checkedDocuments);
+    }
+}
@@ -0,0 +1,6 @@
+package br.com.api.service;
+
+import java.nio.file.Path;
+
+public record StagedDocument(String originalDocumentName, Path path, String hash) {
+}
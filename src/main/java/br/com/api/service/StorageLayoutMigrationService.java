@@ -0,0 +1,151 @@
+package br.com.api.service;
+
+import br.com.api.config.DocumentStorageProperties;
+
+import br.com.api.storage.DocumentStorage;
+import br.com.api.storage.ShardedDocumentStorage;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class StorageLayoutMigrationService implements ApplicationRunner {
+
+    private final DocumentStorage documentStorage;
+    private final DocumentStorageProperties documentStorageProperties;
+
+    @Override
+    public void run(ApplicationArguments args) {
+
+        DocumentStorageProperties.Storage storage = documentStorageProperties.getStorage();
+
+        if (storage.isMigrateFlatLayout() || storage.isRebalanceVolumes()) {
+
+            new SimpleAsyncTaskExecutor("storage-layout-migration-").execute(() -> {
+
+                if (storage.isMigrateFlatLayout()) {
+
+                    migrateFlatLayout();
+                }
+
+                if (storage.isRebalanceVolumes()) {
+
+                    rebalanceVolumes();
+                }
+            });
+        }
+    }
+
+    public void migrateFlatLayout() {
+
+        if (!(documentStorage instanceof ShardedDocumentStorage shardedDocumentStorage)) {
+
+            log.warn("The flat layout migration needs document.storage.type=sharded, nothing was moved");
+            return;
+        }
+
+        Path flatDocumentStorageLocation = documentStorageProperties.getDocumentStorageLocation();
+        long movedDocuments = 0;
+
+        try (DirectoryStream<Path> flatDocuments = Files.newDirectoryStream(flatDocumentStorageLocation,
+                this::isStoredDocument)) {
+
+            for (Path flatDocument : flatDocuments) {
+
+                try {
+
+                    if (shardedDocumentStorage.moveToShard(flatDocument)) {
+
+                        movedDocuments++;
+                    }
+                } catch (IOException exception) {
+
+                    log.warn("Unable to move {} to its shard", flatDocument, exception);
+                }
+
+                if (movedDocuments > 0 && movedDocuments % 10000 == 0) {
+
+                    log.info("Flat layout migration in progress, {} documents moved", movedDocuments);
+                }
+            }
+        } catch (IOException exception) {
+
+            log.error("Unable to list the upload directory {}", flatDocumentStorageLocation, exception);
+            return;
+        }
+
+        log.info("Flat layout migration finished, {} documents moved", movedDocuments);
+    }
+
+    public void rebalanceVolumes() {
+
+        if (!(documentStorage instanceof ShardedDocumentStorage shardedDocumentStorage)) {
+
+            log.warn("The volume rebalance needs document.storage.type=sharded, nothing was moved");
+            return;
+        }
+
+        long movedDocuments = 0;
+
+        for (Path volume : shardedDocumentStorage.getDocumentStorageLocations()) {
+
+            // <volume>/<first byte>/<second byte>/<key>, the flat documents and staged uploads that may share
+            // the first volume are one level up
+            try (Stream<Path> shardedDocuments = Files.find(volume, 3, (path, attributes) ->
+                    path.getNameCount() == volume.getNameCount() + 3 && isStoredDocument(path))) {
+
+                Iterator<Path> iterator = shardedDocuments.iterator();
+
+                while (iterator.hasNext()) {
+
+                    Path shardedDocument = iterator.next();
+
+                    try {
+
+                        if (shardedDocumentStorage.moveToVolume(shardedDocument)) {
+
+                            movedDocuments++;
+                        }
+                    } catch (IOException exception) {
+
+                        log.warn("Unable to move {} to the volume that wins its key", shardedDocument, exception);
+                    }
+
+                    if (movedDocuments > 0 && movedDocuments % 10000 == 0) {
+
+                        log.info("Volume rebalance in progress, {} documents moved", movedDocuments);
+                    }
+                }
+            } catch (IOException | UncheckedIOException exception) {
+
+                log.error("Unable to list the volume {}", volume, exception);
+            }
+        }
+
+        log.info("Volume rebalance finished, {} documents moved", movedDocuments);
+    }
+
+    public boolean isStoredDocument(Path path) {
+
+        String fileName = path.getFileName().toString();
+
+        return Files.isRegularFile(path) && !fileName.endsWith(".part") && !fileName.endsWith(".session");
+    }
+}
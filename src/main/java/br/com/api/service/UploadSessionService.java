@@ -0,0 +1,314 @@
+package br.com.api.service;
+
+import br.com.api.config.DocumentStorageProperties;
+
+import br.com.api.domain.dto.*;
+
+import br.com.api.domain.entities.UploadChunks;
+import br.com.api.domain.entities.UploadSessions;
+
+import br.com.api.exception.BadRequestException;
+
+import br.com.api.repository.UploadChunkRepository;
+import br.com.api.repository.UploadSessionRepository;
+
+import lombok.RequiredArgsConstructor;
+
+import org.apache.commons.io.FilenameUtils;
+
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import java.time.LocalDateTime;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+@Service
+@RequiredArgsConstructor
+public class UploadSessionService {
+
+    private final UploadSessionRepository uploadSessionRepository;
+    private final UploadChunkRepository uploadChunkRepository;
+    private final DocumentService documentService;
+    private final DocumentUploadService documentUploadService;
+    private final DocumentStorageProperties documentStorageProperties;
+
+    public UploadSessionResponse createUploadSession(UploadSessionRequest request, String username)
+            throws IOException {
+
+        String originalDocumentName = documentUploadService.getOriginalDocumentName(request.documentName());
+        boolean updateDocument = Boolean.TRUE.equals(request.updateDocument());
+
+        String guideName = documentService.renameDocumentNameToAddUser(
+                FilenameUtils.getBaseName(originalDocumentName), username);
+
+        if (!updateDocument && Boolean.TRUE.equals(documentService.documentNameAlreadyExists(guideName))) {
+
+            throw new BadRequestException("This name is already used for another document, choose another name");
+        }
+
+        long maxDocumentSize = documentStorageProperties.getStreaming().getMaxDocumentSize().toBytes();
+
+        if (maxDocumentSize > 0 && request.totalSize() > maxDocumentSize) {
+
+            throw new BadRequestException(documentUploadService.returnIfDocumentIsTooLarge(maxDocumentSize));
+        }
+
+        long chunkSize = request.chunkSize() == null
+                ? documentStorageProperties.getUploadSession().getDefaultChunkSize().toBytes()
+                : request.chunkSize();
+
+        if (chunkSize < documentStorageProperties.getUploadSession().getMinChunkSize().toBytes()
+                && chunkSize < request.totalSize()) {
+
+            throw new BadRequestException("The chunk size is below the minimum of " +
+                    documentStorageProperties.getUploadSession().getMinChunkSize().toBytes() + " bytes");
+        }
+
+        if (chunkSize > documentStorageProperties.getUploadSession().getMaxChunkSize().toBytes()) {
+
+            throw new BadRequestException("The chunk size exceeds the maximum of " +
+                    documentStorageProperties.getUploadSession().getMaxChunkSize().toBytes() + " bytes");
+        }
+
+        UploadSessions uploadSession = uploadSessionRepository.save(UploadSessions.builder()
+                .username(username)
+                .documentName(originalDocumentName)
+                .validity(request.validity())
+                .totalSize(request.totalSize())
+                .chunkSize(chunkSize)
+                .updateDocument(updateDocument)
+                .creation(LocalDateTime.now())
+                .build());
+
+        Files.createDirectories(documentStorageProperties.getDocumentStorageLocation());
+        Files.createFile(takeTheSessionPath(uploadSession));
+
+        return returnOfUploadSession(uploadSession, new ArrayList<>());
+    }
+
+    public UploadSessionResponse findUploadSession(UUID sessionId, String username) {
+
+        UploadSessions uploadSession = getUploadSession(sessionId, username);
+        return returnOfUploadSession(uploadSession,
+                uploadChunkRepository.findByUploadSessionOrderByNumber(uploadSession));
+    }
+
+    public UploadSessionResponse uploadChunk(UUID sessionId, int chunkNumber, InputStream inputStream,
+                                             long contentLength, String username)
+            throws IOException {
+
+        UploadSessions uploadSession = getUploadSession(sessionId, username);
+
+        if (chunkNumber < 0 || chunkNumber >= uploadSession.getTotalChunks()) {
+
+            throw new BadRequestException("The chunk number must be between 0 and " +
+                    (uploadSession.getTotalChunks() - 1));
+        }
+
+        long position = chunkNumber * uploadSession.getChunkSize();
+        long expectedSize = Math.min(uploadSession.getChunkSize(), uploadSession.getTotalSize() - position);
+
+        if (contentLength >= 0 && contentLength != expectedSize) {
+
+            throw new BadRequestException(returnIfChunkSizeIsInvalid(chunkNumber, expectedSize));
+        }
+
+        long bytesWritten = writeChunk(takeTheSessionPath(uploadSession), inputStream, position, expectedSize);
+
+        if (bytesWritten != expectedSize) {
+
+            throw new BadRequestException(returnIfChunkSizeIsInvalid(chunkNumber, expectedSize));
+        }
+
+        if (!uploadChunkRepository.existsByUploadSessionAndNumber(uploadSession, chunkNumber)) {
+
+            try {
+
+                uploadChunkRepository.save(UploadChunks.builder()
+                        .uploadSession(uploadSession)
+                        .number(chunkNumber)
+                        .size(bytesWritten)
+                        .build());
+            } catch (DataIntegrityViolationException exception) {
+
+                // The same chunk was sent twice concurrently, the bytes on disk are identical
+            }
+        }
+
+        return returnOfUploadSession(uploadSession,
+                uploadChunkRepository.findByUploadSessionOrderByNumber(uploadSession));
+    }
+
+    public long writeChunk(Path sessionPath, InputStream inputStream, long position, long expectedSize)
+            throws IOException {
+
+        ByteBuffer buffer = ByteBuffer.allocate(
+                (int) documentStorageProperties.getStreaming().getBufferSize().toBytes());
+        long totalBytesWritten = 0;
+
+        try (FileChannel fileChannel = FileChannel.open(sessionPath, StandardOpenOption.WRITE)) {
+
+            int bytesRead;
+
+            while ((bytesRead = inputStream.read(buffer.array())) != -1) {
+
+                if (totalBytesWritten + bytesRead > expectedSize) {
+
+                    return totalBytesWritten + bytesRead;
+                }
+
+                buffer.limit(bytesRead).position(0);
+
+                while (buffer.hasRemaining()) {
+
+                    totalBytesWritten += fileChannel.write(buffer, position + totalBytesWritten);
+                }
+
+                buffer.clear();
+            }
+        }
+
+        return totalBytesWritten;
+    }
+
+    public DocumentResponse commitUploadSession(UUID sessionId, String username) throws IOException {
+
+        UploadSessions uploadSession = getUploadSession(sessionId, username);
+        Path sessionPath = takeTheSessionPath(uploadSession);
+
+        if (uploadChunkRepository.countByUploadSession(uploadSession) != uploadSession.getTotalChunks()) {
+
+            throw new BadRequestException("The upload session still has missing chunks, check the received ranges");
+        }
+
+        try (FileChannel fileChannel = FileChannel.open(sessionPath, StandardOpenOption.WRITE)) {
+
+            fileChannel.force(true);
+        }
+
+        DocumentRequest documentRequest = new DocumentRequest(uploadSession.getValidity());
+        DocumentContentWriter contentWriter = destination ->
+                documentUploadService.moveStagedDocument(sessionPath, destination);
+
+        DocumentResponse documentResponse = Boolean.TRUE.equals(uploadSession.getUpdateDocument())
+                ? documentService.updateDocument(uploadSession.getDocumentName(), contentWriter, documentRequest,
+                        username)
+                : documentService.addNewDocument(uploadSession.getDocumentName(), contentWriter, documentRequest,
+                        username);
+
+        deleteUploadSession(uploadSession);
+
+        return documentResponse;
+    }
+
+    public void abortUploadSession(UUID sessionId, String username) throws IOException {
+
+        deleteUploadSession(getUploadSession(sessionId, username));
+    }
+
+    @Scheduled(fixedDelayString = "PT1H")
+    public void deleteExpiredUploadSessions() throws IOException {
+
+        LocalDateTime expiration = LocalDateTime.now()
+                .minus(documentStorageProperties.getUploadSession().getExpiration());
+
+        for (UploadSessions uploadSession : uploadSessionRepository.findByCreationBefore(expiration)) {
+
+            deleteUploadSession(uploadSession);
+        }
+    }
+
+    public void deleteUploadSession(UploadSessions uploadSession) throws IOException {
+
+        Files.deleteIfExists(takeTheSessionPath(uploadSession));
+
+        uploadChunkRepository.deleteByUploadSession(uploadSession);
+        uploadSessionRepository.delete(uploadSession);
+    }
+
+    public UploadSessions getUploadSession(UUID sessionId, String username) {
+
+        UploadSessions uploadSession = uploadSessionRepository.findByUuidAndUsername(sessionId, username);
+
+        if (uploadSession == null) {
+
+            throw new BadRequestException("No upload session was found with the id " + sessionId +
+                    " linked to the user " + username + ".");
+        }
+
+        return uploadSession;
+    }
+
+    public Path takeTheSessionPath(UploadSessions uploadSession) {
+
+        return documentStorageProperties.getDocumentStorageLocation()
+                .resolve(uploadSession.getUuid() + ".session");
+    }
+
+    public UploadSessionResponse returnOfUploadSession(UploadSessions uploadSession, List<UploadChunks> chunks) {
+
+        List<ByteRangeResponse> receivedRanges = new ArrayList<>();
+        List<ChunkRangeResponse> missingChunks = new ArrayList<>();
+        long receivedBytes = 0;
+        int nextExpectedChunk = 0;
+
+        for (UploadChunks chunk : chunks) {
+
+            if (nextExpectedChunk < chunk.getNumber()) {
+
+                missingChunks.add(new ChunkRangeResponse(nextExpectedChunk, chunk.getNumber() - 1));
+            }
+
+            long start = chunk.getNumber() * uploadSession.getChunkSize();
+            long end = start + chunk.getSize() - 1;
+            ByteRangeResponse lastRange = receivedRanges.isEmpty() ? null : receivedRanges.get(receivedRanges.size() - 1);
+
+            if (lastRange != null && lastRange.end() + 1 == start) {
+
+                receivedRanges.set(receivedRanges.size() - 1, new ByteRangeResponse(lastRange.start(), end));
+            } else {
+
+                receivedRanges.add(new ByteRangeResponse(start, end));
+            }
+
+            receivedBytes += chunk.getSize();
+            nextExpectedChunk = chunk.getNumber() + 1;
+        }
+
+        if (nextExpectedChunk < uploadSession.getTotalChunks()) {
+
+            missingChunks.add(new ChunkRangeResponse(nextExpectedChunk, uploadSession.getTotalChunks() - 1));
+        }
+
+        return UploadSessionResponse.builder()
+                .sessionId(uploadSession.getUuid())
+                .documentName(uploadSession.getDocumentName())
+                .validity(uploadSession.getValidity())
+                .totalSize(uploadSession.getTotalSize())
+                .chunkSize(uploadSession.getChunkSize())
+                .totalChunks(uploadSession.getTotalChunks())
+                .receivedBytes(receivedBytes)
+                .receivedRanges(receivedRanges)
+                .missingChunks(missingChunks)
+                .build();
+    }
+
+    public String returnIfChunkSizeIsInvalid(int chunkNumber, long expectedSize) {
+
+        return "The chunk " + chunkNumber + " must have exactly " + expectedSize + " bytes";
+    }
+}
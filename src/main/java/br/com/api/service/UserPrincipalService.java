@@ -0,0 +1,128 @@
+package br.com.api.service;
+
+import br.com.api.config.UserCacheProperties;
+
+import br.com.api.domain.dto.UserPrincipal;
+
+import br.com.api.exception.BadRequestException;
+
+import br.com.api.repository.UserClientRepository;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import org.springframework.stereotype.Service;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.UUID;
+
+@Service
+public class UserPrincipalService {
+
+    private final UserClientRepository userClientRepository;
+    private final Cache<String, UserPrincipal> principalCache;
+    private final Cache<UUID, String> ownerCache;
+
+    public UserPrincipalService(UserClientRepository userClientRepository, UserCacheProperties userCacheProperties) {
+
+        this.userClientRepository = userClientRepository;
+        this.principalCache = Caffeine.newBuilder()
+                .maximumSize(userCacheProperties.getPrincipal().getMaximumSize())
+                .expireAfterWrite(userCacheProperties.getPrincipal().getExpireAfterWrite())
+                .build();
+        this.ownerCache = Caffeine.newBuilder()
+                .maximumSize(userCacheProperties.getOwner().getMaximumSize())
+                .expireAfterWrite(userCacheProperties.getOwner().getExpireAfterWrite())
+                .build();
+    }
+
+    public UserPrincipal findPrincipal(String username) {
+
+        UserPrincipal userPrincipal = principalCache.get(username, this::loadPrincipal);
+
+        if (userPrincipal == null) {
+
+            throw new BadRequestException("No user was found with the username " + username);
+        }
+
+        return userPrincipal;
+    }
+
+    public UserPrincipal findActivePrincipal(String username) {
+
+        UserPrincipal userPrincipal = findPrincipal(username);
+
+        if (Boolean.TRUE.equals(userPrincipal.excluded())) {
+
+            throw new BadRequestException("This user has been deleted");
+        }
+
+        return userPrincipal;
+    }
+
+    public UserPrincipal findApprovedPrincipal(String username) {
+
+        UserPrincipal userPrincipal = findActivePrincipal(username);
+
+        if (!userPrincipal.linkIsApproved()) {
+
+            throw new BadRequestException("Your link has not yet been permitted by the legal entity");
+        }
+
+        return userPrincipal;
+    }
+
+    public UserPrincipal loadPrincipal(String username) {
+
+        List<UserPrincipal> userPrincipals = userClientRepository.findPrincipalsByUsername(username);
+        return userPrincipals.isEmpty() ? null : userPrincipals.get(0);
+    }
+
+    public String findOwnerUsername(UUID clientId) {
+
+        String ownerUsername = ownerCache.get(clientId, this::loadOwnerUsername);
+
+        if (ownerUsername == null) {
+
+            throw new BadRequestException("No owner was found for the client " + clientId);
+        }
+
+        return ownerUsername;
+    }
+
+    public UserPrincipal findOwnerPrincipal(UUID clientId) {
+
+        return findPrincipal(findOwnerUsername(clientId));
+    }
+
+    public String loadOwnerUsername(UUID clientId) {
+
+        List<String> ownerUsernames = userClientRepository.findOwnerUsernamesByClientUuid(clientId);
+        return ownerUsernames.isEmpty() ? null : ownerUsernames.get(0);
+    }
+
+    /*
+    * Inside a transaction the entry is only dropped after the commit, evicting earlier would let a
+    * concurrent request load the old row again and cache it until the entry expires.
+    * */
+    public void evictPrincipal(String username) {
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+
+            principalCache.invalidate(username);
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+
+            @Override
+            public void afterCommit() {
+
+                principalCache.invalidate(username);
+            }
+        });
+    }
+}
@@ -16,6 +16,8 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 
 import org.springframework.stereotype.Service;
 
+import org.springframework.transaction.annotation.Transactional;
+
 import java.time.Instant;
 import java.time.LocalTime;
 import java.time.ZoneId;
@@ -34,6 +36,7 @@ public class UserService {
     private final ClientRepository clientRepository;
     private final UserRepository userRepository;
     private final UserClientRepository userClientRepository;
+    private final UserPrincipalService userPrincipalService;
 
     public JwtResponse authenticate(JwtRequest jwtRequest) {
 
@@ -103,18 +106,9 @@ public class UserService {
 
     public UserResponse createNewEmployee(Clients existingClient, UserRequest userRequest) {
 
-        Users user = null;
-
-        for(Users finalUser : existingClient.getUsers()) {
-
-            if(userClientRepository.findByUser(finalUser).getApprovedRequest() == null) {
-
-                user = finalUser;
-            }
-        }
+        UserPrincipal owner = userPrincipalService.findOwnerPrincipal(existingClient.getUuid());
 
-        assert user != null;
-        if(Boolean.TRUE.equals(user.getExcluded())) {
+        if(Boolean.TRUE.equals(owner.excluded())) {
 
             throw new BadRequestException("This user you are trying to link to has been deleted");
         }
@@ -153,24 +147,24 @@ public class UserService {
         List<EmployeeResponse> listOfUsersWhoWantToLink = new ArrayList<>();
         EmployeeResponse employeeResponse;
 
-        for(Users user : client.getUsers()) {
+        for(UserClient userClient : userClientRepository.findByClientAndApprovedRequestFalse(client)) {
 
-            if(Boolean.FALSE.equals(userClientRepository.findByUser(user).getApprovedRequest())) {
+            Users user = userClient.getUser();
 
-                employeeResponse = EmployeeResponse.builder()
-                        .username(user.getUsername())
-                        .email(user.getEmail())
-                        .excluded(user.getExcluded())
-                        .approvedRequest(false)
-                        .build();
+            employeeResponse = EmployeeResponse.builder()
+                    .username(user.getUsername())
+                    .email(user.getEmail())
+                    .excluded(user.getExcluded())
+                    .approvedRequest(false)
+                    .build();
 
-                listOfUsersWhoWantToLink.add(employeeResponse);
-            }
+            listOfUsersWhoWantToLink.add(employeeResponse);
         }
 
         return listOfUsersWhoWantToLink;
     }
 
+    @Transactional
     public EmployeeResponse allowUserLinking(Clients client, String username) {
 
         Users userToSetApprovedRequest = null;
@@ -187,6 +181,7 @@ public class UserService {
 
             userClientRepository.findByUser(userToSetApprovedRequest).setApprovedRequest(true);
             userRepository.save(userToSetApprovedRequest);
+            userPrincipalService.evictPrincipal(userToSetApprovedRequest.getUsername());
 
             return EmployeeResponse.builder()
                     .username(userToSetApprovedRequest.getUsername())
@@ -200,10 +195,12 @@ public class UserService {
         }
     }
 
+    @Transactional
     public UserResponse deleteAccount(Users user) {
 
         user.setExcluded(true);
         userRepository.save(user);
+        userPrincipalService.evictPrincipal(user.getUsername());
 
         return UserResponse.builder()
                 .userId(user.getUuid())
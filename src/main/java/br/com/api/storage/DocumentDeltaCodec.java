@@ -0,0 +1,380 @@
+package br.com.api.storage;
+
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+* Binary deltas in the style of rsync: the base is cut in fixed blocks indexed by a rolling checksum,
+* the target is scanned one byte at a time and every window that matches a block becomes a copy
+* instruction, everything else is sent as literal bytes.
+* */
+@Component
+public class DocumentDeltaCodec {
+
+    private static final int MAGIC = 0x444C5431;
+    private static final byte COPY = 'C';
+    private static final byte LITERAL = 'L';
+    private static final byte END = 'E';
+    private static final int MAX_LITERAL_LENGTH = 1 << 20;
+
+    public long encode(Path base, InputStream target, Path delta, int blockSize) throws IOException {
+
+        BlockSignature blockSignature = createSignature(base, blockSize);
+
+        try (DeltaWriter deltaWriter = new DeltaWriter(delta, blockSize)) {
+
+            byte[] buffer = new byte[Math.max(blockSize * 16, MAX_LITERAL_LENGTH * 2)];
+            int literalStart = 0;
+            int position = 0;
+            int end = readFully(target, buffer, 0);
+            boolean endOfTarget = end < buffer.length;
+
+            RollingChecksum rollingChecksum = null;
+
+            while (true) {
+
+                if (position + blockSize >= end && !endOfTarget) {
+
+                    // Literals before the window are written out so the buffer never holds more than one window
+                    // and the pending literal run
+                    deltaWriter.writeLiteral(buffer, literalStart, position - literalStart);
+
+                    System.arraycopy(buffer, position, buffer, 0, end - position);
+                    end -= position;
+                    position = 0;
+                    literalStart = 0;
+
+                    int bytesRead = readFully(target, buffer, end);
+                    endOfTarget = end + bytesRead < buffer.length;
+                    end += bytesRead;
+                }
+
+                if (position + blockSize > end) {
+
+                    break;
+                }
+
+                if (rollingChecksum == null) {
+
+                    rollingChecksum = new RollingChecksum(buffer, position, blockSize);
+                }
+
+                int blockIndex = blockSignature.findBlock(rollingChecksum.value(), buffer, position);
+
+                if (blockIndex >= 0) {
+
+                    deltaWriter.writeLiteral(buffer, literalStart, position - literalStart);
+                    deltaWriter.writeCopy(blockIndex);
+
+                    position += blockSize;
+                    literalStart = position;
+                    rollingChecksum = null;
+                    continue;
+                }
+
+                if (position + blockSize >= end && !endOfTarget) {
+
+                    continue;
+                }
+
+                if (position + blockSize >= end) {
+
+                    break;
+                }
+
+                rollingChecksum.roll(buffer[position], buffer[position + blockSize]);
+                position++;
+
+                if (position - literalStart >= MAX_LITERAL_LENGTH) {
+
+                    deltaWriter.writeLiteral(buffer, literalStart, position - literalStart);
+                    literalStart = position;
+                }
+            }
+
+            deltaWriter.writeLiteral(buffer, literalStart, end - literalStart);
+        }
+
+        return Files.size(delta);
+    }
+
+    public void apply(Path base, InputStream delta, OutputStream output) throws IOException {
+
+        DataInputStream deltaInput = new DataInputStream(new BufferedInputStream(delta));
+
+        if (deltaInput.readInt() != MAGIC) {
+
+            throw new IOException("The stored delta has an unknown format");
+        }
+
+        int blockSize = deltaInput.readInt();
+        byte[] buffer = new byte[Math.max(blockSize, 64 * 1024)];
+
+        try (FileChannel baseChannel = FileChannel.open(base, StandardOpenOption.READ)) {
+
+            while (true) {
+
+                byte instruction = deltaInput.readByte();
+
+                if (instruction == END) {
+
+                    return;
+                }
+
+                if (instruction == COPY) {
+
+                    long basePosition = (long) deltaInput.readInt() * blockSize;
+                    long length = (long) deltaInput.readInt() * blockSize;
+
+                    copyFromBase(baseChannel, basePosition, length, buffer, output);
+                } else if (instruction == LITERAL) {
+
+                    int length = deltaInput.readInt();
+
+                    while (length > 0) {
+
+                        int bytesRead = deltaInput.read(buffer, 0, Math.min(buffer.length, length));
+
+                        if (bytesRead < 0) {
+
+                            throw new EOFException("The stored delta ended inside a literal");
+                        }
+
+                        output.write(buffer, 0, bytesRead);
+                        length -= bytesRead;
+                    }
+                } else {
+
+                    throw new IOException("The stored delta has an unknown instruction " + instruction);
+                }
+            }
+        }
+    }
+
+    public BlockSignature createSignature(Path base, int blockSize) throws IOException {
+
+        // A shorter last block can't be matched by a full window, so it is left for the literals
+        int blockCount = (int) (Files.size(base) / blockSize);
+        BlockSignature blockSignature = new BlockSignature(blockSize, blockCount);
+        byte[] block = new byte[blockSize];
+
+        try (InputStream inputStream = new BufferedInputStream(Files.newInputStream(base))) {
+
+            for (int blockIndex = 0; blockIndex < blockCount; blockIndex++) {
+
+                if (inputStream.readNBytes(block, 0, blockSize) < blockSize) {
+
+                    throw new EOFException("The base document is shorter than its stored size");
+                }
+
+                blockSignature.addBlock(new RollingChecksum(block, 0, blockSize).value(),
+                        blockSignature.strongHash(block, 0), blockIndex);
+            }
+        }
+
+        return blockSignature;
+    }
+
+    public void copyFromBase(FileChannel baseChannel, long position, long length, byte[] buffer,
+                             OutputStream output)
+            throws IOException {
+
+        long copied = 0;
+
+        while (copied < length) {
+
+            ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, 0, (int) Math.min(buffer.length, length - copied));
+            int bytesRead = baseChannel.read(byteBuffer, position + copied);
+
+            if (bytesRead <= 0) {
+
+                throw new EOFException("The base document ended before the delta was applied");
+            }
+
+            output.write(buffer, 0, bytesRead);
+            copied += bytesRead;
+        }
+    }
+
+    public int readFully(InputStream inputStream, byte[] buffer, int offset) throws IOException {
+
+        return inputStream.readNBytes(buffer, offset, buffer.length - offset);
+    }
+
+    public static class BlockSignature {
+
+        private final int blockSize;
+        private final Map<Integer, int[]> blocksByChecksum = new HashMap<>();
+        private final long[] strongHashes;
+        private final MessageDigest messageDigest;
+
+        public BlockSignature(int blockSize, int blockCount) {
+
+            this.blockSize = blockSize;
+            this.strongHashes = new long[blockCount];
+
+            try {
+
+                this.messageDigest = MessageDigest.getInstance("MD5");
+            } catch (NoSuchAlgorithmException exception) {
+
+                throw new IllegalStateException("MD5 is not available to compare document blocks", exception);
+            }
+        }
+
+        public void addBlock(int checksum, long strongHash, int blockIndex) {
+
+            blocksByChecksum.merge(checksum, new int[] {blockIndex}, (blocks, block) -> {
+
+                int[] mergedBlocks = Arrays.copyOf(blocks, blocks.length + 1);
+                mergedBlocks[blocks.length] = block[0];
+
+                return mergedBlocks;
+            });
+            strongHashes[blockIndex] = strongHash;
+        }
+
+        public int findBlock(int checksum, byte[] buffer, int offset) {
+
+            int[] blocks = blocksByChecksum.get(checksum);
+
+            if (blocks == null) {
+
+                return -1;
+            }
+
+            long strongHash = strongHash(buffer, offset);
+
+            for (int blockIndex : blocks) {
+
+                if (strongHashes[blockIndex] == strongHash) {
+
+                    return blockIndex;
+                }
+            }
+
+            return -1;
+        }
+
+        public long strongHash(byte[] buffer, int offset) {
+
+            messageDigest.update(buffer, offset, blockSize);
+            return ByteBuffer.wrap(messageDigest.digest()).getLong();
+        }
+    }
+
+    public static class RollingChecksum {
+
+        private final int blockSize;
+        private int a;
+        private int b;
+
+        public RollingChecksum(byte[] buffer, int offset, int blockSize) {
+
+            this.blockSize = blockSize;
+
+            for (int index = 0; index < blockSize; index++) {
+
+                int value = buffer[offset + index] & 0xff;
+                a += value;
+                b += (blockSize - index) * value;
+            }
+        }
+
+        public void roll(byte removed, byte added) {
+
+            int removedValue = removed & 0xff;
+
+            a += (added & 0xff) - removedValue;
+            b += a - blockSize * removedValue;
+        }
+
+        public int value() {
+
+            return (a & 0xffff) | (b << 16);
+        }
+    }
+
+    public static class DeltaWriter implements AutoCloseable {
+
+        private final DataOutputStream deltaOutput;
+        private int copyStart = -1;
+        private int copyCount;
+
+        public DeltaWriter(Path delta, int blockSize) throws IOException {
+
+            this.deltaOutput = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(delta)));
+            deltaOutput.writeInt(MAGIC);
+            deltaOutput.writeInt(blockSize);
+        }
+
+        public void writeCopy(int blockIndex) throws IOException {
+
+            if (copyStart >= 0 && copyStart + copyCount == blockIndex) {
+
+                copyCount++;
+                return;
+            }
+
+            flushCopy();
+            copyStart = blockIndex;
+            copyCount = 1;
+        }
+
+        public void writeLiteral(byte[] buffer, int offset, int length) throws IOException {
+
+            if (length <= 0) {
+
+                return;
+            }
+
+            flushCopy();
+            deltaOutput.writeByte(LITERAL);
+            deltaOutput.writeInt(length);
+            deltaOutput.write(buffer, offset, length);
+        }
+
+        public void flushCopy() throws IOException {
+
+            if (copyStart < 0) {
+
+                return;
+            }
+
+            deltaOutput.writeByte(COPY);
+            deltaOutput.writeInt(copyStart);
+            deltaOutput.writeInt(copyCount);
+            copyStart = -1;
+        }
+
+        @Override
+        public void close() throws IOException {
+
+            flushCopy();
+            deltaOutput.writeByte(END);
+            deltaOutput.close();
+        }
+    }
+}
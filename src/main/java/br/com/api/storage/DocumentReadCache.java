@@ -0,0 +1,131 @@
+package br.com.api.storage;
+
+import br.com.api.config.DocumentStorageProperties;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import org.springframework.stereotype.Component;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import java.util.List;
+import java.util.Optional;
+
+/*
+* Stored contents held in direct buffers, outside the heap so a full cache doesn't add to the
+* garbage collection work. Caffeine only admits a new document over the ones already cached
+* when it has been requested more often, so a burst of one-off downloads doesn't flush the
+* popular ones.
+* */
+@Component
+public class DocumentReadCache {
+
+    private final DocumentStorage documentStorage;
+    private final DocumentStorageProperties.ReadCache readCache;
+    private final Cache<String, ByteBuffer> cachedDocuments;
+
+    public DocumentReadCache(DocumentStorage documentStorage, DocumentStorageProperties documentStorageProperties,
+                             MeterRegistry meterRegistry) {
+
+        this.documentStorage = documentStorage;
+        this.readCache = documentStorageProperties.getReadCache();
+
+        this.cachedDocuments = Caffeine.newBuilder()
+                .maximumWeight(readCache.getMaximumSize().toBytes())
+                .weigher((String key, ByteBuffer content) -> content.capacity())
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cachedDocuments, "document.read.cache");
+
+        Gauge.builder("document.read.cache.hit.ratio", cachedDocuments, cache -> cache.stats().hitRate())
+                .description("Share of the cached document reads answered from memory")
+                .register(meterRegistry);
+        Gauge.builder("document.read.cache.size", cachedDocuments,
+                        cache -> cache.policy().eviction().orElseThrow().weightedSize().orElse(0))
+                .description("Bytes of direct memory held by the cached documents")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    public boolean isCacheable(long size) {
+
+        return readCache.isEnabled() && size > 0 && size <= readCache.getMaxDocumentSize().toBytes();
+    }
+
+    /*
+    * Read only view of the whole content with its own position, safe to hand to one writer.
+    * */
+    public ByteBuffer read(String key, long size) throws IOException {
+
+        try {
+
+            return cachedDocuments.get(key, cacheKey -> loadDocument(cacheKey, size)).asReadOnlyBuffer();
+        } catch (UncheckedIOException exception) {
+
+            throw exception.getCause();
+        }
+    }
+
+    public ByteBuffer loadDocument(String key, long size) {
+
+        ByteBuffer content = ByteBuffer.allocateDirect((int) size);
+
+        try {
+
+            Optional<Path> documentPath = documentStorage.findLocalPath(key);
+
+            if (documentPath.isPresent()) {
+
+                try (FileChannel fileChannel = FileChannel.open(documentPath.get(), StandardOpenOption.READ)) {
+
+                    readFully(fileChannel, content);
+                }
+            } else {
+
+                try (InputStream inputStream = documentStorage.read(key, 0);
+                     ReadableByteChannel inputChannel = Channels.newChannel(inputStream)) {
+
+                    readFully(inputChannel, content);
+                }
+            }
+        } catch (IOException exception) {
+
+            throw new UncheckedIOException(exception);
+        }
+
+        return content.flip();
+    }
+
+    public void readFully(ReadableByteChannel inputChannel, ByteBuffer content) throws IOException {
+
+        while (content.hasRemaining()) {
+
+            if (inputChannel.read(content) < 0) {
+
+                throw new EOFException("The stored document is shorter than its size");
+            }
+        }
+    }
+
+    public void invalidate(List<String> keys) {
+
+        cachedDocuments.invalidateAll(keys);
+    }
+}
@@ -0,0 +1,35 @@
+package br.com.api.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import java.nio.file.Path;
+
+import java.util.Optional;
+
+public interface DocumentStorage {
+
+    /*
+    * Takes ownership of a fully written local file and stores it under the key. When the key
+    * already exists the stored content is kept and the staged file is discarded.
+    * */
+    void store(String key, Path stagedDocument) throws IOException;
+
+    InputStream read(String key, long position) throws IOException;
+
+    long size(String key) throws IOException;
+
+    long lastModified(String key) throws IOException;
+
+    boolean exists(String key) throws IOException;
+
+    void delete(String key) throws IOException;
+
+    void rename(String key, String newKey) throws IOException;
+
+    /*
+    * Path of the stored content when it lives on a local file system, used by the download
+    * strategies that hand files to the kernel or map them in memory.
+    * */
+    Optional<Path> findLocalPath(String key);
+}
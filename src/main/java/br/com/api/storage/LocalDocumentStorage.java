@@ -0,0 +1,131 @@
+package br.com.api.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import java.util.List;
+import java.util.Optional;
+
+public class LocalDocumentStorage implements DocumentStorage {
+
+    private final Path documentStorageLocation;
+
+    public LocalDocumentStorage(Path documentStorageLocation) {
+
+        this.documentStorageLocation = documentStorageLocation;
+    }
+
+    @Override
+    public void store(String key, Path stagedDocument) throws IOException {
+
+        if (findLocalPath(key).isPresent()) {
+
+            Files.deleteIfExists(stagedDocument);
+            return;
+        }
+
+        Path documentPath = resolve(key);
+        Files.createDirectories(documentPath.getParent());
+
+        try {
+
+            Files.move(stagedDocument, documentPath, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException exception) {
+
+            Files.deleteIfExists(stagedDocument);
+        }
+    }
+
+    @Override
+    public InputStream read(String key, long position) throws IOException {
+
+        FileChannel fileChannel = FileChannel.open(locate(key), StandardOpenOption.READ);
+        fileChannel.position(position);
+
+        return Channels.newInputStream(fileChannel);
+    }
+
+    @Override
+    public long size(String key) throws IOException {
+
+        return Files.size(locate(key));
+    }
+
+    @Override
+    public long lastModified(String key) throws IOException {
+
+        return Files.getLastModifiedTime(locate(key)).toMillis();
+    }
+
+    @Override
+    public boolean exists(String key) {
+
+        return findLocalPath(key).isPresent();
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+
+        for (Path documentPath : candidatePaths(key)) {
+
+            Files.deleteIfExists(documentPath);
+        }
+    }
+
+    @Override
+    public void rename(String key, String newKey) throws IOException {
+
+        Path modifiedDocument = resolve(newKey);
+        Files.createDirectories(modifiedDocument.getParent());
+        Files.move(locate(key), modifiedDocument);
+    }
+
+    @Override
+    public Optional<Path> findLocalPath(String key) {
+
+        for (Path documentPath : candidatePaths(key)) {
+
+            if (Files.isRegularFile(documentPath)) {
+
+                return Optional.of(documentPath);
+            }
+        }
+
+        return Optional.empty();
+    }
+
+    public Path locate(String key) throws NoSuchFileException {
+
+        return findLocalPath(key).orElseThrow(() -> new NoSuchFileException(resolve(key).toString()));
+    }
+
+    /*
+    * Every place where the key may currently be stored, starting with resolve(key).
+    * */
+    public List<Path> candidatePaths(String key) {
+
+        return List.of(resolve(key));
+    }
+
+    public Path resolve(String key) {
+
+        Path documentPath = documentStorageLocation.resolve(key).normalize();
+
+        if (!documentPath.startsWith(documentStorageLocation)) {
+
+            throw new IllegalArgumentException("Invalid storage key: " + key);
+        }
+
+        return documentPath;
+    }
+}
@@ -0,0 +1,159 @@
+package br.com.api.storage;
+
+import software.amazon.awssdk.core.sync.RequestBody;
+
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+
+import java.util.Optional;
+
+public class S3DocumentStorage implements DocumentStorage {
+
+    private final S3Client s3Client;
+    private final String bucket;
+    private final String keyPrefix;
+
+    public S3DocumentStorage(S3Client s3Client, String bucket, String keyPrefix) {
+
+        this.s3Client = s3Client;
+        this.bucket = bucket;
+        this.keyPrefix = keyPrefix == null ? "" : keyPrefix;
+    }
+
+    @Override
+    public void store(String key, Path stagedDocument) throws IOException {
+
+        try {
+
+            if (!exists(key)) {
+
+                s3Client.putObject(PutObjectRequest.builder()
+                        .bucket(bucket)
+                        .key(keyPrefix + key)
+                        .build(), RequestBody.fromFile(stagedDocument));
+            }
+        } catch (S3Exception exception) {
+
+            throw new IOException("Unable to store " + keyPrefix + key + " in the bucket " + bucket, exception);
+        } finally {
+
+            Files.deleteIfExists(stagedDocument);
+        }
+    }
+
+    @Override
+    public InputStream read(String key, long position) throws IOException {
+
+        try {
+
+            return s3Client.getObject(GetObjectRequest.builder()
+                    .bucket(bucket)
+                    .key(keyPrefix + key)
+                    .range(position > 0 ? "bytes=" + position + "-" : null)
+                    .build());
+        } catch (NoSuchKeyException exception) {
+
+            throw new NoSuchFileException(keyPrefix + key);
+        } catch (S3Exception exception) {
+
+            throw new IOException("Unable to read " + keyPrefix + key + " from the bucket " + bucket, exception);
+        }
+    }
+
+    @Override
+    public long size(String key) throws IOException {
+
+        return headObject(key).contentLength();
+    }
+
+    @Override
+    public long lastModified(String key) throws IOException {
+
+        return headObject(key).lastModified().toEpochMilli();
+    }
+
+    @Override
+    public boolean exists(String key) throws IOException {
+
+        try {
+
+            headObject(key);
+            return true;
+        } catch (NoSuchFileException exception) {
+
+            return false;
+        }
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+
+        try {
+
+            s3Client.deleteObject(DeleteObjectRequest.builder()
+                    .bucket(bucket)
+                    .key(keyPrefix + key)
+                    .build());
+        } catch (S3Exception exception) {
+
+            throw new IOException("Unable to delete " + keyPrefix + key + " from the bucket " + bucket, exception);
+        }
+    }
+
+    @Override
+    public void rename(String key, String newKey) throws IOException {
+
+        try {
+
+            s3Client.copyObject(CopyObjectRequest.builder()
+                    .sourceBucket(bucket)
+                    .sourceKey(keyPrefix + key)
+                    .destinationBucket(bucket)
+                    .destinationKey(keyPrefix + newKey)
+                    .build());
+        } catch (NoSuchKeyException exception) {
+
+            throw new NoSuchFileException(keyPrefix + key);
+        } catch (S3Exception exception) {
+
+            throw new IOException("Unable to rename " + keyPrefix + key + " in the bucket " + bucket, exception);
+        }
+
+        delete(key);
+    }
+
+    @Override
+    public Optional<Path> findLocalPath(String key) {
+
+        return Optional.empty();
+    }
+
+    public HeadObjectResponse headObject(String key) throws IOException {
+
+        try {
+
+            return s3Client.headObject(HeadObjectRequest.builder()
+                    .bucket(bucket)
+                    .key(keyPrefix + key)
+                    .build());
+        } catch (NoSuchKeyException exception) {
+
+            throw new NoSuchFileException(keyPrefix + key);
+        } catch (S3Exception exception) {
+
+            if (exception.statusCode() == 404) {
+
+                throw new NoSuchFileException(keyPrefix + key);
+            }
+
+            throw new IOException("Unable to read " + keyPrefix + key + " from the bucket " + bucket, exception);
+        }
+    }
+}
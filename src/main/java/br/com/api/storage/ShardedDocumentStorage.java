@@ -0,0 +1,190 @@
+package br.com.api.storage;
+
+import java.io.IOException;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+
+public class ShardedDocumentStorage extends LocalDocumentStorage {
+
+    private final List<Path> documentStorageLocations;
+    private final long[] volumeSeeds;
+    private final Path flatDocumentStorageLocation;
+
+    public ShardedDocumentStorage(List<Path> documentStorageLocations, Path flatDocumentStorageLocation) {
+
+        super(documentStorageLocations.get(0));
+        this.documentStorageLocations = documentStorageLocations;
+        this.flatDocumentStorageLocation = flatDocumentStorageLocation;
+
+        // A volume is identified by its path, so the order of the configured directories doesn't matter
+        this.volumeSeeds = new long[documentStorageLocations.size()];
+
+        for (int volume = 0; volume < volumeSeeds.length; volume++) {
+
+            volumeSeeds[volume] = ByteBuffer.wrap(hashKey(documentStorageLocations.get(volume).toString())).getLong();
+        }
+    }
+
+    /*
+    * <volume chosen by rendezvous hashing>/<first byte of hash>/<second byte of hash>/<key>, so each
+    * directory holds at most 1/65536 of the documents of its volume. Every volume scores the key and
+    * the highest score wins, adding or removing one of N volumes only moves the keys it wins or loses.
+    * */
+    @Override
+    public Path resolve(String key) {
+
+        byte[] keyHash = hashValidKey(key);
+
+        return documentStorageLocations.get(chooseVolume(keyHash)).resolve(takeTheShardPath(key, keyHash));
+    }
+
+    /*
+    * A key can still be on the volume that won it before the volumes changed, until it is moved by
+    * moveToVolume, and documents written before the sharded layout stay readable from the flat
+    * directory until they are moved by moveToShard.
+    * */
+    @Override
+    public List<Path> candidatePaths(String key) {
+
+        byte[] keyHash = hashValidKey(key);
+        Path shardPath = takeTheShardPath(key, keyHash);
+        int chosenVolume = chooseVolume(keyHash);
+        List<Path> candidatePaths = new ArrayList<>();
+
+        candidatePaths.add(documentStorageLocations.get(chosenVolume).resolve(shardPath));
+
+        for (int volume = 0; volume < documentStorageLocations.size(); volume++) {
+
+            if (volume != chosenVolume) {
+
+                candidatePaths.add(documentStorageLocations.get(volume).resolve(shardPath));
+            }
+        }
+
+        candidatePaths.add(flatDocumentStorageLocation.resolve(key));
+
+        return candidatePaths;
+    }
+
+    public int chooseVolume(byte[] keyHash) {
+
+        // The first bytes already name the shard directories, the score is taken from the next ones
+        long keyScore = ByteBuffer.wrap(keyHash, 8, 8).getLong();
+        int chosenVolume = 0;
+        long highestScore = 0;
+
+        for (int volume = 0; volume < volumeSeeds.length; volume++) {
+
+            long score = mixScore(keyScore ^ volumeSeeds[volume]);
+
+            if (volume == 0 || Long.compareUnsigned(score, highestScore) > 0) {
+
+                chosenVolume = volume;
+                highestScore = score;
+            }
+        }
+
+        return chosenVolume;
+    }
+
+    /*
+    * Finalizer of SplitMix64, every bit of the key and of the volume seed reaches every bit of the score.
+    * */
+    public long mixScore(long value) {
+
+        value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+        value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+
+        return value ^ (value >>> 31);
+    }
+
+    public Path takeTheShardPath(String key, byte[] keyHash) {
+
+        String hexKeyHash = HexFormat.of().formatHex(keyHash, 0, 2);
+
+        return Path.of(hexKeyHash.substring(0, 2), hexKeyHash.substring(2, 4), key);
+    }
+
+    public boolean moveToShard(Path flatDocument) throws IOException {
+
+        return moveDocument(flatDocument, resolve(flatDocument.getFileName().toString()));
+    }
+
+    /*
+    * Moves a document found on a volume that no longer wins its key, returns false when it is
+    * already where resolve puts it.
+    * */
+    public boolean moveToVolume(Path shardedDocument) throws IOException {
+
+        Path chosenDocument = resolve(shardedDocument.getFileName().toString());
+
+        if (chosenDocument.equals(shardedDocument)) {
+
+            return false;
+        }
+
+        return moveDocument(shardedDocument, chosenDocument);
+    }
+
+    public boolean moveDocument(Path document, Path destination) throws IOException {
+
+        Files.createDirectories(destination.getParent());
+
+        try {
+
+            Files.move(document, destination, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (FileAlreadyExistsException exception) {
+
+            Files.deleteIfExists(document);
+            return false;
+        } catch (AtomicMoveNotSupportedException exception) {
+
+            // Another volume is usually another file system, the copy is only published once complete
+            Path stagedDocument = destination.resolveSibling(destination.getFileName() + ".part");
+            Files.copy(document, stagedDocument, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(stagedDocument, destination, StandardCopyOption.ATOMIC_MOVE);
+            Files.deleteIfExists(document);
+            return true;
+        }
+    }
+
+    public List<Path> getDocumentStorageLocations() {
+
+        return documentStorageLocations;
+    }
+
+    public byte[] hashValidKey(String key) {
+
+        if (key.contains("/") || key.contains("\\") || key.equals("..") || key.equals(".")) {
+
+            throw new IllegalArgumentException("Invalid storage key: " + key);
+        }
+
+        return hashKey(key);
+    }
+
+    public byte[] hashKey(String key) {
+
+        try {
+
+            return MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException exception) {
+
+            throw new IllegalStateException("SHA-256 is not available to shard the documents", exception);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package br.com.api.config;
+
+import org.junit.jupiter.api.Test;
+
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CachingJwtDecoderTests {
+
+    private final AtomicInteger decodedTokens = new AtomicInteger();
+
+    @Test
+    void verifiedTokenIsDecodedOnce() {
+
+        CachingJwtDecoder cachingJwtDecoder = new CachingJwtDecoder(
+                countingDecoder(Instant.now().plus(Duration.ofHours(1))), 100);
+
+        Jwt jwt = cachingJwtDecoder.decode("first-token");
+
+        assertSame(jwt, cachingJwtDecoder.decode("first-token"));
+        assertEquals(1, decodedTokens.get());
+
+        assertEquals("second-token", cachingJwtDecoder.decode("second-token").getTokenValue());
+        assertEquals(2, decodedTokens.get());
+    }
+
+    @Test
+    void rejectedTokenIsVerifiedAgainEveryTime() {
+
+        JwtDecoder rejectingDecoder = token -> {
+
+            decodedTokens.incrementAndGet();
+            throw new BadJwtException("Invalid signature");
+        };
+        CachingJwtDecoder cachingJwtDecoder = new CachingJwtDecoder(rejectingDecoder, 100);
+
+        assertThrows(BadJwtException.class, () -> cachingJwtDecoder.decode("forged-token"));
+        assertThrows(BadJwtException.class, () -> cachingJwtDecoder.decode("forged-token"));
+        assertEquals(2, decodedTokens.get());
+    }
+
+    @Test
+    void tokenWithoutExpirationIsNotCached() {
+
+        CachingJwtDecoder cachingJwtDecoder = new CachingJwtDecoder(countingDecoder(null), 100);
+
+        cachingJwtDecoder.decode("token");
+        cachingJwtDecoder.decode("token");
+
+        assertEquals(2, decodedTokens.get());
+    }
+
+    @Test
+    void cachedTokenLeavesTheCacheWhenItExpires() {
+
+        CachingJwtDecoder.TokenExpiry tokenExpiry = new CachingJwtDecoder.TokenExpiry();
+        long expiresIn = tokenExpiry.expireAfterCreate("hash",
+                createJwt("token", Instant.now().plus(Duration.ofMinutes(10))), 0);
+
+        assertTrue(expiresIn > 0 && expiresIn <= Duration.ofMinutes(10).toNanos(),
+                "The entry expires in " + expiresIn + " nanoseconds");
+        assertEquals(0, tokenExpiry.expireAfterCreate("hash",
+                createJwt("token", Instant.now().minus(Duration.ofMinutes(1))), 0));
+        // Reading an entry never extends it past the token expiration
+        assertEquals(expiresIn, tokenExpiry.expireAfterRead("hash",
+                createJwt("token", Instant.now().plus(Duration.ofHours(1))), 0, expiresIn));
+    }
+
+    private JwtDecoder countingDecoder(Instant expiresAt) {
+
+        return token -> {
+
+            decodedTokens.incrementAndGet();
+            return createJwt(token, expiresAt);
+        };
+    }
+
+    private Jwt createJwt(String token, Instant expiresAt) {
+
+        Jwt.Builder builder = Jwt.withTokenValue(token)
+                .header("alg", "RS256")
+                .subject("user")
+                .issuedAt(Instant.now().minus(Duration.ofHours(1)));
+
+        if (expiresAt != null) {
+
+            builder.expiresAt(expiresAt);
+        }
+
+        return builder.build();
+    }
+}
@@ -0,0 +1,300 @@
+package br.com.api.controller;
+
+import br.com.api.domain.dto.DocumentRequest;
+
+import br.com.api.service.DocumentService;
+
+import br.com.api.support.TestUsers;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import java.nio.charset.StandardCharsets;
+
+import java.time.LocalDate;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.jwt;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+@SpringBootTest(properties = {
+        "document.processing.enabled=false",
+        "document.compression.enabled=true",
+        "document.upload-directory=${java.io.tmpdir}/document-controller-tests"})
+@AutoConfigureMockMvc
+@Import(TestUsers.class)
+class DocumentControllerTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private DocumentService documentService;
+
+    @Autowired
+    private TestUsers testUsers;
+
+    private String username;
+    private byte[] content;
+
+    @BeforeEach
+    void createUserAndDocument() throws IOException {
+
+        username = testUsers.createClientUser("download");
+
+        content = new byte[1000];
+        new Random(3).nextBytes(content);
+
+        documentService.addNewDocument(new MockMultipartFile("document", "contract.pdf", "application/pdf",
+                content), new DocumentRequest(LocalDate.now().plusDays(30)), username);
+    }
+
+    @Test
+    void documentIsSentWhole() throws Exception {
+
+        MockHttpServletResponse response = download(get("/document/download/contract.pdf"));
+
+        assertEquals(200, response.getStatus());
+        assertEquals("bytes", response.getHeader(HttpHeaders.ACCEPT_RANGES));
+        assertEquals(content.length, response.getContentLengthLong());
+        assertNotNull(response.getHeader(HttpHeaders.ETAG));
+        assertArrayEquals(content, response.getContentAsByteArray());
+    }
+
+    @Test
+    void singleRangeIsSentAsPartialContent() throws Exception {
+
+        MockHttpServletResponse response = download(get("/document/download/contract.pdf")
+                .header(HttpHeaders.RANGE, "bytes=100-199"));
+
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes 100-199/1000", response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertArrayEquals(Arrays.copyOfRange(content, 100, 200), response.getContentAsByteArray());
+
+        response = download(get("/document/download/contract.pdf").header(HttpHeaders.RANGE, "bytes=-10"));
+
+        assertEquals("bytes 990-999/1000", response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertArrayEquals(Arrays.copyOfRange(content, 990, 1000), response.getContentAsByteArray());
+    }
+
+    @Test
+    void severalRangesAreSentAsMultipartByteranges() throws Exception {
+
+        MockHttpServletResponse response = download(get("/document/download/contract.pdf")
+                .header(HttpHeaders.RANGE, "bytes=0-9,500-509"));
+
+        assertEquals(206, response.getStatus());
+        assertTrue(response.getContentType().startsWith("multipart/byteranges; boundary="), response.getContentType());
+
+        String boundary = response.getContentType().substring(response.getContentType().indexOf('=') + 1);
+        byte[] body = response.getContentAsByteArray();
+        String bodyHeaders = new String(body, StandardCharsets.ISO_8859_1);
+
+        assertEquals(body.length, response.getContentLengthLong());
+        assertTrue(bodyHeaders.contains("Content-Range: bytes 0-9/1000"));
+        assertTrue(bodyHeaders.contains("Content-Range: bytes 500-509/1000"));
+        assertTrue(bodyHeaders.endsWith("\r\n--" + boundary + "--\r\n"));
+
+        assertArrayEquals(Arrays.copyOfRange(content, 0, 10), takeThePart(body, bodyHeaders, "bytes 0-9/1000", 10));
+        assertArrayEquals(Arrays.copyOfRange(content, 500, 510),
+                takeThePart(body, bodyHeaders, "bytes 500-509/1000", 10));
+    }
+
+    @Test
+    void unsatisfiableRangeIsRejected() throws Exception {
+
+        MockHttpServletResponse response = download(get("/document/download/contract.pdf")
+                .header(HttpHeaders.RANGE, "bytes=1000-"));
+
+        assertEquals(416, response.getStatus());
+        assertEquals("bytes */1000", response.getHeader(HttpHeaders.CONTENT_RANGE));
+
+        // Only the satisfiable part of the request is answered
+        response = download(get("/document/download/contract.pdf").header(HttpHeaders.RANGE, "bytes=2000-,0-9"));
+
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes 0-9/1000", response.getHeader(HttpHeaders.CONTENT_RANGE));
+    }
+
+    @Test
+    void rangeIsOnlyHonouredWhileIfRangeStillMatches() throws Exception {
+
+        String eTag = download(get("/document/download/contract.pdf")).getHeader(HttpHeaders.ETAG);
+
+        MockHttpServletResponse response = download(get("/document/download/contract.pdf")
+                .header(HttpHeaders.RANGE, "bytes=0-9")
+                .header(HttpHeaders.IF_RANGE, eTag));
+
+        assertEquals(206, response.getStatus());
+
+        response = download(get("/document/download/contract.pdf")
+                .header(HttpHeaders.RANGE, "bytes=0-9")
+                .header(HttpHeaders.IF_RANGE, "\"an-older-version\""));
+
+        assertEquals(200, response.getStatus());
+        assertArrayEquals(content, response.getContentAsByteArray());
+    }
+
+    @Test
+    void unchangedDocumentIsAnsweredWithNotModified() throws Exception {
+
+        MockHttpServletResponse response = download(get("/document/download/contract.pdf"));
+
+        MockHttpServletResponse eTagResponse = download(get("/document/download/contract.pdf")
+                .header(HttpHeaders.IF_NONE_MATCH, response.getHeader(HttpHeaders.ETAG)));
+
+        assertEquals(304, eTagResponse.getStatus());
+        assertEquals(0, eTagResponse.getContentAsByteArray().length);
+
+        MockHttpServletResponse dateResponse = download(get("/document/download/contract.pdf")
+                .header(HttpHeaders.IF_MODIFIED_SINCE, response.getHeader(HttpHeaders.LAST_MODIFIED)));
+
+        assertEquals(304, dateResponse.getStatus());
+    }
+
+    @Test
+    void documentStoredCompressedIsSentAsStoredOnlyToClientsAcceptingGzip() throws Exception {
+
+        byte[] notes = uploadText("notes.txt");
+
+        MockHttpServletResponse response = download(get("/document/download/notes.txt")
+                .header(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate, br"));
+
+        assertEquals(200, response.getStatus());
+        assertEquals("gzip", response.getHeader(HttpHeaders.CONTENT_ENCODING));
+        assertTrue(response.getHeaders(HttpHeaders.VARY).contains(HttpHeaders.ORIGIN));
+        assertTrue(response.getHeaders(HttpHeaders.VARY).contains(HttpHeaders.ACCEPT_ENCODING));
+        assertTrue(response.getHeader(HttpHeaders.ETAG).endsWith("-gzip\""), response.getHeader(HttpHeaders.ETAG));
+        assertTrue(response.getContentAsByteArray().length < notes.length / 4);
+        assertArrayEquals(notes, gunzip(response.getContentAsByteArray()));
+
+        response = download(get("/document/download/notes.txt"));
+
+        assertNull(response.getHeader(HttpHeaders.CONTENT_ENCODING));
+        assertTrue(response.getHeaders(HttpHeaders.VARY).contains(HttpHeaders.ACCEPT_ENCODING));
+        assertEquals(notes.length, response.getContentLengthLong());
+        assertArrayEquals(notes, response.getContentAsByteArray());
+    }
+
+    @Test
+    void documentStoredAsReceivedIsSentThroughItsGzipVariant() throws Exception {
+
+        byte[] style = uploadText("style.css");
+
+        MockHttpServletResponse response = download(get("/document/download/style.css")
+                .header(HttpHeaders.ACCEPT_ENCODING, "br;q=1.0, gzip;q=0.8"));
+
+        assertEquals("gzip", response.getHeader(HttpHeaders.CONTENT_ENCODING));
+        assertArrayEquals(style, gunzip(response.getContentAsByteArray()));
+
+        // The variant has its own validator, so a cache never answers one encoding with the other
+        String gzipETag = response.getHeader(HttpHeaders.ETAG);
+        String identityETag = download(get("/document/download/style.css")).getHeader(HttpHeaders.ETAG);
+
+        assertNotEquals(gzipETag, identityETag);
+        assertEquals(304, download(get("/document/download/style.css")
+                .header(HttpHeaders.ACCEPT_ENCODING, "gzip")
+                .header(HttpHeaders.IF_NONE_MATCH, gzipETag)).getStatus());
+    }
+
+    @Test
+    void gzipRefusedWithQualityZeroIsNotSent() throws Exception {
+
+        byte[] notes = uploadText("notes.txt");
+
+        MockHttpServletResponse response = download(get("/document/download/notes.txt")
+                .header(HttpHeaders.ACCEPT_ENCODING, "gzip;q=0, identity"));
+
+        assertEquals(200, response.getStatus());
+        assertNull(response.getHeader(HttpHeaders.CONTENT_ENCODING));
+        assertArrayEquals(notes, response.getContentAsByteArray());
+    }
+
+    @Test
+    void rangeOfACompressibleDocumentIsSentDecompressed() throws Exception {
+
+        byte[] notes = uploadText("notes.txt");
+
+        MockHttpServletResponse response = download(get("/document/download/notes.txt")
+                .header(HttpHeaders.ACCEPT_ENCODING, "gzip")
+                .header(HttpHeaders.RANGE, "bytes=1000-1099"));
+
+        assertEquals(206, response.getStatus());
+        assertNull(response.getHeader(HttpHeaders.CONTENT_ENCODING));
+        assertEquals("bytes 1000-1099/" + notes.length, response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertArrayEquals(Arrays.copyOfRange(notes, 1000, 1100), response.getContentAsByteArray());
+    }
+
+    @Test
+    void incompressibleDocumentIgnoresAcceptEncoding() throws Exception {
+
+        MockHttpServletResponse response = download(get("/document/download/contract.pdf")
+                .header(HttpHeaders.ACCEPT_ENCODING, "gzip"));
+
+        assertNull(response.getHeader(HttpHeaders.CONTENT_ENCODING));
+        assertFalse(response.getHeaders(HttpHeaders.VARY).contains(HttpHeaders.ACCEPT_ENCODING));
+        assertArrayEquals(content, response.getContentAsByteArray());
+    }
+
+    private byte[] uploadText(String documentName) throws IOException {
+
+        StringBuilder text = new StringBuilder();
+
+        for (int line = 0; line < 2000; line++) {
+
+            text.append(line).append(";document ").append(line).append(";2030-01-01\n");
+        }
+
+        byte[] textContent = text.toString().getBytes(StandardCharsets.UTF_8);
+
+        documentService.addNewDocument(new MockMultipartFile("document", documentName, "text/plain", textContent),
+                new DocumentRequest(LocalDate.now().plusDays(30)), username);
+
+        return textContent;
+    }
+
+    private byte[] gunzip(byte[] compressed) throws IOException {
+
+        try (GZIPInputStream inputStream = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+
+            return inputStream.readAllBytes();
+        }
+    }
+
+    private MockHttpServletResponse download(MockHttpServletRequestBuilder request) throws Exception {
+
+        return mockMvc.perform(request.with(jwt().jwt(token -> token.subject(username))))
+                .andReturn()
+                .getResponse();
+    }
+
+    private byte[] takeThePart(byte[] body, String bodyHeaders, String contentRange, int length) {
+
+        int start = bodyHeaders.indexOf("\r\n\r\n", bodyHeaders.indexOf(contentRange)) + 4;
+        return Arrays.copyOfRange(body, start, start + length);
+    }
+}
@@ -0,0 +1,218 @@
+package br.com.api.service;
+
+import br.com.api.domain.dto.DocumentArchiveEntry;
+import br.com.api.domain.dto.DocumentListRequest;
+import br.com.api.domain.dto.DocumentRequest;
+
+import br.com.api.domain.entities.DocumentBlobs;
+
+import br.com.api.repository.DocumentBlobRepository;
+
+import br.com.api.storage.DocumentStorage;
+
+import br.com.api.support.TestUsers;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import java.nio.charset.StandardCharsets;
+
+import java.time.LocalDate;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+@SpringBootTest(properties = {
+        "document.processing.enabled=false",
+        "document.streaming.archive-page-size=2",
+        "document.upload-directory=${java.io.tmpdir}/document-archive-service-tests"})
+@Import(TestUsers.class)
+class DocumentArchiveServiceTests {
+
+    @Autowired
+    private DocumentArchiveService documentArchiveService;
+
+    @Autowired
+    private DocumentService documentService;
+
+    @Autowired
+    private DocumentBlobService documentBlobService;
+
+    @Autowired
+    private DocumentBlobRepository documentBlobRepository;
+
+    @Autowired
+    private DocumentStorage documentStorage;
+
+    @Autowired
+    private TestUsers testUsers;
+
+    private String username;
+
+    @BeforeEach
+    void createUser() {
+
+        username = testUsers.createClientUser("archive");
+    }
+
+    @Test
+    void selectedDocumentsAreArchivedUnderTheirNames() throws IOException {
+
+        byte[] contract = upload("contract.pdf", 3);
+        byte[] invoice = upload("invoice.xml", 4);
+
+        List<DocumentArchiveEntry> archiveEntries = documentArchiveService.findDocumentsByName(
+                List.of("contract.pdf", "invoice.xml", "contract.pdf"), username);
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        documentArchiveService.writeArchive(archiveEntries, false, archive);
+
+        Map<String, byte[]> entries = readArchive(archive);
+
+        assertEquals(List.of("contract.pdf", "invoice.xml"), List.copyOf(entries.keySet()));
+        assertArrayEquals(contract, entries.get("contract.pdf"));
+        assertArrayEquals(invoice, entries.get("invoice.xml"));
+    }
+
+    @Test
+    void historyHasEveryVersionNewestFirst() throws IOException {
+
+        byte[] firstVersion = upload("report.csv", 5);
+        byte[] secondVersion = update("report.csv", 6);
+        byte[] thirdVersion = update("report.csv", 7);
+
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        documentArchiveService.writeArchive(documentArchiveService.findDocumentHistory("report.csv", username),
+                true, archive);
+
+        Map<String, byte[]> entries = readArchive(archive);
+
+        assertEquals(List.of("report_V3.csv", "report_V2.csv", "report_V1.csv"), List.copyOf(entries.keySet()));
+        assertArrayEquals(thirdVersion, entries.get("report_V3.csv"));
+        assertArrayEquals(secondVersion, entries.get("report_V2.csv"));
+        assertArrayEquals(firstVersion, entries.get("report_V1.csv"));
+    }
+
+    @Test
+    void clientArchivePagesThroughEveryVersionAndRebuildsDeltas() throws IOException {
+
+        byte[] firstVersion = upload("spreadsheet.bin", 8, 256 * 1024);
+        byte[] secondVersion = firstVersion.clone();
+        System.arraycopy("an edited cell".getBytes(StandardCharsets.UTF_8), 0, secondVersion, 100_000, 14);
+        documentService.updateDocument(new MockMultipartFile("document", "spreadsheet.bin",
+                "application/octet-stream", secondVersion), createRequest(), username);
+        byte[] notes = upload("notes.txt", 9);
+
+        DocumentBlobs firstBlob = findBlob("spreadsheet.bin", 1);
+        documentBlobService.encodeAsDelta(firstBlob, findBlob("spreadsheet.bin", 2));
+        assertNotNull(documentBlobRepository.findById(firstBlob.getHash()).orElseThrow().getBaseHash());
+
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        documentArchiveService.writeArchive(new DocumentListRequest(null, null, null, null, null, null, null, null,
+                null, null), username, archive);
+
+        Map<String, byte[]> entries = readArchive(archive);
+
+        // Read in pages of two rows, the entries still come in name and version order
+        assertEquals(List.of("notes_V1.txt", "spreadsheet_V1.bin", "spreadsheet_V2.bin"),
+                List.copyOf(entries.keySet()));
+        assertArrayEquals(notes, entries.get("notes_V1.txt"));
+        assertArrayEquals(secondVersion, entries.get("spreadsheet_V2.bin"));
+        assertArrayEquals(firstVersion, entries.get("spreadsheet_V1.bin"));
+    }
+
+    @Test
+    void documentMissingFromTheStorageIsLeftOut() throws IOException {
+
+        upload("lost.txt", 10);
+        byte[] kept = upload("kept.txt", 11);
+
+        documentStorage.delete(documentBlobService.takeTheReadableKey(findBlob("lost.txt", 1)));
+
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        documentArchiveService.writeArchive(documentArchiveService.findDocumentsByName(
+                List.of("lost.txt", "kept.txt"), username), false, archive);
+
+        Map<String, byte[]> entries = readArchive(archive);
+
+        assertEquals(List.of("kept.txt"), List.copyOf(entries.keySet()));
+        assertArrayEquals(kept, entries.get("kept.txt"));
+    }
+
+    private byte[] upload(String documentName, long seed) throws IOException {
+
+        return upload(documentName, seed, 20_000);
+    }
+
+    private byte[] upload(String documentName, long seed, int size) throws IOException {
+
+        byte[] content = createContent(seed, size);
+
+        documentService.addNewDocument(new MockMultipartFile("document", documentName, "application/octet-stream",
+                content), createRequest(), username);
+
+        return content;
+    }
+
+    private byte[] update(String documentName, long seed) throws IOException {
+
+        byte[] content = createContent(seed, 20_000);
+
+        documentService.updateDocument(new MockMultipartFile("document", documentName, "application/octet-stream",
+                content), createRequest(), username);
+
+        return content;
+    }
+
+    private byte[] createContent(long seed, int size) {
+
+        byte[] content = new byte[size];
+        new Random(seed).nextBytes(content);
+
+        return content;
+    }
+
+    private DocumentBlobs findBlob(String documentName, Integer version) {
+
+        return documentBlobRepository.findById(documentService.findDocumentByFileName(documentName, username, version)
+                .getBlob().getHash()).orElseThrow();
+    }
+
+    private DocumentRequest createRequest() {
+
+        return new DocumentRequest(LocalDate.now().plusDays(30));
+    }
+
+    private Map<String, byte[]> readArchive(ByteArrayOutputStream archive) throws IOException {
+
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+
+        try (ZipInputStream zipInputStream = new ZipInputStream(new ByteArrayInputStream(archive.toByteArray()))) {
+
+            ZipEntry zipEntry;
+
+            while ((zipEntry = zipInputStream.getNextEntry()) != null) {
+
+                entries.put(zipEntry.getName(), zipInputStream.readAllBytes());
+            }
+        }
+
+        return entries;
+    }
+}
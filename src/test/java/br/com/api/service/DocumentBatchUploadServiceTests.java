@@ -0,0 +1,230 @@
+package br.com.api.service;
+
+import br.com.api.domain.dto.DocumentBatchItemResponse;
+import br.com.api.domain.dto.DocumentBatchResponse;
+import br.com.api.domain.dto.DocumentRequest;
+
+import br.com.api.support.TestUsers;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import java.time.LocalDate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {
+        "document.processing.enabled=false",
+        "document.upload-directory=${java.io.tmpdir}/document-batch-upload-service-tests"})
+@Import(TestUsers.class)
+class DocumentBatchUploadServiceTests {
+
+    private static final String NAME_ALREADY_USED =
+            "This name is already used for another document, choose another name";
+
+    @Autowired
+    private DocumentBatchUploadService documentBatchUploadService;
+
+    @Autowired
+    private DocumentService documentService;
+
+    @Autowired
+    private DocumentBlobService documentBlobService;
+
+    @Autowired
+    private UserPrincipalService userPrincipalService;
+
+    @Autowired
+    private TestUsers testUsers;
+
+    private String username;
+
+    @BeforeEach
+    void createUserAndExistingDocument() throws IOException {
+
+        username = testUsers.createClientUser("batch");
+        userPrincipalService.findActivePrincipal(username);
+
+        documentService.addNewDocument(createDocument("existing.txt"), createRequest(), username);
+    }
+
+    @Test
+    void batchReportsEachFailedDocumentAndSavesTheOthers() {
+
+        DocumentBatchResponse response = documentBatchUploadService.addNewDocuments(List.of(
+                createDocument("first.txt"),
+                createDocument("existing.txt"),
+                createDocument("first.csv"),
+                createDocument("../escape.txt"),
+                createDocument("second.txt")), createRequest(), username);
+
+        assertEquals(2, response.created());
+        assertEquals(3, response.failed());
+        assertCreated(response.documents().get(0), "first.txt");
+        assertFailed(response.documents().get(1), NAME_ALREADY_USED);
+        assertFailed(response.documents().get(2), "This name appears more than once in the batch");
+        assertFailed(response.documents().get(3), "Invalid document name: ../escape.txt");
+        assertCreated(response.documents().get(4), "second.txt");
+    }
+
+    @Test
+    void zipReportsEachFailedEntryAndSavesTheOthers() throws IOException {
+
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+
+        try (ZipOutputStream zipOutputStream = new ZipOutputStream(archive)) {
+
+            zipOutputStream.putNextEntry(new ZipEntry("folder/"));
+            zipOutputStream.closeEntry();
+
+            for (String entryName : List.of("folder/report.txt", "existing.txt", "other/report.txt", "notes.txt")) {
+
+                zipOutputStream.putNextEntry(new ZipEntry(entryName));
+                zipOutputStream.write((entryName + UUID.randomUUID()).getBytes(StandardCharsets.UTF_8));
+                zipOutputStream.closeEntry();
+            }
+        }
+
+        DocumentBatchResponse response = documentBatchUploadService.addNewDocumentsFromZip(
+                new ByteArrayInputStream(archive.toByteArray()), createRequest(), username);
+
+        // The folder entry is not a document, the entries keep their order
+        assertEquals(2, response.created());
+        assertEquals(2, response.failed());
+        assertCreated(response.documents().get(0), "report.txt");
+        assertFailed(response.documents().get(1), NAME_ALREADY_USED);
+        assertFailed(response.documents().get(2), "This name appears more than once in the batch");
+        assertCreated(response.documents().get(3), "notes.txt");
+    }
+
+    @Test
+    void nameTakenAfterTheBatchWasValidatedFailsOnlyThatDocument() throws IOException {
+
+        List<StagedDocument> stagedDocuments = List.of(stage("late.txt"), stage("existing.txt"));
+
+        try {
+
+            List<DocumentBatchItemResponse> results = documentService.addNewDocuments(stagedDocuments,
+                    createRequest(), username);
+
+            assertCreated(results.get(0), "late.txt");
+            assertFailed(results.get(1), NAME_ALREADY_USED);
+            assertEquals(1, documentService.listDocumentsByName(
+                    documentService.renameDocumentNameToAddUser("existing", username), username).size());
+        } finally {
+
+            for (StagedDocument stagedDocument : stagedDocuments) {
+
+                Files.deleteIfExists(stagedDocument.path());
+            }
+        }
+    }
+
+    @Test
+    void concurrentBatchesWithTheSameNameCreateItOnce() throws Exception {
+
+        int batches = 4;
+        ExecutorService executorService = Executors.newFixedThreadPool(batches);
+        CyclicBarrier barrier = new CyclicBarrier(batches);
+        List<Future<DocumentBatchResponse>> responses = new ArrayList<>();
+        int createdDocuments = 0;
+
+        try {
+
+            for (int index = 0; index < batches; index++) {
+
+                List<MultipartFile> documents = List.of(createDocument("shared.txt"),
+                        createDocument("own" + index + ".txt"));
+
+                responses.add(executorService.submit(() -> {
+
+                    barrier.await();
+                    return documentBatchUploadService.addNewDocuments(documents, createRequest(), username);
+                }));
+            }
+
+            for (Future<DocumentBatchResponse> response : responses) {
+
+                DocumentBatchResponse batch = response.get(30, TimeUnit.SECONDS);
+
+                // Losing the race on one name never takes the rest of the batch with it
+                assertTrue(batch.documents().get(1).created(), batch.documents().get(1).error());
+
+                if (batch.documents().get(0).created()) {
+
+                    createdDocuments++;
+                } else {
+
+                    assertFailed(batch.documents().get(0), NAME_ALREADY_USED);
+                }
+            }
+        } finally {
+
+            executorService.shutdownNow();
+        }
+
+        assertEquals(1, createdDocuments);
+    }
+
+    private StagedDocument stage(String documentName) throws IOException {
+
+        Path stagedDocument = documentBlobService.takeTheStagingPath();
+        Files.writeString(stagedDocument, documentName + UUID.randomUUID());
+
+        return new StagedDocument(documentName, stagedDocument, documentBlobService.calculateHash(stagedDocument));
+    }
+
+    private void assertCreated(DocumentBatchItemResponse item, String documentName) {
+
+        assertEquals(documentName, item.documentName());
+        assertTrue(item.created(), item.error());
+        assertNull(item.error());
+        assertEquals(1, item.document().version());
+    }
+
+    private void assertFailed(DocumentBatchItemResponse item, String error) {
+
+        assertFalse(item.created());
+        assertNull(item.document());
+        assertEquals(error, item.error());
+    }
+
+    private MultipartFile createDocument(String documentName) {
+
+        return new MockMultipartFile("documents", documentName, "text/plain",
+                (documentName + UUID.randomUUID()).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private DocumentRequest createRequest() {
+
+        return new DocumentRequest(LocalDate.now().plusDays(30));
+    }
+}
@@ -0,0 +1,161 @@
+package br.com.api.service;
+
+import br.com.api.domain.dto.DocumentListRequest;
+import br.com.api.domain.dto.DocumentPageResponse;
+import br.com.api.domain.dto.DocumentRequest;
+import br.com.api.domain.dto.DocumentSummaryResponse;
+
+import br.com.api.exception.BadRequestException;
+
+import br.com.api.support.TestUsers;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.IOException;
+
+import java.nio.charset.StandardCharsets;
+
+import java.time.LocalDate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {
+        "document.processing.enabled=false",
+        "document.upload-directory=${java.io.tmpdir}/document-list-service-tests"})
+@Import(TestUsers.class)
+class DocumentListServiceTests {
+
+    private static final int DOCUMENTS = 11;
+
+    @Autowired
+    private DocumentService documentService;
+
+    @Autowired
+    private DocumentListService documentListService;
+
+    @Autowired
+    private UserPrincipalService userPrincipalService;
+
+    @Autowired
+    private TestUsers testUsers;
+
+    private String username;
+
+    @BeforeEach
+    void createUserAndDocuments() throws IOException {
+
+        username = testUsers.createClientUser("list");
+        userPrincipalService.findActivePrincipal(username);
+
+        for (int index = 0; index < DOCUMENTS; index++) {
+
+            // Only three different validity dates, so most pages end inside a run of equal values
+            documentService.addNewDocument(new MockMultipartFile("document", "document" + index
+                            + (index % 2 == 0 ? ".txt" : ".csv"), "text/plain",
+                            UUID.randomUUID().toString().getBytes(StandardCharsets.UTF_8)),
+                    new DocumentRequest(LocalDate.now().plusDays(30 + index % 3)), username);
+        }
+    }
+
+    @Test
+    void cursorPagesFollowTheSingleQueryOrder() {
+
+        for (String sort : List.of("name", "extension", "validity", "creation")) {
+
+            for (String direction : List.of("asc", "desc")) {
+
+                List<DocumentSummaryResponse> allDocuments = documentListService.listDocumentPage(
+                        createRequest(sort, direction, 1000, null), username).documents();
+                List<DocumentSummaryResponse> pagedDocuments = listEveryPage(sort, direction, 3);
+
+                assertEquals(DOCUMENTS, allDocuments.size());
+                assertEquals(takeTheUuids(allDocuments), takeTheUuids(pagedDocuments),
+                        "Pages sorted by " + sort + " " + direction + " skipped or repeated documents");
+            }
+        }
+    }
+
+    @Test
+    void lastPageHasNoCursor() {
+
+        DocumentPageResponse page = documentListService.listDocumentPage(
+                createRequest("name", "asc", DOCUMENTS, null), username);
+
+        assertEquals(DOCUMENTS, page.documents().size());
+        assertNull(page.nextCursor());
+    }
+
+    @Test
+    void filtersApplyToEveryPage() {
+
+        List<DocumentSummaryResponse> csvDocuments = new ArrayList<>();
+        String cursor = null;
+
+        do {
+
+            DocumentPageResponse page = documentListService.listDocumentPage(new DocumentListRequest(null, "csv",
+                    null, null, null, null, "validity", "desc", 2, cursor), username);
+
+            csvDocuments.addAll(page.documents());
+            cursor = page.nextCursor();
+        } while (cursor != null);
+
+        assertEquals(DOCUMENTS / 2, csvDocuments.size());
+        assertTrue(csvDocuments.stream().allMatch(document -> document.extension().equals("csv")));
+    }
+
+    @Test
+    void malformedCursorIsRejected() {
+
+        assertThrows(BadRequestException.class, () -> documentListService.listDocumentPage(
+                createRequest("name", "asc", 3, "not a cursor"), username));
+        // A name cursor sent to a date sort
+        String nameCursor = documentListService.listDocumentPage(createRequest("name", "asc", 3, null), username)
+                .nextCursor();
+        assertThrows(BadRequestException.class, () -> documentListService.listDocumentPage(
+                createRequest("validity", "asc", 3, nameCursor), username));
+        assertThrows(BadRequestException.class, () -> documentListService.listDocumentPage(
+                createRequest("guideName", "asc", 3, null), username));
+    }
+
+    private List<DocumentSummaryResponse> listEveryPage(String sort, String direction, int size) {
+
+        List<DocumentSummaryResponse> documents = new ArrayList<>();
+        String cursor = null;
+
+        do {
+
+            DocumentPageResponse page = documentListService.listDocumentPage(
+                    createRequest(sort, direction, size, cursor), username);
+
+            assertTrue(page.documents().size() <= size);
+            documents.addAll(page.documents());
+            cursor = page.nextCursor();
+        } while (cursor != null);
+
+        return documents;
+    }
+
+    private DocumentListRequest createRequest(String sort, String direction, int size, String cursor) {
+
+        return new DocumentListRequest(null, null, null, null, null, null, sort, direction, size, cursor);
+    }
+
+    private List<UUID> takeTheUuids(List<DocumentSummaryResponse> documents) {
+
+        return documents.stream().map(DocumentSummaryResponse::uuid).toList();
+    }
+}
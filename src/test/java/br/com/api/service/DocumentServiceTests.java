@@ -0,0 +1,507 @@
+package br.com.api.service;
+
+import br.com.api.config.DocumentStorageProperties;
+
+import br.com.api.domain.dto.DocumentRequest;
+import br.com.api.domain.dto.DocumentResponse;
+import br.com.api.domain.dto.DocumentSummaryResponse;
+
+import br.com.api.domain.entities.DocumentBlobs;
+
+import br.com.api.domain.enums.DocumentEncoding;
+
+import br.com.api.exception.BadRequestException;
+
+import br.com.api.repository.DocumentBlobRepository;
+
+import br.com.api.storage.DocumentStorage;
+
+import br.com.api.support.TestUsers;
+
+import jakarta.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "document.processing.enabled=false",
+        "document.compression.enabled=true",
+        "document.upload-directory=${java.io.tmpdir}/document-service-tests"})
+@Import(TestUsers.class)
+class DocumentServiceTests {
+
+    /* Head insert and lookup, blob reference update and blob upsert, then the document and job inserts and
+     * the head update, each one sent as a single batch */
+    private static final long MAX_STATEMENTS_PER_UPLOAD = 7;
+
+    @Autowired
+    private DocumentService documentService;
+
+    @Autowired
+    private DocumentBlobService documentBlobService;
+
+    @Autowired
+    private DocumentBlobRepository documentBlobRepository;
+
+    @Autowired
+    private DocumentStorage documentStorage;
+
+    @Autowired
+    private DocumentStorageProperties documentStorageProperties;
+
+    @Autowired
+    private UserPrincipalService userPrincipalService;
+
+    @Autowired
+    private TestUsers testUsers;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private String username;
+
+    @BeforeEach
+    void createUserAndClient() {
+
+        username = testUsers.createClientUser("statements");
+        userPrincipalService.findActivePrincipal(username);
+    }
+
+    @Test
+    void uploadIssuesAFixedNumberOfStatements() throws IOException {
+
+        long firstUploadStatements = countUploadStatements("first.txt");
+
+        for (int index = 0; index < 5; index++) {
+
+            countUploadStatements("document" + index + ".txt");
+        }
+
+        long lastUploadStatements = countUploadStatements("last.txt");
+
+        assertEquals(firstUploadStatements, lastUploadStatements);
+        assertTrue(lastUploadStatements <= MAX_STATEMENTS_PER_UPLOAD,
+                "An upload issued " + lastUploadStatements + " statements");
+    }
+
+    @Test
+    void listingAHeavilyVersionedDocumentDoesNotWalkTheVersionChain() throws IOException {
+
+        countUploadStatements("versioned.txt");
+
+        DocumentResponse lastVersion = null;
+
+        for (int index = 0; index < 50; index++) {
+
+            lastVersion = documentService.updateDocument(createDocument("versioned.txt"),
+                    new DocumentRequest(LocalDate.now().plusDays(30)), username);
+        }
+
+        assertEquals(51, lastVersion.version());
+        assertEquals(50, lastVersion.originalDocument().version());
+
+        Statistics statistics = takeTheStatistics();
+        List<DocumentSummaryResponse> versions = documentService.listDocumentsByName(
+                documentService.renameDocumentNameToAddUser("versioned", username), username);
+
+        assertEquals(51, versions.size());
+        assertTrue(statistics.getPrepareStatementCount() <= 2,
+                "Listing the versions issued " + statistics.getPrepareStatementCount() + " statements");
+        // Only the head and its current version, none of the previous versions behind originalDocument
+        assertEquals(2, statistics.getEntityLoadCount());
+    }
+
+    @Test
+    void previousVersionIsStoredAsADeltaAndRebuiltWhenRead() throws IOException {
+
+        byte[] firstContent = new byte[256 * 1024];
+        new Random(21).nextBytes(firstContent);
+
+        byte[] secondContent = firstContent.clone();
+        System.arraycopy("an edited cell".getBytes(StandardCharsets.UTF_8), 0, secondContent, 100_000, 14);
+
+        documentService.addNewDocument(new MockMultipartFile("document", "spreadsheet.txt", "text/plain",
+                firstContent), new DocumentRequest(LocalDate.now().plusDays(30)), username);
+        documentService.updateDocument(new MockMultipartFile("document", "spreadsheet.txt", "text/plain",
+                secondContent), new DocumentRequest(LocalDate.now().plusDays(30)), username);
+
+        DocumentBlobs firstBlob = findBlob("spreadsheet.txt", 1);
+        DocumentBlobs secondBlob = findBlob("spreadsheet.txt", 2);
+
+        String result = documentBlobService.encodeAsDelta(firstBlob, secondBlob);
+        DocumentBlobs deltaBlob = documentBlobRepository.findById(firstBlob.getHash()).orElseThrow();
+
+        assertEquals(secondBlob.getHash(), deltaBlob.getBaseHash(), result);
+        assertTrue(deltaBlob.getStoredSize() < firstContent.length / 10,
+                "The delta takes " + deltaBlob.getStoredSize() + " bytes");
+        assertEquals(2, documentBlobRepository.findById(secondBlob.getHash()).orElseThrow().getReferenceCount());
+
+        try (InputStream inputStream = documentStorage.read(documentBlobService.takeTheReadableKey(deltaBlob), 0)) {
+
+            assertArrayEquals(firstContent, inputStream.readAllBytes());
+        }
+
+        // A download that opened the full content before the switch can still finish reading it
+        String fullCopyKey = documentBlobService.takeTheStoredKey(firstBlob.getHash(), firstBlob.getEncoding());
+
+        assertNotNull(deltaBlob.getFullCopyReleased());
+        assertTrue(documentStorage.exists(fullCopyKey), "The full content was deleted inside the grace period");
+
+        documentBlobService.deleteReplacedFullCopies(LocalDateTime.now().plusMinutes(1));
+
+        assertFalse(documentStorage.exists(fullCopyKey));
+        assertNull(documentBlobRepository.findById(firstBlob.getHash()).orElseThrow().getFullCopyReleased());
+
+        try (InputStream inputStream = documentBlobService.openContent(deltaBlob)) {
+
+            assertArrayEquals(firstContent, inputStream.readAllBytes());
+        }
+    }
+
+    @Test
+    void fullCopyIsKeptWhenTheStoredDeltaDoesNotRebuildIt() throws IOException {
+
+        byte[] firstContent = new byte[256 * 1024];
+        new Random(22).nextBytes(firstContent);
+
+        byte[] secondContent = firstContent.clone();
+        System.arraycopy("an edited cell".getBytes(StandardCharsets.UTF_8), 0, secondContent, 50_000, 14);
+
+        documentService.addNewDocument(new MockMultipartFile("document", "budget.txt", "text/plain",
+                firstContent), new DocumentRequest(LocalDate.now().plusDays(30)), username);
+        documentService.updateDocument(new MockMultipartFile("document", "budget.txt", "text/plain",
+                secondContent), new DocumentRequest(LocalDate.now().plusDays(30)), username);
+
+        DocumentBlobs firstBlob = findBlob("budget.txt", 1);
+        DocumentBlobs secondBlob = findBlob("budget.txt", 2);
+
+        documentBlobService.encodeAsDelta(firstBlob, secondBlob);
+
+        // The delta is damaged on disk after it was checked, with no rebuilt copy left by an earlier run
+        documentStorage.delete(documentBlobService.takeTheReconstructedKey(firstBlob.getHash()));
+        Path damagedDelta = documentBlobService.takeTheStagingPath();
+        Files.write(damagedDelta, new byte[] {1, 2, 3});
+        documentStorage.delete(documentBlobService.takeTheDeltaKey(firstBlob.getHash()));
+        documentStorage.store(documentBlobService.takeTheDeltaKey(firstBlob.getHash()), damagedDelta);
+
+        documentBlobService.deleteReplacedFullCopies(LocalDateTime.now().plusMinutes(1));
+
+        DocumentBlobs restoredBlob = documentBlobRepository.findById(firstBlob.getHash()).orElseThrow();
+
+        assertNull(restoredBlob.getBaseHash());
+        assertNull(restoredBlob.getFullCopyReleased());
+        assertEquals(1, documentBlobRepository.findById(secondBlob.getHash()).orElseThrow().getReferenceCount());
+        assertFalse(documentStorage.exists(documentBlobService.takeTheDeltaKey(firstBlob.getHash())));
+
+        try (InputStream inputStream = documentBlobService.openContent(restoredBlob)) {
+
+            assertArrayEquals(firstContent, inputStream.readAllBytes());
+        }
+    }
+
+    @Test
+    void textDocumentIsStoredCompressedAndReadAsReceived() throws IOException {
+
+        StringBuilder csv = new StringBuilder("id;name;validity\n");
+
+        for (int index = 0; index < 5000; index++) {
+
+            csv.append(index).append(";document ").append(index).append(";2030-01-01\n");
+        }
+
+        byte[] content = csv.toString().getBytes(StandardCharsets.UTF_8);
+
+        documentService.addNewDocument(new MockMultipartFile("document", "report.csv", "text/csv", content),
+                new DocumentRequest(LocalDate.now().plusDays(30)), username);
+
+        DocumentBlobs blob = findBlob("report.csv", 1);
+
+        assertEquals(DocumentEncoding.GZIP, blob.getEncoding());
+        assertTrue(blob.getStoredSize() < content.length / 4, "The stored content takes " + blob.getStoredSize());
+
+        try (InputStream inputStream = documentBlobService.openContent(blob)) {
+
+            assertArrayEquals(content, inputStream.readAllBytes());
+        }
+    }
+
+    @Test
+    void concurrentUploadsOfTheSameContentShareOneBlob() throws Exception {
+
+        byte[] content = new byte[64 * 1024];
+        new Random(5).nextBytes(content);
+
+        int uploads = 8;
+        ExecutorService executorService = Executors.newFixedThreadPool(uploads);
+        CyclicBarrier barrier = new CyclicBarrier(uploads);
+        List<Future<DocumentResponse>> responses = new ArrayList<>();
+
+        try {
+
+            for (int index = 0; index < uploads; index++) {
+
+                String documentName = "copy" + index + ".bin";
+
+                responses.add(executorService.submit(() -> {
+
+                    barrier.await();
+                    return documentService.addNewDocument(new MockMultipartFile("document", documentName,
+                            "application/octet-stream", content), new DocumentRequest(LocalDate.now().plusDays(30)),
+                            username);
+                }));
+            }
+
+            for (Future<DocumentResponse> response : responses) {
+
+                assertEquals(1, response.get(30, TimeUnit.SECONDS).version());
+            }
+        } finally {
+
+            executorService.shutdownNow();
+        }
+
+        DocumentBlobs blob = findBlob("copy0.bin", 1);
+
+        assertEquals(uploads, blob.getReferenceCount());
+
+        try (InputStream inputStream = documentBlobService.openContent(blob)) {
+
+            assertArrayEquals(content, inputStream.readAllBytes());
+        }
+    }
+
+    @Test
+    void concurrentUploadsOfTheSameNameCreateOneDocument() throws Exception {
+
+        int uploads = 8;
+        ExecutorService executorService = Executors.newFixedThreadPool(uploads);
+        CyclicBarrier barrier = new CyclicBarrier(uploads);
+        List<Future<DocumentResponse>> responses = new ArrayList<>();
+        int createdDocuments = 0;
+
+        try {
+
+            for (int index = 0; index < uploads; index++) {
+
+                MockMultipartFile document = createDocument("contested.txt");
+
+                responses.add(executorService.submit(() -> {
+
+                    barrier.await();
+                    return documentService.addNewDocument(document, new DocumentRequest(LocalDate.now().plusDays(30)),
+                            username);
+                }));
+            }
+
+            for (Future<DocumentResponse> response : responses) {
+
+                try {
+
+                    assertEquals(1, response.get(30, TimeUnit.SECONDS).version());
+                    createdDocuments++;
+                } catch (ExecutionException exception) {
+
+                    assertInstanceOf(BadRequestException.class, exception.getCause());
+                }
+            }
+        } finally {
+
+            executorService.shutdownNow();
+        }
+
+        assertEquals(1, createdDocuments);
+        assertEquals(1, documentService.listDocumentsByName(
+                documentService.renameDocumentNameToAddUser("contested", username), username).size());
+    }
+
+    @Test
+    void concurrentUpdatesOfTheSameDocumentTakeDistinctVersions() throws Exception {
+
+        documentService.addNewDocument(createDocument("ledger.txt"), new DocumentRequest(LocalDate.now().plusDays(30)),
+                username);
+
+        int updates = 4;
+        ExecutorService executorService = Executors.newFixedThreadPool(updates);
+        CyclicBarrier barrier = new CyclicBarrier(updates);
+        List<Future<DocumentResponse>> responses = new ArrayList<>();
+        Set<Integer> versions = new HashSet<>();
+
+        try {
+
+            for (int index = 0; index < updates; index++) {
+
+                MockMultipartFile document = createDocument("ledger.txt");
+
+                responses.add(executorService.submit(() -> {
+
+                    barrier.await();
+                    return documentService.updateDocument(document, new DocumentRequest(LocalDate.now().plusDays(30)),
+                            username);
+                }));
+            }
+
+            for (Future<DocumentResponse> response : responses) {
+
+                versions.add(response.get(30, TimeUnit.SECONDS).version());
+            }
+        } finally {
+
+            executorService.shutdownNow();
+        }
+
+        assertEquals(Set.of(2, 3, 4, 5), versions);
+        assertEquals(5, documentService.findDocumentByFileName("ledger.txt", username, null).getVersion());
+    }
+
+    @Test
+    void releasedContentIsKeptForTheGracePeriodAndThenSwept() throws IOException {
+
+        byte[] content = new byte[16 * 1024];
+        new Random(6).nextBytes(content);
+
+        documentService.addNewDocument(new MockMultipartFile("document", "released.bin", "application/octet-stream",
+                content), new DocumentRequest(LocalDate.now().plusDays(30)), username);
+
+        String hash = findBlob("released.bin", 1).getHash();
+
+        documentService.deleteAllDocumentWithName("released", username);
+        documentBlobService.deleteReleasedBlobs();
+
+        DocumentBlobs releasedBlob = documentBlobRepository.findById(hash).orElseThrow();
+
+        assertEquals(0, releasedBlob.getReferenceCount());
+        assertNotNull(releasedBlob.getReleased());
+        assertTrue(documentStorage.exists(hash), "The content was deleted inside the grace period");
+
+        // A new upload of the same content takes the released blob back
+        documentService.addNewDocument(new MockMultipartFile("document", "taken-back.bin",
+                "application/octet-stream", content), new DocumentRequest(LocalDate.now().plusDays(30)), username);
+
+        DocumentBlobs takenBackBlob = findBlob("taken-back.bin", 1);
+
+        assertEquals(hash, takenBackBlob.getHash());
+        assertEquals(1, takenBackBlob.getReferenceCount());
+        assertNull(takenBackBlob.getReleased());
+
+        documentService.deleteAllDocumentWithName("taken-back", username);
+
+        Duration deletionGracePeriod = documentStorageProperties.getStorage().getDeletionGracePeriod();
+
+        try {
+
+            // Every release counts as older than the grace period
+            documentStorageProperties.getStorage().setDeletionGracePeriod(Duration.ofMinutes(-1));
+            documentBlobService.deleteReleasedBlobs();
+        } finally {
+
+            documentStorageProperties.getStorage().setDeletionGracePeriod(deletionGracePeriod);
+        }
+
+        assertFalse(documentBlobRepository.existsById(hash));
+        assertFalse(documentStorage.exists(hash));
+    }
+
+    @Test
+    void contentStoredByARolledBackUploadIsDeleted() throws IOException {
+
+        byte[] content = new byte[16 * 1024];
+        new Random(7).nextBytes(content);
+
+        Path stagedDocument = documentBlobService.takeTheStagingPath();
+        Files.write(stagedDocument, content);
+        String hash = documentBlobService.calculateHash(stagedDocument);
+
+        transactionTemplate.executeWithoutResult(status -> {
+
+            try {
+
+                documentBlobService.storeBlob(stagedDocument, hash, "rolled-back.bin");
+                assertTrue(documentStorage.exists(hash));
+            } catch (IOException exception) {
+
+                throw new UncheckedIOException(exception);
+            }
+
+            status.setRollbackOnly();
+        });
+
+        assertFalse(documentBlobRepository.existsById(hash));
+        assertFalse(documentStorage.exists(hash), "The content of the rolled back upload was left on disk");
+    }
+
+    private DocumentBlobs findBlob(String documentName, Integer version) {
+
+        return documentBlobRepository.findById(documentService.findDocumentByFileName(documentName, username, version)
+                .getBlob().getHash()).orElseThrow();
+    }
+
+    private long countUploadStatements(String documentName) throws IOException {
+
+        Statistics statistics = takeTheStatistics();
+
+        documentService.addNewDocument(createDocument(documentName),
+                new DocumentRequest(LocalDate.now().plusDays(30)), username);
+
+        return statistics.getPrepareStatementCount();
+    }
+
+    private MockMultipartFile createDocument(String documentName) {
+
+        return new MockMultipartFile("document", documentName, "text/plain",
+                (documentName + UUID.randomUUID()).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Statistics takeTheStatistics() {
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        return statistics;
+    }
+}
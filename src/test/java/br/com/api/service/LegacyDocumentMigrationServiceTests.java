@@ -0,0 +1,92 @@
+package br.com.api.service;
+
+import br.com.api.domain.entities.Documents;
+import br.com.api.domain.entities.VersionedDocuments;
+
+import br.com.api.repository.ClientRepository;
+import br.com.api.repository.DocumentRepository;
+
+import br.com.api.support.TestUsers;
+
+import org.junit.jupiter.api.Test;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+
+import java.time.LocalDate;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+@SpringBootTest(properties = {
+        "document.processing.enabled=false",
+        "document.upload-directory=${java.io.tmpdir}/legacy-document-migration-service-tests"})
+@Import(TestUsers.class)
+class LegacyDocumentMigrationServiceTests {
+
+    @Autowired
+    private LegacyDocumentMigrationService legacyDocumentMigrationService;
+
+    @Autowired
+    private DocumentService documentService;
+
+    @Autowired
+    private DocumentVersionService documentVersionService;
+
+    @Autowired
+    private DocumentRepository documentRepository;
+
+    @Autowired
+    private ClientRepository clientRepository;
+
+    @Autowired
+    private UserPrincipalService userPrincipalService;
+
+    @Autowired
+    private TestUsers testUsers;
+
+    @Test
+    void documentsSavedBeforeTheVersionTableAreLinkedByTheMigrationOnly() {
+
+        String username = testUsers.createClientUser("legacy");
+        UUID clientUuid = userPrincipalService.findActivePrincipal(username).clientId();
+        String guideName = documentService.renameDocumentNameToAddUser("contract", username);
+
+        saveLegacyDocument(clientUuid, guideName + "_V1", 1);
+        saveLegacyDocument(clientUuid, guideName + "_V2", 2);
+        Documents currentVersion = saveLegacyDocument(clientUuid, guideName, 3);
+
+        // Lookups only read the version table, the chain stays unlinked until the migration runs
+        assertNull(documentService.findVersionedDocument(guideName, username));
+        assertNull(documentRepository.findById(currentVersion.getUuid()).orElseThrow().getVersionedDocument());
+
+        legacyDocumentMigrationService.migrateVersionedDocuments();
+
+        VersionedDocuments versionedDocument = documentService.findVersionedDocument(guideName, username);
+
+        assertEquals(3, versionedDocument.getLastVersion());
+        assertEquals(currentVersion.getUuid(), versionedDocument.getCurrentVersion().getUuid());
+        assertEquals(3, documentVersionService.listVersionSummaries(versionedDocument).size());
+
+        // A second run finds nothing left to link
+        legacyDocumentMigrationService.migrateVersionedDocuments();
+
+        assertEquals(versionedDocument.getUuid(), documentService.findVersionedDocument(guideName, username).getUuid());
+    }
+
+    private Documents saveLegacyDocument(UUID clientUuid, String guideName, int version) {
+
+        return documentRepository.save(Documents.builder()
+                .name("contract")
+                .guideName(guideName)
+                .extension("pdf")
+                .version(version)
+                .validity(LocalDate.now().plusDays(30))
+                .creation(LocalDate.now().minusDays(10 - version))
+                .client(clientRepository.getReferenceById(clientUuid))
+                .build());
+    }
+}
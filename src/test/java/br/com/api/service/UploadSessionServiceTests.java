@@ -0,0 +1,181 @@
+package br.com.api.service;
+
+import br.com.api.domain.dto.ChunkRangeResponse;
+import br.com.api.domain.dto.DocumentResponse;
+import br.com.api.domain.dto.UploadSessionRequest;
+import br.com.api.domain.dto.UploadSessionResponse;
+
+import br.com.api.exception.BadRequestException;
+
+import br.com.api.repository.DocumentBlobRepository;
+
+import br.com.api.support.TestUsers;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import java.time.LocalDate;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest(properties = {
+        "document.processing.enabled=false",
+        "document.upload-session.min-chunk-size=1KB",
+        "document.upload-directory=${java.io.tmpdir}/upload-session-service-tests"})
+@Import(TestUsers.class)
+class UploadSessionServiceTests {
+
+    private static final int CHUNK_SIZE = 1024;
+
+    @Autowired
+    private UploadSessionService uploadSessionService;
+
+    @Autowired
+    private DocumentService documentService;
+
+    @Autowired
+    private DocumentBlobService documentBlobService;
+
+    @Autowired
+    private DocumentBlobRepository documentBlobRepository;
+
+    @Autowired
+    private TestUsers testUsers;
+
+    private String username;
+    private byte[] content;
+
+    @BeforeEach
+    void createUserAndContent() {
+
+        username = testUsers.createClientUser("session");
+
+        // Two full chunks and a shorter last one
+        content = new byte[CHUNK_SIZE * 2 + 100];
+        new Random(2).nextBytes(content);
+    }
+
+    @Test
+    void interruptedSessionIsResumedFromTheMissingChunks() throws IOException {
+
+        UUID sessionId = createSession("contract.pdf").sessionId();
+
+        uploadChunk(sessionId, 2);
+        UploadSessionResponse uploadSession = uploadChunk(sessionId, 0);
+
+        assertEquals(List.of(new ChunkRangeResponse(1, 1)), uploadSession.missingChunks());
+        assertEquals(CHUNK_SIZE + 100, uploadSession.receivedBytes());
+        assertEquals(0, uploadSession.receivedRanges().get(0).start());
+        assertEquals(CHUNK_SIZE * 2L, uploadSession.receivedRanges().get(1).start());
+
+        // A client coming back after the interruption only learns what is missing from the session itself
+        uploadSession = uploadSessionService.findUploadSession(sessionId, username);
+        assertEquals(List.of(new ChunkRangeResponse(1, 1)), uploadSession.missingChunks());
+
+        assertThrows(BadRequestException.class, () -> uploadSessionService.commitUploadSession(sessionId, username));
+
+        uploadChunk(sessionId, 1);
+        // Sending a chunk again after a lost response changes nothing
+        uploadSession = uploadChunk(sessionId, 0);
+
+        assertEquals(List.of(), uploadSession.missingChunks());
+        assertEquals(content.length, uploadSession.receivedBytes());
+        assertEquals(1, uploadSession.receivedRanges().size());
+
+        DocumentResponse document = uploadSessionService.commitUploadSession(sessionId, username);
+
+        assertEquals(1, document.version());
+        assertArrayEquals(content, readDocument("contract.pdf"));
+        assertThrows(BadRequestException.class, () -> uploadSessionService.findUploadSession(sessionId, username));
+    }
+
+    @Test
+    void chunkWithTheWrongSizeIsRejected() throws IOException {
+
+        UUID sessionId = createSession("invoice.pdf").sessionId();
+
+        assertThrows(BadRequestException.class, () -> uploadSessionService.uploadChunk(sessionId, 0,
+                new ByteArrayInputStream(content, 0, CHUNK_SIZE - 1), CHUNK_SIZE - 1, username));
+        assertThrows(BadRequestException.class, () -> uploadSessionService.uploadChunk(sessionId, 3,
+                new ByteArrayInputStream(content, 0, 100), 100, username));
+
+        assertEquals(List.of(new ChunkRangeResponse(0, 2)),
+                uploadSessionService.findUploadSession(sessionId, username).missingChunks());
+    }
+
+    @Test
+    void chunkSizeBelowTheMinimumIsRejected() {
+
+        // A tiny chunk size on a large document would make the session track too many chunks
+        assertThrows(BadRequestException.class, () -> uploadSessionService.createUploadSession(
+                new UploadSessionRequest("ledger.pdf", 5L * 1024 * 1024 * 1024, 1L, LocalDate.now().plusDays(30),
+                        null), username));
+    }
+
+    @Test
+    void sessionCommittedAsAnUpdateAddsAVersion() throws IOException {
+
+        UUID firstSessionId = createSession("report.pdf").sessionId();
+
+        for (int chunkNumber = 0; chunkNumber < 3; chunkNumber++) {
+
+            uploadChunk(firstSessionId, chunkNumber);
+        }
+
+        uploadSessionService.commitUploadSession(firstSessionId, username);
+
+        content = Arrays.copyOf(content, CHUNK_SIZE / 2);
+        UUID secondSessionId = uploadSessionService.createUploadSession(new UploadSessionRequest("report.pdf",
+                (long) content.length, (long) CHUNK_SIZE, LocalDate.now().plusDays(30), true), username).sessionId();
+
+        uploadChunk(secondSessionId, 0);
+
+        assertEquals(2, uploadSessionService.commitUploadSession(secondSessionId, username).version());
+        assertArrayEquals(content, readDocument("report.pdf"));
+    }
+
+    private UploadSessionResponse createSession(String documentName) throws IOException {
+
+        UploadSessionResponse uploadSession = uploadSessionService.createUploadSession(new UploadSessionRequest(
+                documentName, (long) content.length, (long) CHUNK_SIZE, LocalDate.now().plusDays(30), null),
+                username);
+
+        assertEquals(3, uploadSession.totalChunks());
+
+        return uploadSession;
+    }
+
+    private UploadSessionResponse uploadChunk(UUID sessionId, int chunkNumber) throws IOException {
+
+        int start = chunkNumber * CHUNK_SIZE;
+        int length = Math.min(CHUNK_SIZE, content.length - start);
+
+        return uploadSessionService.uploadChunk(sessionId, chunkNumber,
+                new ByteArrayInputStream(content, start, length), length, username);
+    }
+
+    private byte[] readDocument(String documentName) throws IOException {
+
+        try (InputStream inputStream = documentBlobService.openContent(documentBlobRepository.findById(
+                documentService.findDocumentByFileName(documentName, username, null).getBlob().getHash())
+                .orElseThrow())) {
+
+            return inputStream.readAllBytes();
+        }
+    }
+}
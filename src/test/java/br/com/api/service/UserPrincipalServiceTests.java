@@ -0,0 +1,80 @@
+package br.com.api.service;
+
+import br.com.api.domain.entities.Users;
+
+import br.com.api.exception.BadRequestException;
+
+import br.com.api.repository.UserRepository;
+
+import br.com.api.support.TestUsers;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest
+@Import(TestUsers.class)
+class UserPrincipalServiceTests {
+
+    @Autowired
+    private UserPrincipalService userPrincipalService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private TestUsers testUsers;
+
+    private String username;
+
+    @BeforeEach
+    void createAndCacheUser() {
+
+        username = testUsers.createClientUser("principal");
+        userPrincipalService.findActivePrincipal(username);
+    }
+
+    @Test
+    void principalIsEvictedOnlyOnceTheChangeIsCommitted() {
+
+        transactionTemplate.executeWithoutResult(status -> {
+
+            excludeUser();
+
+            // A request served before the commit must not cache the old row again
+            assertFalse(userPrincipalService.findActivePrincipal(username).excluded());
+        });
+
+        assertThrows(BadRequestException.class, () -> userPrincipalService.findActivePrincipal(username));
+    }
+
+    @Test
+    void principalIsKeptWhenTheChangeIsRolledBack() {
+
+        transactionTemplate.executeWithoutResult(status -> {
+
+            excludeUser();
+            status.setRollbackOnly();
+        });
+
+        assertFalse(userPrincipalService.findActivePrincipal(username).excluded());
+    }
+
+    private void excludeUser() {
+
+        Users user = userRepository.findByUsername(username);
+        user.setExcluded(true);
+        userRepository.save(user);
+        userPrincipalService.evictPrincipal(username);
+    }
+}
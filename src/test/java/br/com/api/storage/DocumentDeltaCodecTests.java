@@ -0,0 +1,152 @@
+package br.com.api.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DocumentDeltaCodecTests {
+
+    private static final int BLOCK_SIZE = 64;
+
+    private final DocumentDeltaCodec documentDeltaCodec = new DocumentDeltaCodec();
+    private final Random random = new Random(21);
+
+    @TempDir
+    Path workDirectory;
+
+    @Test
+    void emptyBaseSendsTheTargetAsLiterals() throws IOException {
+
+        roundTrip(new byte[0], createContent(1000), BLOCK_SIZE);
+        roundTrip(new byte[0], new byte[0], BLOCK_SIZE);
+    }
+
+    @Test
+    void emptyTargetIsRebuiltEmpty() throws IOException {
+
+        roundTrip(createContent(1000), new byte[0], BLOCK_SIZE);
+    }
+
+    @Test
+    void baseShorterThanOneBlockIsNeverCopied() throws IOException {
+
+        byte[] base = createContent(BLOCK_SIZE - 1);
+
+        roundTrip(base, concat(base, base), BLOCK_SIZE);
+        roundTrip(base, Arrays.copyOf(base, 10), BLOCK_SIZE);
+    }
+
+    @Test
+    void targetNotAlignedToTheBlocksKeepsItsTail() throws IOException {
+
+        byte[] base = createContent(BLOCK_SIZE * 20);
+
+        long deltaSize = roundTrip(base, concat(base, createContent(BLOCK_SIZE / 2 + 3)), BLOCK_SIZE);
+        roundTrip(base, Arrays.copyOf(base, base.length - 7), BLOCK_SIZE);
+
+        assertTrue(deltaSize < base.length / 4, "The delta takes " + deltaSize + " bytes");
+    }
+
+    @Test
+    void insertsAndDeletesThatShiftTheAlignmentStillMatchTheFollowingBlocks() throws IOException {
+
+        byte[] base = createContent(BLOCK_SIZE * 100);
+
+        byte[] inserted = concat(Arrays.copyOf(base, 1000), createContent(13), Arrays.copyOfRange(base, 1000,
+                base.length));
+        byte[] deleted = concat(Arrays.copyOf(base, 3001), Arrays.copyOfRange(base, 3040, base.length));
+
+        long insertedDeltaSize = roundTrip(base, inserted, BLOCK_SIZE);
+        long deletedDeltaSize = roundTrip(base, deleted, BLOCK_SIZE);
+
+        assertTrue(insertedDeltaSize < base.length / 4, "The insert delta takes " + insertedDeltaSize + " bytes");
+        assertTrue(deletedDeltaSize < base.length / 4, "The delete delta takes " + deletedDeltaSize + " bytes");
+    }
+
+    @Test
+    void repeatedBlocksAreCopiedFromAnyMatchingBlock() throws IOException {
+
+        byte[] block = createContent(BLOCK_SIZE);
+        byte[] base = concat(block, block, createContent(BLOCK_SIZE), block);
+        byte[] target = concat(block, block, block, block, block, createContent(5), block);
+
+        long deltaSize = roundTrip(base, target, BLOCK_SIZE);
+
+        assertTrue(deltaSize < target.length / 2, "The delta takes " + deltaSize + " bytes");
+    }
+
+    @Test
+    void literalRunsLongerThanTheMaximumAreSplit() throws IOException {
+
+        // Nothing of the base appears in the target, so the whole target is one long literal run
+        roundTrip(createContent(BLOCK_SIZE * 4), createContent((1 << 20) * 2 + 12345), BLOCK_SIZE);
+    }
+
+    @Test
+    void targetLargerThanTheRefillBufferIsMatchedAcrossRefills() throws IOException {
+
+        int blockSize = 8 * 1024;
+        byte[] base = createContent(5 * 1024 * 1024 + 100);
+        byte[] target = base.clone();
+
+        // Edits on both sides of the 2 MB buffer boundary and near the end
+        System.arraycopy(createContent(100), 0, target, 2 * 1024 * 1024 - 50, 100);
+        System.arraycopy(createContent(100), 0, target, 4 * 1024 * 1024 + 3, 100);
+        target = concat(target, createContent(777));
+
+        long deltaSize = roundTrip(base, target, blockSize);
+
+        assertTrue(deltaSize < base.length / 20, "The delta takes " + deltaSize + " bytes");
+    }
+
+    private long roundTrip(byte[] base, byte[] target, int blockSize) throws IOException {
+
+        Path basePath = Files.write(Files.createTempFile(workDirectory, "base", ".bin"), base);
+        Path deltaPath = Files.createTempFile(workDirectory, "delta", ".bin");
+
+        long deltaSize = documentDeltaCodec.encode(basePath, new ByteArrayInputStream(target), deltaPath, blockSize);
+        ByteArrayOutputStream rebuilt = new ByteArrayOutputStream();
+
+        try (InputStream delta = Files.newInputStream(deltaPath)) {
+
+            documentDeltaCodec.apply(basePath, delta, rebuilt);
+        }
+
+        assertArrayEquals(target, rebuilt.toByteArray());
+
+        return deltaSize;
+    }
+
+    private byte[] createContent(int size) {
+
+        byte[] content = new byte[size];
+        random.nextBytes(content);
+
+        return content;
+    }
+
+    private byte[] concat(byte[]... parts) {
+
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+
+        for (byte[] part : parts) {
+
+            content.writeBytes(part);
+        }
+
+        return content.toByteArray();
+    }
+}
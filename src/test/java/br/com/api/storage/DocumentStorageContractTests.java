@@ -0,0 +1,151 @@
+package br.com.api.storage;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/*
+* Behaviour every DocumentStorage must share, each backend runs these tests through a subclass
+* that creates it.
+* */
+abstract class DocumentStorageContractTests {
+
+    @TempDir
+    Path stagingDirectory;
+
+    private DocumentStorage documentStorage;
+    private byte[] content;
+
+    protected abstract DocumentStorage createDocumentStorage() throws IOException;
+
+    @BeforeEach
+    void createStorageAndContent() throws IOException {
+
+        documentStorage = createDocumentStorage();
+
+        content = new byte[100_000];
+        new Random(6).nextBytes(content);
+    }
+
+    @Test
+    void storedContentIsReadBack() throws IOException {
+
+        String key = createKey();
+        Path stagedDocument = stage(content);
+
+        documentStorage.store(key, stagedDocument);
+
+        assertTrue(documentStorage.exists(key));
+        assertEquals(content.length, documentStorage.size(key));
+        assertTrue(documentStorage.lastModified(key) > 0);
+        assertFalse(Files.exists(stagedDocument), "The staged document was left behind");
+        assertArrayEquals(content, read(key, 0, content.length));
+    }
+
+    @Test
+    void readStartsAtTheGivenOffset() throws IOException {
+
+        String key = createKey();
+        documentStorage.store(key, stage(content));
+
+        assertArrayEquals(Arrays.copyOfRange(content, 60_000, content.length),
+                read(key, 60_000, content.length - 60_000));
+    }
+
+    @Test
+    void rangedReadReturnsOnlyTheRequestedBytes() throws IOException {
+
+        String key = createKey();
+        documentStorage.store(key, stage(content));
+
+        assertArrayEquals(Arrays.copyOfRange(content, 12_345, 12_345 + 4096), read(key, 12_345, 4096));
+        assertArrayEquals(Arrays.copyOfRange(content, content.length - 1, content.length),
+                read(key, content.length - 1, 1));
+    }
+
+    @Test
+    void storingAnExistingKeyKeepsTheStoredContent() throws IOException {
+
+        String key = createKey();
+        documentStorage.store(key, stage(content));
+
+        Path secondStagedDocument = stage(new byte[] {1, 2, 3});
+        documentStorage.store(key, secondStagedDocument);
+
+        assertFalse(Files.exists(secondStagedDocument), "The discarded staged document was left behind");
+        assertArrayEquals(content, read(key, 0, content.length));
+    }
+
+    @Test
+    void missingKeyIsReportedAsNoSuchFile() throws IOException {
+
+        String key = createKey();
+
+        assertFalse(documentStorage.exists(key));
+        assertThrows(NoSuchFileException.class, () -> documentStorage.read(key, 0).close());
+        assertThrows(NoSuchFileException.class, () -> documentStorage.size(key));
+    }
+
+    @Test
+    void deletedContentIsGone() throws IOException {
+
+        String key = createKey();
+        documentStorage.store(key, stage(content));
+
+        documentStorage.delete(key);
+
+        assertFalse(documentStorage.exists(key));
+        assertThrows(NoSuchFileException.class, () -> documentStorage.read(key, 0).close());
+
+        // Deleting what is already gone is not an error, the blob sweeper relies on it
+        documentStorage.delete(key);
+    }
+
+    @Test
+    void renamedContentMovesToTheNewKey() throws IOException {
+
+        String key = createKey();
+        String newKey = createKey();
+        documentStorage.store(key, stage(content));
+
+        documentStorage.rename(key, newKey);
+
+        assertFalse(documentStorage.exists(key));
+        assertArrayEquals(content, read(newKey, 0, content.length));
+    }
+
+    private String createKey() {
+
+        return UUID.randomUUID().toString().replace("-", "");
+    }
+
+    private Path stage(byte[] stagedContent) throws IOException {
+
+        return Files.write(stagingDirectory.resolve(UUID.randomUUID() + ".part"), stagedContent);
+    }
+
+    private byte[] read(String key, long position, int length) throws IOException {
+
+        try (InputStream inputStream = documentStorage.read(key, position)) {
+
+            return inputStream.readNBytes(length);
+        }
+    }
+}
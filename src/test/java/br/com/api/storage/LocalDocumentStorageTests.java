@@ -0,0 +1,17 @@
+package br.com.api.storage;
+
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+
+class LocalDocumentStorageTests extends DocumentStorageContractTests {
+
+    @TempDir
+    Path documentStorageLocation;
+
+    @Override
+    protected DocumentStorage createDocumentStorage() {
+
+        return new LocalDocumentStorage(documentStorageLocation);
+    }
+}
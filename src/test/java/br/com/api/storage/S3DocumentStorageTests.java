@@ -0,0 +1,51 @@
+package br.com.api.storage;
+
+import org.junit.jupiter.api.BeforeAll;
+
+import org.testcontainers.containers.MinIOContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+
+import software.amazon.awssdk.regions.Region;
+
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.CreateBucketRequest;
+
+import java.net.URI;
+
+/*
+* Runs the storage contract against a MinIO container, skipped where Docker isn't available.
+* */
+@Testcontainers(disabledWithoutDocker = true)
+class S3DocumentStorageTests extends DocumentStorageContractTests {
+
+    private static final String BUCKET = "documents";
+
+    @Container
+    static final MinIOContainer MINIO = new MinIOContainer("minio/minio:RELEASE.2024-05-10T01-41-38Z");
+
+    private static S3Client s3Client;
+
+    @BeforeAll
+    static void createBucket() {
+
+        s3Client = S3Client.builder()
+                .endpointOverride(URI.create(MINIO.getS3URL()))
+                .region(Region.US_EAST_1)
+                .forcePathStyle(true)
+                .credentialsProvider(StaticCredentialsProvider.create(
+                        AwsBasicCredentials.create(MINIO.getUserName(), MINIO.getPassword())))
+                .build();
+
+        s3Client.createBucket(CreateBucketRequest.builder().bucket(BUCKET).build());
+    }
+
+    @Override
+    protected DocumentStorage createDocumentStorage() {
+
+        return new S3DocumentStorage(s3Client, BUCKET, "contract-tests/");
+    }
+}
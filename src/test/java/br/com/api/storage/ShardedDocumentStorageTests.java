@@ -0,0 +1,149 @@
+package br.com.api.storage;
+
+import br.com.api.config.DocumentStorageProperties;
+
+import br.com.api.service.StorageLayoutMigrationService;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ShardedDocumentStorageTests extends DocumentStorageContractTests {
+
+    @TempDir
+    Path uploadDirectory;
+
+    @Override
+    protected DocumentStorage createDocumentStorage() {
+
+        return new ShardedDocumentStorage(createVolumes(3), uploadDirectory);
+    }
+
+    @Test
+    void addingAVolumeOnlyMovesTheKeysItWins() {
+
+        List<String> keys = createKeys(20_000);
+        ShardedDocumentStorage threeVolumes = new ShardedDocumentStorage(createVolumes(3), uploadDirectory);
+        ShardedDocumentStorage fourVolumes = new ShardedDocumentStorage(createVolumes(4), uploadDirectory);
+        Path newVolume = fourVolumes.getDocumentStorageLocations().get(3);
+        int movedKeys = 0;
+
+        for (String key : keys) {
+
+            Path before = threeVolumes.resolve(key);
+            Path after = fourVolumes.resolve(key);
+
+            if (!before.equals(after)) {
+
+                movedKeys++;
+                assertTrue(after.startsWith(newVolume), "A key moved between two of the old volumes");
+            }
+        }
+
+        // Each of the four volumes should win about a quarter of the keys
+        assertTrue(movedKeys > keys.size() * 0.22 && movedKeys < keys.size() * 0.28,
+                "Unexpected number of moved keys: " + movedKeys);
+    }
+
+    @Test
+    void volumeOrderDoesNotChangeThePlacement() {
+
+        List<Path> volumes = createVolumes(4);
+        ShardedDocumentStorage configured = new ShardedDocumentStorage(volumes, uploadDirectory);
+        List<Path> reversedVolumes = new ArrayList<>(volumes);
+        Collections.reverse(reversedVolumes);
+        ShardedDocumentStorage reversed = new ShardedDocumentStorage(reversedVolumes, uploadDirectory);
+
+        for (String key : createKeys(1000)) {
+
+            assertEquals(configured.resolve(key), reversed.resolve(key));
+        }
+    }
+
+    @Test
+    void documentsStayReadableAfterAVolumeIsAddedUntilTheyAreRebalanced() throws IOException {
+
+        ShardedDocumentStorage threeVolumes = new ShardedDocumentStorage(createVolumes(3), uploadDirectory);
+        List<String> keys = createKeys(200);
+
+        for (String key : keys) {
+
+            threeVolumes.store(key, stage(key));
+        }
+
+        ShardedDocumentStorage fourVolumes = new ShardedDocumentStorage(createVolumes(4), uploadDirectory);
+        assertAllReadable(fourVolumes, keys);
+
+        DocumentStorageProperties documentStorageProperties = new DocumentStorageProperties();
+        documentStorageProperties.setUploadDirectory(uploadDirectory.toString());
+        new StorageLayoutMigrationService(fourVolumes, documentStorageProperties).rebalanceVolumes();
+
+        for (String key : keys) {
+
+            assertTrue(Files.exists(fourVolumes.resolve(key)), "The rebalance left " + key + " behind");
+        }
+
+        assertAllReadable(fourVolumes, keys);
+    }
+
+    @Test
+    void flatDocumentsStayReadableUntilTheyAreMovedToTheirShard() throws IOException {
+
+        ShardedDocumentStorage shardedDocumentStorage = new ShardedDocumentStorage(createVolumes(2), uploadDirectory);
+        String key = createKeys(1).get(0);
+        Path flatDocument = Files.writeString(uploadDirectory.resolve(key), key);
+
+        assertAllReadable(shardedDocumentStorage, List.of(key));
+        assertTrue(shardedDocumentStorage.moveToShard(flatDocument));
+        assertFalse(Files.exists(flatDocument));
+        assertAllReadable(shardedDocumentStorage, List.of(key));
+    }
+
+    private List<Path> createVolumes(int count) {
+
+        List<Path> volumes = new ArrayList<>();
+
+        for (int volume = 0; volume < count; volume++) {
+
+            volumes.add(uploadDirectory.resolve("volume-" + volume));
+        }
+
+        return volumes;
+    }
+
+    private List<String> createKeys(int count) {
+
+        return IntStream.range(0, count).mapToObj(key -> "blob-" + key).toList();
+    }
+
+    private Path stage(String key) throws IOException {
+
+        return Files.writeString(uploadDirectory.resolve(key + ".part"), key);
+    }
+
+    private void assertAllReadable(DocumentStorage documentStorage, List<String> keys) throws IOException {
+
+        for (String key : keys) {
+
+            try (InputStream inputStream = documentStorage.read(key, 0)) {
+
+                assertArrayEquals(key.getBytes(), inputStream.readAllBytes());
+            }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package br.com.api.support;
+
+import br.com.api.domain.entities.Clients;
+import br.com.api.domain.entities.UserClient;
+import br.com.api.domain.entities.Users;
+
+import br.com.api.repository.ClientRepository;
+import br.com.api.repository.UserClientRepository;
+import br.com.api.repository.UserRepository;
+
+import org.springframework.boot.test.context.TestComponent;
+
+import java.util.ArrayList;
+import java.util.UUID;
+
+/*
+* Creates a user owning its own client, each call with a new username so the tests sharing
+* the in-memory database don't see each other's documents.
+* */
+@TestComponent
+public class TestUsers {
+
+    private final UserRepository userRepository;
+    private final ClientRepository clientRepository;
+    private final UserClientRepository userClientRepository;
+
+    public TestUsers(UserRepository userRepository, ClientRepository clientRepository,
+                     UserClientRepository userClientRepository) {
+
+        this.userRepository = userRepository;
+        this.clientRepository = clientRepository;
+        this.userClientRepository = userClientRepository;
+    }
+
+    public String createClientUser(String prefix) {
+
+        String username = prefix + "-" + UUID.randomUUID();
+
+        Users user = new Users();
+        user.setUsername(username);
+        user.setEmail(username + "@test.com");
+        user.setPassword("password");
+        user.setExcluded(false);
+        user.setRoleList(new ArrayList<>());
+
+        Clients client = new Clients();
+        client.setCnpjCpf(username);
+
+        userClientRepository.save(UserClient.builder()
+                .user(userRepository.save(user))
+                .client(clientRepository.save(client))
+                .build());
+
+        return username;
+    }
+}